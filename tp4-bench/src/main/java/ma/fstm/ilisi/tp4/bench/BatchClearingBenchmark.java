@@ -0,0 +1,54 @@
+package ma.fstm.ilisi.tp4.bench;
+
+import jade.core.AID;
+import ma.fstm.ilisi.tp4.Auction;
+import ma.fstm.ilisi.tp4.BatchClearing;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the clearing of a batch of lots closing in the same tick, each with a few bids,
+ * a tenth of them also covered by bundle bids on pairs of lots.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BatchClearingBenchmark {
+    @Param({"100", "10000"})
+    public int lots;
+
+    private BatchClearing clearing;
+    private List<Auction> batch;
+    private List<BatchClearing.Bundle> bundles;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        List<AID> aids = Bench.bidders(16);
+        clearing = new BatchClearing(ForkJoinPool.commonPool());
+        batch = new ArrayList<>(lots);
+        for (int i = 0; i < lots; i++) {
+            Auction auction = new Auction(i, Bench.SELLER, "item" + i, 100);
+            for (int b = 0; b < 4; b++) {
+                auction.getBids().place(aids.get((i + b) % aids.size()), 100 + (i * 7 + b * 13) % 50);
+            }
+            batch.add(auction);
+        }
+        bundles = new ArrayList<>();
+        for (int i = 0; i + 1 < lots; i += 20) {
+            AID bidder = aids.get(i % aids.size());
+            bundles.add(new BatchClearing.Bundle(bidder, new long[] {i, i + 1}, new long[] {140, 140}));
+        }
+    }
+
+    @Benchmark
+    public BatchClearing.Result clear() {
+        return clearing.clear(batch, bundles);
+    }
+}
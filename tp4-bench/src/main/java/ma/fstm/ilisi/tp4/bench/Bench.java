@@ -0,0 +1,49 @@
+package ma.fstm.ilisi.tp4.bench;
+
+import jade.core.AID;
+import ma.fstm.ilisi.tp4.AuctionCodec;
+import ma.fstm.ilisi.tp4.AuctionTimers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bench holds the fixtures shared by the benchmarks.
+ */
+final class Bench {
+    /** Deadlines are never reached during a benchmark. */
+    static final AuctionTimers NO_TIMERS = new AuctionTimers() {
+        public void schedule(long auctionId, long delayMillis) { }
+
+        public void cancel(long auctionId) { }
+
+        public long now() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    static final AID SELLER = new AID("seller@bench", AID.ISGUID);
+
+    private Bench() {
+    }
+
+    /**
+     * @param count The number of bidders.
+     * @return Distinct bidder AIDs.
+     */
+    static List<AID> bidders(int count) {
+        List<AID> bidders = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            bidders.add(new AID("buyer" + i + "@bench", AID.ISGUID));
+        }
+        return bidders;
+    }
+
+    /**
+     * @param name "binary" or "text".
+     * @return The codec of that name.
+     */
+    static AuctionCodec codec(String name) {
+        return "text".equals(name) ? AuctionCodec.TEXT : AuctionCodec.BINARY;
+    }
+}
@@ -0,0 +1,62 @@
+package ma.fstm.ilisi.tp4.bench;
+
+import jade.core.AID;
+import ma.fstm.ilisi.tp4.AuctionJournal;
+import ma.fstm.ilisi.tp4.AuctioneerCore;
+import ma.fstm.ilisi.tp4.AuctioneerView;
+import ma.fstm.ilisi.tp4.Topic;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the auctioneer accepting and rejecting bids, as done for every PROPOSE it receives.
+ * Max-bid broadcasts are coalesced and never flushed, so only the bid itself is measured;
+ * see {@link BroadcastFanOutBenchmark} for the broadcasts.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BidAcceptanceBenchmark {
+    @Param({"10", "1000", "100000"})
+    public int bidders;
+
+    @Param({"binary", "text"})
+    public String codec;
+
+    private AuctioneerCore core;
+    private List<AID> aids;
+    private long amount;
+    private int next;
+
+    @Setup(Level.Iteration)
+    public void setup(Blackhole blackhole) {
+        aids = Bench.bidders(bidders);
+        core = new AuctioneerCore(blackhole::consume, AuctioneerView.NONE, Bench.NO_TIMERS, Bench.codec(codec),
+                Long.MAX_VALUE, false, 0, 30, 100, AuctionJournal.NONE);
+        core.publish(1, Bench.SELLER, "item", 100);
+        core.startAuction(1, new Topic("bench", aids), 3600);
+        amount = 100;
+    }
+
+    @Benchmark
+    public void acceptedBid() {
+        core.handleBid(1, nextBidder(), ++amount);
+    }
+
+    @Benchmark
+    public void rejectedBid() {
+        core.handleBid(1, nextBidder(), 1);
+    }
+
+    private AID nextBidder() {
+        AID bidder = aids.get(next);
+        next = next + 1 == bidders ? 0 : next + 1;
+        return bidder;
+    }
+}
@@ -0,0 +1,48 @@
+package ma.fstm.ilisi.tp4.bench;
+
+import ma.fstm.ilisi.tp4.Auction;
+import ma.fstm.ilisi.tp4.MaxBidCoalescer;
+import ma.fstm.ilisi.tp4.Topic;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building the max-bid broadcast of a lot, addressed to every invited buyer,
+ * with and without skipping the buyer holding the maximum.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BroadcastFanOutBenchmark {
+    @Param({"10", "1000", "100000"})
+    public int bidders;
+
+    @Param({"false", "true"})
+    public boolean delta;
+
+    @Param({"binary", "text"})
+    public String codec;
+
+    private MaxBidCoalescer maxBids;
+    private Auction auction;
+
+    @Setup(Level.Trial)
+    public void setup(Blackhole blackhole) {
+        maxBids = new MaxBidCoalescer(blackhole::consume, Bench.codec(codec), blackhole::consume, 0, delta);
+        auction = new Auction(1, Bench.SELLER, "item", 100);
+        auction.setTopic(new Topic("bench", Bench.bidders(bidders)));
+        auction.setActive(true);
+        auction.getBids().place(auction.getBuyers().get(0), 101);
+    }
+
+    @Benchmark
+    public void broadcast() {
+        auction.setCurrentMaxBid(auction.getCurrentMaxBid() + 1);
+        maxBids.update(auction);
+    }
+}
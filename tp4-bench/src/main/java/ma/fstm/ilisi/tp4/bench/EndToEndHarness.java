@@ -0,0 +1,73 @@
+package ma.fstm.ilisi.tp4.bench;
+
+import jade.core.Profile;
+import jade.core.ProfileImpl;
+import jade.core.Runtime;
+import jade.wrapper.AgentContainer;
+import ma.fstm.ilisi.tp4.AgentArgs;
+import ma.fstm.ilisi.tp4.Main;
+
+import java.util.Arrays;
+
+/**
+ * EndToEndHarness boots the auction platform in-process through {@link Main}, headless,
+ * adds synthetic {@link LoadBuyerAgent}s in a second container and reports the bids per second
+ * and the bid round-trip latencies measured after a warm-up.
+ *
+ * <p>Usage: {@code EndToEndHarness [buyers=N] [seconds=S] [warmup=S] [codec=binary|text] [shards=N]}.
+ */
+public class EndToEndHarness {
+    public static void main(String[] args) throws Exception {
+        AgentArgs options = AgentArgs.of(args);
+        int buyers = options.getInt("buyers", 100);
+        int seconds = options.getInt("seconds", 10);
+        int warmup = options.getInt("warmup", 3);
+        String codec = options.get("codec", "binary");
+        // Leave the load buyers time to register with the DF before the seller starts the lot
+        int startDelay = 2000 + buyers * 5;
+
+        Main.main(new String[]{"--headless", "--buyers=0", "--shards=" + options.getInt("shards", 1),
+                "--item=bench", "--price=1", "--time=" + (warmup + seconds + 60),
+                "--delay=" + startDelay, "--codec=" + codec});
+
+        Profile p = new ProfileImpl(false);
+        p.setParameter(Profile.MAIN_HOST, "localhost");
+        p.setParameter(Profile.CONTAINER_NAME, "load");
+        AgentContainer load = Runtime.instance().createAgentContainer(p);
+        for (int i = 0; i < buyers; i++) {
+            load.createNewAgent("load" + (i + 1), LoadBuyerAgent.class.getName(), new Object[]{"codec=" + codec})
+                    .start();
+        }
+
+        Thread.sleep(startDelay + warmup * 1000L);
+        LoadBuyerAgent.recording = true;
+        Thread.sleep(seconds * 1000L);
+        LoadBuyerAgent.recording = false;
+        LoadBuyerAgent.running = false;
+
+        long[] all = LoadBuyerAgent.AGENTS.stream()
+                .map(LoadBuyerAgent::latencies)
+                .flatMapToLong(Arrays::stream)
+                .sorted()
+                .toArray();
+        System.out.printf("buyers=%d codec=%s bids=%d bids/sec=%.0f%n", buyers, codec, all.length,
+                all.length / (double) seconds);
+        if (all.length > 0) {
+            System.out.printf("latency us: p50=%.1f p99=%.1f p99.9=%.1f max=%.1f%n",
+                    percentile(all, 0.50), percentile(all, 0.99), percentile(all, 0.999),
+                    all[all.length - 1] / 1000.0);
+        }
+        Runtime.instance().shutDown();
+        System.exit(0);
+    }
+
+    /**
+     * @param sorted The sorted latencies, in nanoseconds.
+     * @param q The quantile, between 0 and 1.
+     * @return The latency at that quantile, in microseconds.
+     */
+    private static double percentile(long[] sorted, double q) {
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(q * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1000.0;
+    }
+}
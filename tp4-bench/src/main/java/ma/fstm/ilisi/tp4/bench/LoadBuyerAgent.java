@@ -0,0 +1,129 @@
+package ma.fstm.ilisi.tp4.bench;
+
+import jade.core.AID;
+import jade.core.Agent;
+import jade.core.behaviours.CyclicBehaviour;
+import jade.domain.DFService;
+import jade.domain.FIPAAgentManagement.DFAgentDescription;
+import jade.domain.FIPAAgentManagement.ServiceDescription;
+import jade.domain.FIPAException;
+import jade.lang.acl.ACLMessage;
+import ma.fstm.ilisi.tp4.AgentArgs;
+import ma.fstm.ilisi.tp4.AuctionCodec;
+import ma.fstm.ilisi.tp4.BidBatch;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * LoadBuyerAgent is a synthetic buyer driving the end-to-end harness.
+ * It registers in the DF like a BuyerAgent and, once invited by a CFP, keeps exactly one bid
+ * in flight: each bid raises the current maximum by one minor unit, and the next one is sent
+ * as soon as the auctioneer answers with the BID_RESULTS of the previous one.
+ * The round-trip time of each bid is recorded while {@link #recording} is set.
+ */
+public class LoadBuyerAgent extends Agent {
+    private static final long serialVersionUID = 1L;
+
+    static final Queue<LoadBuyerAgent> AGENTS = new ConcurrentLinkedQueue<>();
+    static volatile boolean recording;
+    static volatile boolean running = true;
+
+    private final transient AuctionCodec.Frame frame = new AuctionCodec.Frame();
+    private final transient BidBatch batch = new BidBatch(1);
+    private transient AuctionCodec codec;
+    private AID auctioneer;
+    private long auctionId;
+    private long maxBid;
+    private long seq;
+    private long sentAt;
+    private long[] latencies = new long[1 << 12];
+    private int count;
+
+    protected void setup() {
+        DFAgentDescription dfd = new DFAgentDescription();
+        dfd.setName(getAID());
+        ServiceDescription sd = new ServiceDescription();
+        sd.setType("buyer");
+        sd.setName("load-buyer");
+        dfd.addServices(sd);
+        try {
+            DFService.register(this, dfd);
+        } catch (FIPAException fe) {
+            fe.printStackTrace();
+        }
+        codec = AuctionCodec.fromArgs(AgentArgs.of(getArguments()));
+        AGENTS.add(this);
+
+        addBehaviour(new CyclicBehaviour() {
+            public void action() {
+                ACLMessage msg = receive();
+                if (msg != null && frame.wrap(msg)) {
+                    switch (frame.getType()) {
+                        case AuctionCodec.CFP:
+                            auctioneer = msg.getSender();
+                            auctionId = frame.getAuctionId();
+                            maxBid = frame.getAmount();
+                            bid();
+                            break;
+
+                        case AuctionCodec.BID_RESULTS:
+                            record(System.nanoTime() - sentAt);
+                            for (int i = 0; i < frame.getCount(); i++) {
+                                maxBid = Math.max(maxBid, frame.getAmount(i));
+                            }
+                            bid();
+                            break;
+
+                        case AuctionCodec.MAX_BID:
+                            maxBid = Math.max(maxBid, frame.getAmount());
+                            break;
+                    }
+                }
+                block();
+            }
+        });
+    }
+
+    /**
+     * Sends the next bid, one unit above the known maximum.
+     */
+    private void bid() {
+        if (!running) {
+            return;
+        }
+        batch.clear();
+        batch.add(auctionId, maxBid + 1, ++seq);
+        ACLMessage msg = new ACLMessage(ACLMessage.PROPOSE);
+        msg.addReceiver(auctioneer);
+        codec.writeBidBatch(msg, batch);
+        sentAt = System.nanoTime();
+        send(msg);
+    }
+
+    private synchronized void record(long nanos) {
+        if (!recording) {
+            return;
+        }
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count++] = nanos;
+    }
+
+    /**
+     * @return The round-trip times recorded so far, in nanoseconds.
+     */
+    synchronized long[] latencies() {
+        return Arrays.copyOf(latencies, count);
+    }
+
+    protected void takeDown() {
+        try {
+            DFService.deregister(this);
+        } catch (FIPAException fe) {
+            fe.printStackTrace();
+        }
+    }
+}
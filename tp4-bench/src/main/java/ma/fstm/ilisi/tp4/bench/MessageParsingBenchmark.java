@@ -0,0 +1,64 @@
+package ma.fstm.ilisi.tp4.bench;
+
+import jade.lang.acl.ACLMessage;
+import ma.fstm.ilisi.tp4.AuctionCodec;
+import ma.fstm.ilisi.tp4.BidBatch;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reading incoming messages into a frame, as the agents do before dispatching on the frame type.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageParsingBenchmark {
+    @Param({"binary", "text"})
+    public String codec;
+
+    private final AuctionCodec.Frame frame = new AuctionCodec.Frame();
+    private ACLMessage bid;
+    private ACLMessage cfp;
+    private ACLMessage batch;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        AuctionCodec writer = Bench.codec(codec);
+        bid = new ACLMessage(ACLMessage.PROPOSE);
+        writer.writeBid(bid, 42L << 32 | 7, 123_456, 99);
+        cfp = new ACLMessage(ACLMessage.CFP);
+        writer.writeCfp(cfp, 42L << 32 | 7, "Vintage laptop", 10_000, 60);
+        BidBatch bids = new BidBatch();
+        for (int i = 0; i < 16; i++) {
+            bids.add(42L << 32 | i, 10_000 + i, i);
+        }
+        batch = new ACLMessage(ACLMessage.PROPOSE);
+        writer.writeBidBatch(batch, bids);
+    }
+
+    @Benchmark
+    public long parseBid() {
+        frame.wrap(bid);
+        return frame.getAuctionId() + frame.getAmount();
+    }
+
+    @Benchmark
+    public int parseCfp() {
+        frame.wrap(cfp);
+        return frame.getItem().length() + (int) frame.getAmount();
+    }
+
+    @Benchmark
+    public long parseBidBatch() {
+        frame.wrap(batch);
+        long sum = 0;
+        for (int i = 0; i < frame.getCount(); i++) {
+            sum += frame.getAuctionId(i) + frame.getAmount(i);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,93 @@
+package ma.fstm.ilisi.tp4.bench;
+
+import jade.core.AID;
+import ma.fstm.ilisi.tp4.AuctionCodec;
+import ma.fstm.ilisi.tp4.BidBook;
+import ma.fstm.ilisi.tp4.SellerCore;
+import ma.fstm.ilisi.tp4.SellerView;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the selection of the winner: the seller closing a lot with many proposals,
+ * and the bid book keeping its best bid while bidders raise their bids.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WinnerSelectionBenchmark {
+
+    /**
+     * A seller whose lot is filled with one proposal per bidder before each close.
+     */
+    @State(Scope.Thread)
+    public static class Closing {
+        @Param({"10", "1000", "100000"})
+        public int bidders;
+
+        private List<AID> aids;
+        private SellerCore seller;
+
+        @Setup(Level.Trial)
+        public void setupTrial(Blackhole blackhole) {
+            aids = Bench.bidders(bidders);
+            seller = new SellerCore(blackhole::consume, SellerView.NONE, "seller", id -> Bench.SELLER,
+                    AuctionCodec.BINARY);
+        }
+
+        @Setup(Level.Invocation)
+        public void setupInvocation() {
+            seller.publishOffer("item", 100, 60);
+            seller.startAuction();
+            long id = seller.getAuctionId();
+            for (int i = 0; i < bidders; i++) {
+                seller.onProposal(id, aids.get(i), 101 + i);
+            }
+        }
+    }
+
+    /**
+     * A bid book holding one standing bid per bidder.
+     */
+    @State(Scope.Thread)
+    public static class Book {
+        @Param({"10", "1000", "100000"})
+        public int bidders;
+
+        private List<AID> aids;
+        private BidBook book;
+        private long amount;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            aids = Bench.bidders(bidders);
+            book = new BidBook();
+            for (AID aid : aids) {
+                book.place(aid, ++amount);
+            }
+        }
+
+        private AID nextBidder() {
+            AID bidder = aids.get(next);
+            next = next + 1 == bidders ? 0 : next + 1;
+            return bidder;
+        }
+    }
+
+    @Benchmark
+    public void stopAuction(Closing state) {
+        state.seller.stopAuction();
+    }
+
+    @Benchmark
+    public long raiseAndReadBest(Book state) {
+        state.book.place(state.nextBidder(), ++state.amount);
+        return state.book.bestAmount();
+    }
+}
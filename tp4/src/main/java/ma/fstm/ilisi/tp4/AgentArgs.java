@@ -0,0 +1,85 @@
+package ma.fstm.ilisi.tp4;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * AgentArgs parses the arguments passed to an agent through createNewAgent.
+ * Arguments are either flags ("headless") or key/value pairs ("item=Laptop").
+ */
+public class AgentArgs {
+    public static final String HEADLESS = "headless";
+
+    private final Map<String, String> values = new HashMap<>();
+
+    private AgentArgs(Object[] args) {
+        if (args == null) {
+            return;
+        }
+        for (Object arg : args) {
+            if (arg == null) {
+                continue;
+            }
+            String s = arg.toString();
+            int eq = s.indexOf('=');
+            if (eq < 0) {
+                values.put(s, "true");
+            } else {
+                values.put(s.substring(0, eq), s.substring(eq + 1));
+            }
+        }
+    }
+
+    /**
+     * Parses the given agent arguments.
+     * @param args The arguments returned by Agent.getArguments(), may be null.
+     * @return The parsed arguments.
+     */
+    public static AgentArgs of(Object[] args) {
+        return new AgentArgs(args);
+    }
+
+    /**
+     * @return true if the agent should run without any Swing frame.
+     */
+    public boolean isHeadless() {
+        return Boolean.parseBoolean(values.get(HEADLESS));
+    }
+
+    /**
+     * @param key The argument name.
+     * @return true if the argument was given.
+     */
+    public boolean has(String key) {
+        return values.containsKey(key);
+    }
+
+    /**
+     * @param key The argument name.
+     * @param defaultValue The value returned when the argument is missing.
+     * @return The argument value.
+     */
+    public String get(String key, String defaultValue) {
+        return values.getOrDefault(key, defaultValue);
+    }
+
+    /**
+     * @param key The argument name.
+     * @param defaultValue The value returned when the argument is missing.
+     * @return The argument value as an int.
+     */
+    public int getInt(String key, int defaultValue) {
+        String value = values.get(key);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    /**
+     * @param key The argument name.
+     * @param defaultValue The value returned when the argument is missing.
+     * @return The argument value as a double.
+     */
+    public double getDouble(String key, double defaultValue) {
+        String value = values.get(key);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+}
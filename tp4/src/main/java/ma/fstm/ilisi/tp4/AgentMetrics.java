@@ -0,0 +1,103 @@
+package ma.fstm.ilisi.tp4;
+
+import jade.core.Agent;
+import jade.lang.acl.ACLMessage;
+
+import java.util.Iterator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * AgentMetrics holds the metrics every agent keeps about its message handling:
+ * messages received and sent, broadcast fan-out, mailbox depth and wait, behaviour action time
+ * and, through its {@link Tracer}, the latency until a message comes back on a trace the agent started.
+ * The agent wraps its sender with {@link #sender(Consumer)} and brackets the handling of each
+ * message with {@link #received(ACLMessage)} and {@link #handled(long)}.
+ */
+public class AgentMetrics {
+    private final Metrics metrics;
+    private final Tracer tracer;
+    private final LongAdder messagesReceived;
+    private final LongAdder messagesSent;
+    private final Histogram fanOut;
+    private final Histogram mailboxWait;
+    private final Histogram actionTime;
+    private final Histogram notificationLatency;
+
+    /**
+     * Creates and registers the metrics of an agent.
+     * @param agent The agent, whose local name labels its metrics.
+     */
+    public AgentMetrics(Agent agent) {
+        metrics = new Metrics(agent.getLocalName());
+        tracer = new Tracer(agent.getLocalName());
+        messagesReceived = metrics.counter("messages_received");
+        messagesSent = metrics.counter("messages_sent");
+        fanOut = metrics.histogram("fan_out_receivers");
+        mailboxWait = metrics.histogram("mailbox_wait_ms");
+        actionTime = metrics.histogram("action_time_ns");
+        notificationLatency = metrics.histogram("notification_latency_ns");
+        metrics.gauge("mailbox_depth", agent::getCurQueueSize);
+        metrics.register();
+    }
+
+    /**
+     * @return The registry, to add the metrics specific to the agent.
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Wraps the sender of the agent to trace and count the messages sent.
+     * @param sender Sends messages on behalf of the agent.
+     * @return The wrapped sender.
+     */
+    public Consumer<ACLMessage> sender(Consumer<ACLMessage> sender) {
+        return msg -> {
+            tracer.stamp(msg);
+            int receivers = 0;
+            for (Iterator<?> it = msg.getAllReceiver(); it.hasNext(); it.next()) {
+                receivers++;
+            }
+            messagesSent.increment();
+            fanOut.record(receivers);
+            sender.accept(msg);
+        };
+    }
+
+    /**
+     * Starts the handling of a received message.
+     * @param msg The message taken from the mailbox.
+     * @return The start time, to pass to {@link #handled(long)}.
+     */
+    public long received(ACLMessage msg) {
+        long start = System.nanoTime();
+        messagesReceived.increment();
+        long posted = msg.getPostTimeStamp();
+        if (posted > 0) {
+            mailboxWait.record(System.currentTimeMillis() - posted);
+        }
+        long latency = tracer.enter(msg);
+        if (latency >= 0) {
+            notificationLatency.record(latency);
+        }
+        return start;
+    }
+
+    /**
+     * Ends the handling of a received message.
+     * @param start The time returned by {@link #received(ACLMessage)}.
+     */
+    public void handled(long start) {
+        tracer.exit();
+        actionTime.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Removes the metrics of the agent from JMX and the scrape endpoint.
+     */
+    public void unregister() {
+        metrics.unregister();
+    }
+}
@@ -0,0 +1,218 @@
+package ma.fstm.ilisi.tp4;
+
+import jade.core.AID;
+
+import java.util.List;
+
+/**
+ * Auction is the state of one lot run by the auctioneer:
+ * the offer, its bid book, the topic of the buyers following it, its {@link AuctionMechanism}
+ * and whether bids are accepted. It remembers the last sequence number of each bidder,
+ * so a retransmitted bid is never applied twice.
+ * Its bidders are the ids of the {@link BidderRegistry} of the auctioneer, so the state of a bidder
+ * is a few primitive slots, whatever the number of lots it bids on.
+ */
+public class Auction {
+    private final long id;
+    private final AID seller;
+    private final String item;
+    private final long minPrice;
+    private final BidderRegistry registry;
+    private final BidBook bids;
+    private final BidBook proxies;
+    /** Null until the lot starts, see {@link #getTopic()}. */
+    private Topic topic;
+    private AuctionMechanism mechanism = AuctionMechanism.ENGLISH;
+    private long currentMaxBid;
+    private long maxBidSeq;
+    private long lastBroadcastSeq = -1;
+    private boolean broadcastPending;
+    private boolean active = false;
+    private long deadline;
+    private final IntLongMap lastSeqs = new IntLongMap();
+
+    /**
+     * @param id The auction id.
+     * @param seller The AID of the seller.
+     * @param item The item offered.
+     * @param minPrice The minimum price, in minor units.
+     */
+    public Auction(long id, AID seller, String item, long minPrice) {
+        this(id, seller, item, minPrice, new BidderRegistry());
+    }
+
+    /**
+     * @param id The auction id.
+     * @param seller The AID of the seller.
+     * @param item The item offered.
+     * @param minPrice The minimum price, in minor units.
+     * @param registry The registry of the bidders, shared by the lots of the auctioneer.
+     */
+    public Auction(long id, AID seller, String item, long minPrice, BidderRegistry registry) {
+        this.registry = registry;
+        this.bids = new BidBook(registry);
+        this.proxies = new BidBook(registry);
+        this.id = id;
+        this.seller = seller;
+        this.item = item;
+        this.minPrice = minPrice;
+        this.currentMaxBid = minPrice;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public AID getSeller() {
+        return seller;
+    }
+
+    public String getItem() {
+        return item;
+    }
+
+    public long getMinPrice() {
+        return minPrice;
+    }
+
+    public BidBook getBids() {
+        return bids;
+    }
+
+    /**
+     * @return The hidden maximum bids of the buyers who let the auctioneer bid for them.
+     */
+    public BidBook getProxies() {
+        return proxies;
+    }
+
+    /**
+     * @return The buyers following the lot, see {@link #getTopic()}.
+     */
+    public List<AID> getBuyers() {
+        return topic == null ? List.of() : topic.getMembers();
+    }
+
+    /**
+     * @return The topic the updates of the lot are published to, or null before the lot starts.
+     */
+    public Topic getTopic() {
+        return topic;
+    }
+
+    public void setTopic(Topic topic) {
+        this.topic = topic;
+    }
+
+    /**
+     * @return The format the lot is auctioned in.
+     */
+    public AuctionMechanism getMechanism() {
+        return mechanism;
+    }
+
+    public void setMechanism(AuctionMechanism mechanism) {
+        this.mechanism = mechanism;
+    }
+
+    /**
+     * @return The current maximum bid, or the asking price of a Dutch lot, in minor units.
+     */
+    public long getCurrentMaxBid() {
+        return currentMaxBid;
+    }
+
+    /**
+     * Sets the current maximum bid and counts the update.
+     * @param currentMaxBid The new maximum bid, in minor units.
+     */
+    public void setCurrentMaxBid(long currentMaxBid) {
+        this.currentMaxBid = currentMaxBid;
+        maxBidSeq++;
+    }
+
+    /**
+     * @return The number of max-bid updates of the lot so far.
+     */
+    public long getMaxBidSeq() {
+        return maxBidSeq;
+    }
+
+    /**
+     * Records the sequence number of a bid, unless the bidder already sent it or a later one.
+     * The last sequence numbers outlive a warm restart of the auctioneer, so a bidder must keep numbering its
+     * bids upwards across its own restarts, as {@link BuyerCore} does from the clock.
+     * @param bidder The AID of the bidder.
+     * @param seq The bidder's own sequence number, 0 for an unsequenced bid, always admitted.
+     * @return false if the bid is a retransmission.
+     */
+    public boolean admitSeq(AID bidder, long seq) {
+        if (seq == 0) {
+            return true;
+        }
+        int bidderId = registry.intern(bidder);
+        if (seq <= lastSeqs.get(bidderId, 0)) {
+            return false;
+        }
+        lastSeqs.put(bidderId, seq);
+        return true;
+    }
+
+    /**
+     * Restores the number of max-bid updates, e.g. from a journal.
+     * @param maxBidSeq The max-bid sequence number.
+     */
+    public void setMaxBidSeq(long maxBidSeq) {
+        this.maxBidSeq = maxBidSeq;
+    }
+
+    /**
+     * @param bidder The AID of a bidder.
+     * @return The last sequence number admitted from the bidder, 0 if none.
+     */
+    public long getLastSeq(AID bidder) {
+        int bidderId = registry.find(bidder);
+        return bidderId == BidderRegistry.NONE ? 0 : lastSeqs.get(bidderId, 0);
+    }
+
+    /**
+     * @return The max-bid sequence number of the last broadcast, -1 before the first one.
+     */
+    public long getLastBroadcastSeq() {
+        return lastBroadcastSeq;
+    }
+
+    public void setLastBroadcastSeq(long lastBroadcastSeq) {
+        this.lastBroadcastSeq = lastBroadcastSeq;
+    }
+
+    /**
+     * @return true if the lot waits for the next flush of the max-bid broadcasts.
+     */
+    public boolean isBroadcastPending() {
+        return broadcastPending;
+    }
+
+    public void setBroadcastPending(boolean broadcastPending) {
+        this.broadcastPending = broadcastPending;
+    }
+
+    /**
+     * @return The time at which the lot closes, in milliseconds.
+     */
+    public long getDeadline() {
+        return deadline;
+    }
+
+    public void setDeadline(long deadline) {
+        this.deadline = deadline;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public void setActive(boolean active) {
+        this.active = active;
+    }
+}
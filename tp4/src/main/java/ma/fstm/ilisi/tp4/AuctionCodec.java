@@ -0,0 +1,628 @@
+package ma.fstm.ilisi.tp4;
+
+import jade.lang.acl.ACLMessage;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * AuctionCodec writes the content of auction messages, either as a compact versioned binary
+ * frame sent with setByteSequenceContent, or as the historical semicolon-delimited text.
+ *
+ * <p>A binary frame has a fixed layout, big-endian:
+ * <pre>
+ *  0  byte   version ({@link #VERSION})
+ *  1  byte   type (PUBLISH, START, CFP, BID, MAX_BID, TIME_EXTENDED, MORE_TIME, CLOSE, PROXY_BID, JOIN, LEAVE,
+ *            AWARD, REJECT)
+ *  2  long   auction id
+ * 10  long   amount, in minor units (minimum price for PUBLISH, START and CFP, hidden maximum for PROXY_BID,
+ *            price paid for AWARD, current maximum for REJECT)
+ * 18  long   sequence number (time in seconds for START, CFP and TIME_EXTENDED)
+ * 26  short  item length, then the UTF-8 item (PUBLISH, START and CFP only)
+ * 26  long   base sequence number: the max-bid update the bid was based on (BID only, optional)
+ * 26  byte   reason code (REJECT only)
+ * </pre>
+ * A bid carries the bidder's own sequence number, and a max-bid update or a REJECT the number of
+ * updates of the lot so far; the text form carries neither, its bids are never deduplicated.
+ * BID_BATCH, BUNDLE_BID and BID_RESULTS frames carry the bids of many lots in one message:
+ * <pre>
+ *  0  byte   version
+ *  1  byte   type (BID_BATCH, BUNDLE_BID, BID_RESULTS)
+ *  2  int    entry count
+ *  6  entries of 25 bytes: auction id (long), amount (long), sequence number (long), status (byte)
+ * </pre>
+ * Every agent reads both forms through a {@link Frame}, so a text codec can be configured
+ * with the "codec=text" agent argument to talk to older peers.
+ */
+public final class AuctionCodec {
+    public static final byte VERSION = 1;
+
+    public static final byte UNKNOWN = 0;
+    public static final byte PUBLISH = 1;
+    public static final byte START = 2;
+    public static final byte CFP = 3;
+    public static final byte BID = 4;
+    public static final byte MAX_BID = 5;
+    public static final byte TIME_EXTENDED = 6;
+    public static final byte MORE_TIME = 7;
+    public static final byte CLOSE = 8;
+    public static final byte BID_BATCH = 9;
+    public static final byte BID_RESULTS = 10;
+    public static final byte PROXY_BID = 11;
+    public static final byte JOIN = 12;
+    public static final byte LEAVE = 13;
+    public static final byte AWARD = 14;
+    public static final byte BUNDLE_BID = 15;
+    public static final byte REJECT = 16;
+
+    /** Reason of a REJECT: the bid does not beat the current maximum, or is below the minimum price. */
+    public static final byte REASON_TOO_LOW = 1;
+    /** Reason of a REJECT: the bid was based on an older maximum and does not beat the current one. */
+    public static final byte REASON_STALE = 2;
+    /** Reason of a REJECT: the format of the lot takes no hidden maximum. */
+    public static final byte REASON_FORMAT = 3;
+    /** Reason of a REJECT: the hidden maximum of the bidder was outbid. */
+    public static final byte REASON_OUTBID = 4;
+
+    public static final AuctionCodec BINARY = new AuctionCodec(true);
+    public static final AuctionCodec TEXT = new AuctionCodec(false);
+
+    private static final int TYPE = 1;
+    private static final int AUCTION_ID = 2;
+    private static final int AMOUNT = 10;
+    private static final int SEQ = 18;
+    private static final int ITEM_LENGTH = 26;
+    private static final int HEADER_SIZE = 26;
+    private static final int COUNT = 2;
+    private static final int ENTRIES = 6;
+    private static final int ENTRY_SIZE = 25;
+
+    private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private final boolean binary;
+
+    private AuctionCodec(boolean binary) {
+        this.binary = binary;
+    }
+
+    /**
+     * @param args The agent arguments.
+     * @return The text codec if the agent was started with "codec=text", the binary codec otherwise.
+     */
+    public static AuctionCodec fromArgs(AgentArgs args) {
+        return "text".equals(args.get("codec", "binary")) ? TEXT : BINARY;
+    }
+
+    public boolean isBinary() {
+        return binary;
+    }
+
+    public void writePublish(ACLMessage msg, long auctionId, String item, long minPrice) {
+        write(msg, PUBLISH, auctionId, minPrice, 0, item,
+                AuctionProtocol.PUBLISH + ";" + item + ";" + Money.format(minPrice));
+    }
+
+    public void writeStart(ACLMessage msg, long auctionId, String item, long minPrice, int seconds) {
+        write(msg, START, auctionId, minPrice, seconds, item,
+                AuctionProtocol.START + ";" + item + ";" + Money.format(minPrice) + ";" + seconds);
+    }
+
+    /**
+     * @param seconds The time left before the deadline of the lot.
+     */
+    public void writeCfp(ACLMessage msg, long auctionId, String item, long minPrice, int seconds) {
+        write(msg, CFP, auctionId, minPrice, seconds, item, item + ";" + Money.format(minPrice) + ";" + seconds);
+    }
+
+    /**
+     * @param seq The bidder's own sequence number for this bid, or the max-bid sequence number of a forwarded bid.
+     */
+    public void writeBid(ACLMessage msg, long auctionId, long amount, long seq) {
+        write(msg, BID, auctionId, amount, seq, null, binary ? null : Money.format(amount));
+    }
+
+    /**
+     * Writes a bid of a buyer, with the max-bid update it was based on.
+     * @param seq The bidder's own sequence number for this bid.
+     * @param baseSeq The sequence number of the last max-bid update the bidder saw, 0 if none.
+     */
+    public void writeBid(ACLMessage msg, long auctionId, long amount, long seq, long baseSeq) {
+        byte[] frame = write(msg, BID, auctionId, amount, seq, null, binary ? null : Money.format(amount), 8);
+        if (frame != null) {
+            LONG.set(frame, HEADER_SIZE, baseSeq);
+        }
+    }
+
+    /**
+     * Writes a hidden maximum bid, up to which the auctioneer bids on behalf of the buyer.
+     * @param seq The bidder's own sequence number for this bid.
+     */
+    public void writeProxyBid(ACLMessage msg, long auctionId, long maxAmount, long seq) {
+        write(msg, PROXY_BID, auctionId, maxAmount, seq, null,
+                binary ? null : AuctionProtocol.PROXY + ";" + Money.format(maxAmount));
+    }
+
+    /**
+     * @param seq The number of max-bid updates of the lot so far.
+     */
+    public void writeMaxBid(ACLMessage msg, long auctionId, long amount, long seq) {
+        write(msg, MAX_BID, auctionId, amount, seq, null,
+                binary ? null : AuctionProtocol.MAX_BID + ";" + Money.format(amount));
+    }
+
+    public void writeTimeExtended(ACLMessage msg, long auctionId, int seconds) {
+        write(msg, TIME_EXTENDED, auctionId, 0, seconds, null,
+                binary ? null : AuctionProtocol.TIME_EXTENDED + ";" + seconds);
+    }
+
+    public void writeMoreTime(ACLMessage msg, long auctionId) {
+        write(msg, MORE_TIME, auctionId, 0, 0, null, AuctionProtocol.MORE_TIME);
+    }
+
+    /**
+     * Writes the request of a buyer to follow the updates of a lot.
+     */
+    public void writeJoin(ACLMessage msg, long auctionId) {
+        write(msg, JOIN, auctionId, 0, 0, null, AuctionProtocol.JOIN);
+    }
+
+    /**
+     * Writes the request of a buyer to stop following the updates of a lot.
+     */
+    public void writeLeave(ACLMessage msg, long auctionId) {
+        write(msg, LEAVE, auctionId, 0, 0, null, AuctionProtocol.LEAVE);
+    }
+
+    public void writeClose(ACLMessage msg, long auctionId) {
+        write(msg, CLOSE, auctionId, 0, 0, null, AuctionProtocol.CLOSE);
+    }
+
+    /**
+     * Writes the outcome of a lot cleared in a batch, sent to its seller; the winner travels in the reply-to field.
+     * @param price The price the winner pays, in minor units.
+     */
+    public void writeAward(ACLMessage msg, long auctionId, long price) {
+        write(msg, AWARD, auctionId, price, 0, null, binary ? null : AuctionProtocol.AWARD + ";" + Money.format(price));
+    }
+
+    /**
+     * Writes the refusal of a bid, sent as a REJECT_PROPOSAL to the bidder, with the state of the lot
+     * the bidder needs to bid again at once.
+     * @param reason The reason, e.g. {@link #REASON_TOO_LOW}.
+     * @param maxBid The current maximum of the lot, in minor units.
+     * @param maxBidSeq The number of max-bid updates of the lot so far.
+     */
+    public void writeReject(ACLMessage msg, long auctionId, byte reason, long maxBid, long maxBidSeq) {
+        byte[] frame = write(msg, REJECT, auctionId, maxBid, maxBidSeq, null, binary ? null
+                : AuctionProtocol.REJECT + ";" + reason + ";" + Money.format(maxBid) + ";" + maxBidSeq, 1);
+        if (frame != null) {
+            frame[HEADER_SIZE] = reason;
+        }
+    }
+
+    /**
+     * Writes the bids of many lots, sent as one PROPOSE.
+     * @param batch The bids, one entry per lot.
+     */
+    public void writeBidBatch(ACLMessage msg, BidBatch batch) {
+        writeBatch(msg, BID_BATCH, batch);
+    }
+
+    /**
+     * Writes an all-or-nothing bid on several lots, sent as one PROPOSE.
+     * @param bundle The lots of the bundle, with the amount offered for each.
+     */
+    public void writeBundleBid(ACLMessage msg, BidBatch bundle) {
+        writeBatch(msg, BUNDLE_BID, bundle);
+    }
+
+    /**
+     * Writes the outcome of the bids of a batch, sent as one INFORM to the bidder.
+     * @param results The results, with the status and current maximum of each lot.
+     */
+    public void writeBidResults(ACLMessage msg, BidBatch results) {
+        writeBatch(msg, BID_RESULTS, results);
+    }
+
+    private void writeBatch(ACLMessage msg, byte type, BidBatch batch) {
+        if (!binary) {
+            boolean results = type == BID_RESULTS;
+            StringBuilder text = new StringBuilder(16 + batch.size() * 32).append(results ? AuctionProtocol.BID_RESULTS
+                    : type == BUNDLE_BID ? AuctionProtocol.BUNDLE : AuctionProtocol.BID_BATCH);
+            for (int i = 0; i < batch.size(); i++) {
+                text.append(';').append(batch.getAuctionId(i)).append(',');
+                if (results) {
+                    text.append(batch.getStatus(i)).append(',');
+                }
+                text.append(Money.format(batch.getAmount(i))).append(',').append(batch.getSeq(i));
+            }
+            msg.setContent(text.toString());
+            return;
+        }
+        byte[] frame = new byte[ENTRIES + batch.size() * ENTRY_SIZE];
+        frame[0] = VERSION;
+        frame[TYPE] = type;
+        INT.set(frame, COUNT, batch.size());
+        for (int i = 0, offset = ENTRIES; i < batch.size(); i++, offset += ENTRY_SIZE) {
+            LONG.set(frame, offset, batch.getAuctionId(i));
+            LONG.set(frame, offset + 8, batch.getAmount(i));
+            LONG.set(frame, offset + 16, batch.getSeq(i));
+            frame[offset + 24] = batch.getStatus(i);
+        }
+        msg.setByteSequenceContent(frame);
+    }
+
+    /**
+     * Writes the content in the format of this codec and tags the message with its auction id.
+     */
+    private void write(ACLMessage msg, byte type, long auctionId, long amount, long seq, String item, String text) {
+        write(msg, type, auctionId, amount, seq, item, text, 0);
+    }
+
+    /**
+     * @param tail The number of bytes left after the header, for the caller to fill.
+     * @return The binary frame, or null with the text codec.
+     */
+    private byte[] write(ACLMessage msg, byte type, long auctionId, long amount, long seq, String item, String text,
+                         int tail) {
+        AuctionProtocol.setAuctionId(msg, auctionId);
+        if (!binary) {
+            msg.setContent(text);
+            return null;
+        }
+        byte[] itemBytes = item == null ? null : item.getBytes(StandardCharsets.UTF_8);
+        byte[] frame = new byte[itemBytes == null ? HEADER_SIZE + tail : HEADER_SIZE + 2 + itemBytes.length];
+        frame[0] = VERSION;
+        frame[TYPE] = type;
+        LONG.set(frame, AUCTION_ID, auctionId);
+        LONG.set(frame, AMOUNT, amount);
+        LONG.set(frame, SEQ, seq);
+        if (itemBytes != null) {
+            frame[ITEM_LENGTH] = (byte) (itemBytes.length >>> 8);
+            frame[ITEM_LENGTH + 1] = (byte) itemBytes.length;
+            System.arraycopy(itemBytes, 0, frame, ITEM_LENGTH + 2, itemBytes.length);
+        }
+        msg.setByteSequenceContent(frame);
+        return frame;
+    }
+
+    /**
+     * Answers a message that could not be read, see {@link Frame#isMalformed()}, so its sender learns
+     * why nothing happened instead of waiting for an answer.
+     * @param msg The malformed message.
+     * @return The NOT_UNDERSTOOD reply, to send.
+     */
+    public static ACLMessage notUnderstood(ACLMessage msg) {
+        ACLMessage reply = msg.createReply();
+        reply.setPerformative(ACLMessage.NOT_UNDERSTOOD);
+        reply.setContent("malformed auction message");
+        return reply;
+    }
+
+    /**
+     * Frame is a reusable reader of auction messages in either format.
+     * Binary frames are read in place, without allocating; only the item of PUBLISH, START
+     * and CFP frames is decoded into a string, and only when asked for.
+     * An agent keeps one Frame and wraps each received message with it.
+     */
+    public static final class Frame {
+        private final BidBatch textEntries = new BidBatch();
+        private byte[] bytes;
+        private boolean malformed;
+        private byte type;
+        private int count;
+        private long auctionId;
+        private long amount;
+        private long seq;
+        private long baseSeq;
+        private byte reason;
+        private String item;
+
+        /**
+         * Reads a message into this frame.
+         * @param msg The received message.
+         * @return false if the message is not an auction message this version understands.
+         */
+        public boolean wrap(ACLMessage msg) {
+            item = null;
+            count = 0;
+            baseSeq = 0;
+            reason = 0;
+            malformed = false;
+            if (msg.hasByteSequenceContent()) {
+                bytes = msg.getByteSequenceContent();
+                if (bytes.length < ENTRIES || bytes[0] != VERSION) {
+                    type = UNKNOWN;
+                    return false;
+                }
+                type = bytes[TYPE];
+                if (type == BID_BATCH || type == BUNDLE_BID || type == BID_RESULTS) {
+                    count = (int) INT.get(bytes, COUNT);
+                    auctionId = AuctionProtocol.NO_AUCTION;
+                    // Divided rather than multiplied, so a huge count cannot overflow past the check
+                    if (count < 0 || count > (bytes.length - ENTRIES) / ENTRY_SIZE) {
+                        return malformed();
+                    }
+                    return true;
+                }
+                if (bytes.length < HEADER_SIZE) {
+                    return malformed();
+                }
+                if ((type == PUBLISH || type == START || type == CFP) && itemEnd() > bytes.length) {
+                    return malformed();
+                }
+                auctionId = (long) LONG.get(bytes, AUCTION_ID);
+                amount = (long) LONG.get(bytes, AMOUNT);
+                seq = (long) LONG.get(bytes, SEQ);
+                if (type == BID && bytes.length >= HEADER_SIZE + 8) {
+                    baseSeq = (long) LONG.get(bytes, HEADER_SIZE);
+                } else if (type == REJECT && bytes.length > HEADER_SIZE) {
+                    reason = bytes[HEADER_SIZE];
+                }
+                return true;
+            }
+            bytes = null;
+            auctionId = AuctionProtocol.auctionId(msg);
+            amount = 0;
+            seq = 0;
+            try {
+                type = parseText(msg.getPerformative(), msg.getContent());
+            } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                return malformed();
+            }
+            return type != UNKNOWN;
+        }
+
+        /**
+         * @return true if the last message wrapped looked like an auction message but could not be read,
+         * e.g. a batch announcing more entries than it holds, or a text amount that is not a number.
+         * The receiver answers it with {@link AuctionCodec#notUnderstood(ACLMessage)}.
+         */
+        public boolean isMalformed() {
+            return malformed;
+        }
+
+        private boolean malformed() {
+            type = UNKNOWN;
+            count = 0;
+            malformed = true;
+            return false;
+        }
+
+        /**
+         * @return The index after the item of a binary frame, past the end of the frame if it has no room for it.
+         */
+        private int itemEnd() {
+            if (bytes.length < ITEM_LENGTH + 2) {
+                return Integer.MAX_VALUE;
+            }
+            return ITEM_LENGTH + 2 + (((bytes[ITEM_LENGTH] & 0xff) << 8) | (bytes[ITEM_LENGTH + 1] & 0xff));
+        }
+
+        public byte getType() {
+            return type;
+        }
+
+        public long getAuctionId() {
+            return auctionId;
+        }
+
+        /**
+         * @return The amount in minor units.
+         */
+        public long getAmount() {
+            return amount;
+        }
+
+        /**
+         * @return The sequence number, 0 for text messages.
+         */
+        public long getSeq() {
+            return seq;
+        }
+
+        /**
+         * @return The max-bid sequence number a BID was based on, 0 if unknown.
+         */
+        public long getBaseSeq() {
+            return baseSeq;
+        }
+
+        /**
+         * @return The reason code of a REJECT frame, e.g. {@link #REASON_STALE}.
+         */
+        public byte getReason() {
+            return reason;
+        }
+
+        /**
+         * @return The duration in seconds of START, CFP and TIME_EXTENDED frames.
+         */
+        public int getSeconds() {
+            return (int) seq;
+        }
+
+        /**
+         * @return The number of entries of a BID_BATCH, BUNDLE_BID or BID_RESULTS frame.
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * @param i The index of an entry of a BID_BATCH, BUNDLE_BID or BID_RESULTS frame.
+         * @return The auction id of the entry.
+         */
+        public long getAuctionId(int i) {
+            return bytes != null ? (long) LONG.get(bytes, ENTRIES + i * ENTRY_SIZE) : textEntries.getAuctionId(i);
+        }
+
+        /**
+         * @param i The index of an entry.
+         * @return The amount of the entry, in minor units.
+         */
+        public long getAmount(int i) {
+            return bytes != null ? (long) LONG.get(bytes, ENTRIES + i * ENTRY_SIZE + 8) : textEntries.getAmount(i);
+        }
+
+        /**
+         * @param i The index of an entry.
+         * @return The sequence number of the entry.
+         */
+        public long getSeq(int i) {
+            return bytes != null ? (long) LONG.get(bytes, ENTRIES + i * ENTRY_SIZE + 16) : textEntries.getSeq(i);
+        }
+
+        /**
+         * @param i The index of an entry of a BID_RESULTS frame.
+         * @return The status of the entry, see {@link BidBatch}.
+         */
+        public byte getStatus(int i) {
+            return bytes != null ? bytes[ENTRIES + i * ENTRY_SIZE + 24] : textEntries.getStatus(i);
+        }
+
+        /**
+         * @return The item of PUBLISH, START and CFP frames.
+         */
+        public String getItem() {
+            if (item == null && bytes != null && itemEnd() <= bytes.length) {
+                item = new String(bytes, ITEM_LENGTH + 2, itemEnd() - ITEM_LENGTH - 2, StandardCharsets.UTF_8);
+            }
+            return item;
+        }
+
+        /**
+         * Parses the historical text form. Fields are located with indexOf rather than split,
+         * and the item may itself contain semicolons.
+         */
+        private byte parseText(int performative, String content) {
+            if (content == null) {
+                return UNKNOWN;
+            }
+            switch (performative) {
+                case ACLMessage.CFP: {
+                    int last = content.lastIndexOf(';');
+                    if (last < 0) {
+                        return UNKNOWN;
+                    }
+                    int price = content.lastIndexOf(';', last - 1);
+                    if (price < 0) {
+                        // "item;price", without the time left
+                        item = content.substring(0, last);
+                        amount = Money.parse(content, last + 1, content.length());
+                        return CFP;
+                    }
+                    item = content.substring(0, price);
+                    amount = Money.parse(content, price + 1, last);
+                    seq = Long.parseLong(content, last + 1, content.length(), 10);
+                    return CFP;
+                }
+                case ACLMessage.PROPOSE:
+                    if (content.startsWith(AuctionProtocol.BID_BATCH + ";")) {
+                        return parseBatch(content, BID_BATCH);
+                    } else if (content.startsWith(AuctionProtocol.BUNDLE + ";")) {
+                        return parseBatch(content, BUNDLE_BID);
+                    } else if (content.startsWith(AuctionProtocol.PROXY + ";")) {
+                        amount = Money.parse(content, AuctionProtocol.PROXY.length() + 1, content.length());
+                        return PROXY_BID;
+                    }
+                    amount = Money.parse(content, 0, content.length());
+                    return BID;
+                case ACLMessage.REQUEST:
+                    switch (content) {
+                        case AuctionProtocol.MORE_TIME:
+                            return MORE_TIME;
+                        case AuctionProtocol.JOIN:
+                            return JOIN;
+                        case AuctionProtocol.LEAVE:
+                            return LEAVE;
+                        default:
+                            return UNKNOWN;
+                    }
+                case ACLMessage.INFORM:
+                    return parseInform(content);
+                case ACLMessage.REJECT_PROPOSAL: {
+                    // "REJECT;reason;max;seq"; a seller's refusal only names the item
+                    if (!content.startsWith(AuctionProtocol.REJECT + ";")) {
+                        return UNKNOWN;
+                    }
+                    int first = content.indexOf(';');
+                    int second = content.indexOf(';', first + 1);
+                    int last = content.lastIndexOf(';');
+                    if (second < 0 || last <= second) {
+                        return UNKNOWN;
+                    }
+                    reason = (byte) Integer.parseInt(content, first + 1, second, 10);
+                    amount = Money.parse(content, second + 1, last);
+                    seq = Long.parseLong(content, last + 1, content.length(), 10);
+                    return REJECT;
+                }
+                default:
+                    return UNKNOWN;
+            }
+        }
+
+        private byte parseInform(String content) {
+            int first = content.indexOf(';');
+            int last = content.lastIndexOf(';');
+            if (content.startsWith(AuctionProtocol.MAX_BID + ";")) {
+                amount = Money.parse(content, first + 1, content.length());
+                return MAX_BID;
+            } else if (content.startsWith(AuctionProtocol.TIME_EXTENDED + ";")) {
+                seq = Long.parseLong(content, first + 1, content.length(), 10);
+                return TIME_EXTENDED;
+            } else if (content.startsWith(AuctionProtocol.PUBLISH + ";") && last > first) {
+                item = content.substring(first + 1, last);
+                amount = Money.parse(content, last + 1, content.length());
+                return PUBLISH;
+            } else if (content.startsWith(AuctionProtocol.START + ";")) {
+                int price = content.lastIndexOf(';', last - 1);
+                if (price <= first) {
+                    return UNKNOWN;
+                }
+                item = content.substring(first + 1, price);
+                amount = Money.parse(content, price + 1, last);
+                seq = Long.parseLong(content, last + 1, content.length(), 10);
+                return START;
+            } else if (content.equals(AuctionProtocol.CLOSE)) {
+                return CLOSE;
+            } else if (content.startsWith(AuctionProtocol.AWARD + ";")) {
+                amount = Money.parse(content, first + 1, content.length());
+                return AWARD;
+            } else if (content.startsWith(AuctionProtocol.BID_RESULTS + ";")) {
+                return parseBatch(content, BID_RESULTS);
+            }
+            return UNKNOWN;
+        }
+
+        /**
+         * Parses the entries of a text batch, "id,amount,seq" or "id,status,amount,seq" separated by ';'.
+         */
+        private byte parseBatch(String content, byte batchType) {
+            textEntries.clear();
+            int start = content.indexOf(';') + 1;
+            while (start > 0 && start < content.length()) {
+                int end = content.indexOf(';', start);
+                if (end < 0) {
+                    end = content.length();
+                }
+                int c1 = content.indexOf(',', start);
+                int c2 = content.indexOf(',', c1 + 1);
+                long id = Long.parseLong(content, start, c1, 10);
+                byte status = 0;
+                if (batchType == BID_RESULTS) {
+                    status = (byte) Integer.parseInt(content, c1 + 1, c2, 10);
+                    c1 = c2;
+                    c2 = content.indexOf(',', c1 + 1);
+                }
+                textEntries.add(id, status, Money.parse(content, c1 + 1, c2), Long.parseLong(content, c2 + 1, end, 10));
+                start = end + 1;
+            }
+            count = textEntries.size();
+            return batchType;
+        }
+    }
+}
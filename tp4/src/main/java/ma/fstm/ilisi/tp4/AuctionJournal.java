@@ -0,0 +1,45 @@
+package ma.fstm.ilisi.tp4;
+
+import jade.core.AID;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * AuctionJournal receives the events that change the state of the lots of an auctioneer.
+ * {@link MappedAuctionJournal} writes them to disk, and replays them into another
+ * AuctionJournal to rebuild the lots after a restart.
+ * All methods default to no-ops so an auctioneer without a journal can use {@link #NONE}.
+ * Amounts are in minor units, deadlines in milliseconds since the epoch.
+ * Bids and hidden maxima carry the bidder's own sequence number, 0 if unsequenced, so a retransmission
+ * is still recognized after a restart. The maximum of a lot and its sequence number are recorded where replaying
+ * its bids would not rebuild them: by snapshots and when a Dutch lot lowers its asking price.
+ * The format of a lot follows its publication, and is only recorded for lots not auctioned the English way.
+ * The buyers known to the auctioneer are only written by snapshots, so a warm restart can offer lots
+ * before the DF has heard from them again.
+ */
+public interface AuctionJournal {
+    AuctionJournal NONE = new AuctionJournal() { };
+
+    default void published(long auctionId, AID seller, String item, long minPrice) { }
+
+    default void format(long auctionId, String format) { }
+
+    default void started(long auctionId, List<AID> buyers, long deadline) { }
+
+    default void bid(long auctionId, AID bidder, long amount, long seq) { }
+
+    default void proxy(long auctionId, AID bidder, long maxAmount, long seq) { }
+
+    default void dropped(long auctionId, AID bidder) { }
+
+    default void maxBid(long auctionId, long amount, long maxBidSeq) { }
+
+    default void bundle(AID bidder, long[] auctionIds, long[] amounts) { }
+
+    default void extended(long auctionId, long deadline) { }
+
+    default void closed(long auctionId) { }
+
+    default void buyer(AID buyer, Set<String> categories) { }
+}
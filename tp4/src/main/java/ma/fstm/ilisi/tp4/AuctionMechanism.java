@@ -0,0 +1,85 @@
+package ma.fstm.ilisi.tp4;
+
+import jade.core.AID;
+
+/**
+ * AuctionMechanism decides how the auctioneer runs a lot: which bids it accepts,
+ * whether the price is published while the lot runs, and what the winner pays.
+ * The seller picks the mechanism of each lot by name, in the "format" parameter of its offer,
+ * and {@link AuctioneerCore} does the messaging around it.
+ *
+ * <p>Only the open-outcry English auction broadcasts and forwards every accepted bid; the other
+ * formats cost one message per bid while they run. The sealed formats forward their bids to the
+ * seller once, at close, the best one at the price it pays; a Dutch lot closes on its first bid.
+ * Implementations keep their state in the {@link Auction}, so one instance serves every lot.
+ */
+public interface AuctionMechanism {
+    AuctionMechanism ENGLISH = new EnglishAuction();
+
+    /**
+     * @return The name of the format, as given by sellers, e.g. "vickrey".
+     */
+    String getName();
+
+    /**
+     * @return true for open outcry: each accepted bid is broadcast to the buyers and forwarded to the seller,
+     * hidden maxima are answered at once and late bids may extend the deadline.
+     */
+    default boolean isOpenOutcry() {
+        return false;
+    }
+
+    /**
+     * @return true if the first accepted bid wins the lot and closes it.
+     */
+    default boolean closesOnAccept() {
+        return false;
+    }
+
+    /**
+     * Opens a lot when its auction starts, its current price being its minimum price.
+     * @param auction The lot.
+     * @param durationMillis The time left before its deadline.
+     * @return The delay before the timer of the lot first fires.
+     */
+    default long open(Auction auction, long durationMillis) {
+        return durationMillis;
+    }
+
+    /**
+     * Opens a lot again after a restart, its current price rebuilt from the journal.
+     * @param auction The lot.
+     * @param durationMillis The time left before its deadline.
+     * @return The delay before the timer of the lot fires.
+     */
+    default long resume(Auction auction, long durationMillis) {
+        return durationMillis;
+    }
+
+    /**
+     * Records a bid in the book of the lot if the format accepts it.
+     * @param auction The lot, running.
+     * @param bidder The AID of the bidder.
+     * @param amount The amount of the bid, in minor units.
+     * @return true if the bid is accepted.
+     */
+    boolean accept(Auction auction, AID bidder, long amount);
+
+    /**
+     * Called when the timer of a lot fires. A price changed here is broadcast to the buyers of the lot.
+     * @param auction The lot.
+     * @param now The current time in milliseconds.
+     * @return The delay before the timer fires again, or -1 to close the lot.
+     */
+    default long tick(Auction auction, long now) {
+        return -1;
+    }
+
+    /**
+     * @param auction A lot that closes with at least one bid.
+     * @return The price the best bid pays, in minor units.
+     */
+    default long clearingPrice(Auction auction) {
+        return auction.getBids().bestAmount();
+    }
+}
@@ -0,0 +1,124 @@
+package ma.fstm.ilisi.tp4;
+
+import jade.core.AID;
+import jade.lang.acl.ACLMessage;
+import jade.lang.acl.MessageTemplate;
+
+import java.util.Iterator;
+
+/**
+ * AuctionProtocol gathers the message keywords exchanged by the agents and the helpers
+ * that carry the auction id in the conversation-id of every message of a lot.
+ */
+public final class AuctionProtocol {
+    public static final String PUBLISH = "PUBLISH";
+    public static final String START = "START";
+    public static final String CLOSE = "CLOSE";
+    public static final String MAX_BID = "MAX_BID";
+    public static final String TIME_EXTENDED = "TIME_EXTENDED";
+    public static final String MORE_TIME = "MORE_TIME";
+    public static final String BID_BATCH = "BID_BATCH";
+    public static final String PROXY = "PROXY";
+    public static final String BID_RESULTS = "BID_RESULTS";
+    public static final String JOIN = "JOIN";
+    public static final String LEAVE = "LEAVE";
+    public static final String BUNDLE = "BUNDLE";
+    public static final String AWARD = "AWARD";
+    public static final String REJECT = "REJECT";
+
+    /** The user-defined parameter carrying the trace id of a message, see {@link Tracer}. */
+    public static final String TRACE_ID = "trace-id";
+
+    /**
+     * The user-defined parameter carrying the category of a lot on PUBLISH and START messages,
+     * and the property naming a category of interest in the DF registration of a buyer.
+     */
+    public static final String CATEGORY = "category";
+
+    /**
+     * The user-defined parameter naming the {@link AuctionMechanism} of a lot on PUBLISH and CFP messages,
+     * absent for an English auction.
+     */
+    public static final String FORMAT = "format";
+
+    /** Returned by {@link #auctionId(ACLMessage)} when a message carries no auction id. */
+    public static final long NO_AUCTION = -1;
+
+    private AuctionProtocol() {
+    }
+
+    /**
+     * Creates a new auction id for a seller.
+     * The upper half comes from the seller name, the lower half from the seller's own counter.
+     * A {@link SellerCore} counts the seconds of the clock in the upper 24 bits of its counter, so they only
+     * repeat after 194 days, and the lots published within a second in the lower 8 bits.
+     * @param sellerName The name of the seller.
+     * @param sequence The counter of the seller, never the same one twice across its restarts.
+     * @return The auction id, never negative.
+     */
+    public static long newAuctionId(String sellerName, int sequence) {
+        return ((long) (sellerName.hashCode() & 0x7fffffff) << 32) | (sequence & 0xffffffffL);
+    }
+
+    /**
+     * @param sellerName The name of a seller.
+     * @param auctionId An auction id.
+     * @return true if the id was created for the seller by {@link #newAuctionId(String, int)}.
+     */
+    public static boolean isSellerOf(String sellerName, long auctionId) {
+        return auctionId >>> 32 == (sellerName.hashCode() & 0x7fffffff);
+    }
+
+    /**
+     * Tags a message with the auction it belongs to.
+     * @param msg The message.
+     * @param auctionId The auction id.
+     */
+    public static void setAuctionId(ACLMessage msg, long auctionId) {
+        msg.setConversationId(Long.toString(auctionId));
+    }
+
+    /**
+     * @param msg A message.
+     * @return The auction id carried by the message, or {@link #NO_AUCTION}.
+     */
+    public static long auctionId(ACLMessage msg) {
+        String conversationId = msg.getConversationId();
+        if (conversationId == null) {
+            return NO_AUCTION;
+        }
+        try {
+            return Long.parseLong(conversationId);
+        } catch (NumberFormatException e) {
+            return NO_AUCTION;
+        }
+    }
+
+    /**
+     * Matches the messages of the auction protocol: their conversation-id, when they have one,
+     * is an auction id. Replies of the DF and other protocols do not match.
+     * @return The template.
+     */
+    public static MessageTemplate matchAuction() {
+        return new MessageTemplate(msg -> msg.getConversationId() == null || auctionId(msg) != NO_AUCTION);
+    }
+
+    /**
+     * Matches the messages of the auction protocol with a performative.
+     * @param performative The performative, e.g. ACLMessage.PROPOSE for the bids.
+     * @return The template.
+     */
+    public static MessageTemplate match(int performative) {
+        return MessageTemplate.and(MessageTemplate.MatchPerformative(performative), matchAuction());
+    }
+
+    /**
+     * Returns the bidder of a bid forwarded by the auctioneer, carried in the reply-to field.
+     * @param msg A PROPOSE message.
+     * @return The bidder, or the sender when the bid was sent directly.
+     */
+    public static AID bidder(ACLMessage msg) {
+        Iterator<?> replyTo = msg.getAllReplyTo();
+        return replyTo != null && replyTo.hasNext() ? (AID) replyTo.next() : msg.getSender();
+    }
+}
@@ -0,0 +1,52 @@
+package ma.fstm.ilisi.tp4;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * AuctionRegistry indexes the lots of an auctioneer by auction id,
+ * so that routing a message to its lot costs one hash lookup.
+ */
+public class AuctionRegistry {
+    private final Map<Long, Auction> auctions = new HashMap<>();
+
+    /**
+     * Registers a lot, replacing any lot with the same id.
+     * @param auction The lot.
+     */
+    public void add(Auction auction) {
+        auctions.put(auction.getId(), auction);
+    }
+
+    /**
+     * @param auctionId The auction id.
+     * @return The lot, or null if it is unknown.
+     */
+    public Auction get(long auctionId) {
+        return auctions.get(auctionId);
+    }
+
+    /**
+     * @param auctionId The auction id.
+     * @return The removed lot, or null if it was unknown.
+     */
+    public Auction remove(long auctionId) {
+        return auctions.remove(auctionId);
+    }
+
+    /**
+     * @return All registered lots.
+     */
+    public Collection<Auction> all() {
+        return Collections.unmodifiableCollection(auctions.values());
+    }
+
+    /**
+     * @return The number of registered lots.
+     */
+    public int size() {
+        return auctions.size();
+    }
+}
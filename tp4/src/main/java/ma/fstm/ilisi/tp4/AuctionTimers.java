@@ -0,0 +1,25 @@
+package ma.fstm.ilisi.tp4;
+
+/**
+ * AuctionTimers schedules the deadline of each lot on behalf of an AuctioneerCore.
+ * The auctioneer uses a {@link TimingWheel}, turned by one of its behaviours.
+ */
+public interface AuctionTimers {
+    /**
+     * Schedules, or reschedules, the deadline of a lot.
+     * @param auctionId The auction id.
+     * @param delayMillis The delay before the deadline.
+     */
+    void schedule(long auctionId, long delayMillis);
+
+    /**
+     * Cancels the deadline of a lot, if any.
+     * @param auctionId The auction id.
+     */
+    void cancel(long auctionId);
+
+    /**
+     * @return The current time in milliseconds, as seen by the timers.
+     */
+    long now();
+}
@@ -1,179 +1,220 @@
-package ma.fstm.ilisi.tp4;
-
-import jade.core.AID;
-import jade.core.Agent;
-import jade.core.behaviours.CyclicBehaviour;
-import jade.domain.DFService;
-import jade.domain.FIPAAgentManagement.DFAgentDescription;
-import jade.domain.FIPAAgentManagement.ServiceDescription;
-import jade.domain.FIPAException;
-import jade.lang.acl.ACLMessage;
-
-import javax.swing.*;
-import java.util.*;
-import java.util.stream.Collectors;
-
-/**
- * AuctioneerAgent is a JADE agent that manages an auction process.
- * It handles the publication of new offers, starts auctions, and processes bids from buyers.
- */
-public class AuctioneerAgent extends Agent {
-    private JFrame frame;
-    private JTextArea logArea;
-    private String currentItem;
-    private double minPrice;
-    private double currentMaxBid;
-    private List<AID> buyers = new ArrayList<>();
-    private AID seller;
-    private boolean auctionActive = false;
-    private final Map<AID, Double> bids = new HashMap<>();
-
-    /**
-     * Setup method is called when the agent is initialized.
-     * It creates the GUI and adds the main behavior for handling messages.
-     */
-    protected void setup() {
-        createGUI();
-
-        addBehaviour(new CyclicBehaviour() {
-            public void action() {
-                ACLMessage msg = receive();
-                if (msg != null) {
-                    switch (msg.getPerformative()) {
-                        case ACLMessage.INFORM:
-                            String[] content = msg.getContent().split(";");
-                            if (content[0].equals("PUBLISH")) {
-                                // Handle publication of new offer
-                                currentItem = content[1];
-                                minPrice = Double.parseDouble(content[2]);
-                                currentMaxBid = minPrice; // Initialize max bid
-                                seller = msg.getSender();
-                                logArea.append("New offer published: " + currentItem + " at " + minPrice + "\n");
-                            } else if (content[0].equals("START")) {
-                                // Start the auction
-                                startAuction(content[1], Double.parseDouble(content[2]));
-                            }
-                            break;
-
-                        case ACLMessage.PROPOSE:
-                            if (auctionActive) {
-                                double proposedBid = Double.parseDouble(msg.getContent());
-                                handleBid(msg.getSender(), proposedBid);
-                            }
-                            break;
-                    }
-                }
-                block();
-            }
-        });
-    }
-
-    /**
-     * Handles a bid from a buyer.
-     * @param bidder The AID of the bidder.
-     * @param proposedBid The amount of the bid.
-     */
-    private void handleBid(AID bidder, double proposedBid) {
-        if (proposedBid > currentMaxBid) {
-            // Accept and broadcast new max bid
-            currentMaxBid = proposedBid;
-            bids.put(bidder, proposedBid);
-
-            // Forward the bid to seller
-            ACLMessage forwardBid = new ACLMessage(ACLMessage.PROPOSE);
-            forwardBid.addReceiver(seller);
-            forwardBid.setContent(String.valueOf(proposedBid));
-            forwardBid.setReplyWith("bid-" + System.currentTimeMillis());
-            send(forwardBid);
-
-            // Broadcast new max bid to all buyers
-            broadcastMaxBid();
-
-            logArea.append("New highest bid: " + proposedBid + " from " + bidder.getLocalName() + "\n");
-        } else {
-            // Reject bid
-            ACLMessage reject = new ACLMessage(ACLMessage.REJECT_PROPOSAL);
-            reject.addReceiver(bidder);
-            reject.setContent("Bid too low. Current maximum: " + currentMaxBid);
-            send(reject);
-            logArea.append("Rejected bid " + proposedBid + " from " + bidder.getLocalName() + " (below maximum)\n");
-        }
-    }
-
-    /**
-     * Broadcasts the current maximum bid to all buyers.
-     */
-    private void broadcastMaxBid() {
-        ACLMessage broadcast = new ACLMessage(ACLMessage.INFORM);
-        buyers.forEach(broadcast::addReceiver);
-        broadcast.setContent("MAX_BID;" + currentMaxBid);
-        send(broadcast);
-        logArea.append("Broadcasting current maximum bid: " + currentMaxBid + "\n");
-    }
-
-    /**
-     * Starts an auction for a given item at a specified price.
-     * @param item The item to be auctioned.
-     * @param price The starting price of the auction.
-     */
-    private void startAuction(String item, double price) {
-        auctionActive = true;
-        currentMaxBid = price;
-        bids.clear();
-        logArea.append("Starting auction for " + item + "\n");
-
-        // Find buyers
-        DFAgentDescription template = new DFAgentDescription();
-        ServiceDescription sd = new ServiceDescription();
-        sd.setType("buyer");
-        template.addServices(sd);
-
-        try {
-            DFAgentDescription[] result = DFService.search(this, template);
-            buyers = Arrays.stream(result)
-                    .map(DFAgentDescription::getName)
-                    .collect(Collectors.toList());
-
-            if (!buyers.isEmpty()) {
-                // Send CFP to all buyers with initial price
-                ACLMessage cfp = new ACLMessage(ACLMessage.CFP);
-                buyers.forEach(cfp::addReceiver);
-                cfp.setContent(item + ";" + price);
-                send(cfp);
-                logArea.append("Sent CFP to " + buyers.size() + " buyers\n");
-
-                // Initial broadcast of minimum price as current max bid
-                broadcastMaxBid();
-            } else {
-                logArea.append("No buyers found\n");
-            }
-        } catch (FIPAException fe) {
-            fe.printStackTrace();
-        }
-    }
-
-    /**
-     * Creates the GUI for the auctioneer agent.
-     */
-    private void createGUI() {
-        frame = new JFrame("Auctioneer: " + getLocalName());
-
-        logArea = new JTextArea(15, 40);
-        logArea.setEditable(false);
-        JScrollPane scrollPane = new JScrollPane(logArea);
-        scrollPane.setBorder(BorderFactory.createTitledBorder("Auction Log"));
-
-        frame.add(scrollPane);
-        frame.pack();
-        frame.setLocationRelativeTo(null);
-        frame.setVisible(true);
-    }
-
-    /**
-     * Called when the agent is taken down.
-     * Disposes of the GUI.
-     */
-    protected void takeDown() {
-        frame.dispose();
-    }
-}
\ No newline at end of file
+package ma.fstm.ilisi.tp4;
+
+import jade.core.Agent;
+import jade.core.behaviours.TickerBehaviour;
+import jade.core.behaviours.WakerBehaviour;
+import jade.domain.DFService;
+import jade.domain.FIPAAgentManagement.SearchConstraints;
+import jade.lang.acl.ACLMessage;
+import jade.lang.acl.MessageTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * AuctioneerAgent is a JADE agent that manages auction processes.
+ * It handles the publication of new offers, starts auctions, and processes bids from buyers.
+ * Many lots run at once; every message of a lot carries its auction id in the conversation-id.
+ * Each auctioneer registers in the DF as a shard; sellers pick the shard of a lot with a {@link ShardRing}.
+ * The "broadcast-window" argument (milliseconds) coalesces the max-bid broadcasts of a lot,
+ * and "broadcast-delta" skips the buyer already holding the maximum.
+ * The deadlines of all lots live in one {@link TimingWheel} turned every "timer-tick" milliseconds;
+ * "anti-snipe" (milliseconds) and "more-time" (seconds) set how deadlines are extended.
+ * "proxy-increment" is the step, in major units, of the bids placed on behalf of hidden maxima.
+ * With "batch-clearing", the lots closing in the same turn of the wheel are cleared together by a {@link BatchClearing}.
+ * With a "journal" path, the events of the lots are written to a {@link MappedAuctionJournal},
+ * forced to disk every "journal-sync" milliseconds, and replayed on startup. Every "snapshot-interval"
+ * milliseconds (30 seconds, 0 for never) the journal starts over from a snapshot of the open lots and
+ * of the buyers known, so a warm restart reads little and offers lots without waiting for the DF.
+ * After "resume-delay" milliseconds, the lots restored are offered again to their sellers and buyers.
+ * Bid counters, broadcasts and the message handling times are kept in {@link AgentMetrics}.
+ * The messages it sends are recorded by the {@link TrafficLog} of the JVM, if any.
+ * The mailbox is drained by a {@link MailboxBehaviour}, up to "mailbox-batch" messages at a time, bids first.
+ * The DF is only called from {@link Offloader} threads, so a lookup never stalls the bids.
+ * The buyers come from a {@link BuyerDirectory} fed by a DF subscription; a lot with a "category"
+ * is only offered to the buyers of that category, and its updates go to a {@link Topic} that buyers
+ * leave and join with LEAVE and JOIN requests.
+ * The auction logic lives in {@link AuctioneerCore}; the Swing frame is only created
+ * when the agent is not started with the "headless" argument.
+ */
+public class AuctioneerAgent extends Agent {
+    private static final long serialVersionUID = 1L;
+
+    private transient AuctioneerGui gui;
+    private transient AuctioneerCore core;
+    private transient MappedAuctionJournal journal;
+    private transient AgentMetrics metrics;
+    private transient Offloader offloader;
+    private final transient BuyerDirectory buyers = new BuyerDirectory();
+    private ACLMessage subscription;
+
+    /**
+     * Setup method is called when the agent is initialized.
+     * It registers the shard with the DF, creates the GUI unless headless
+     * and adds the main behavior for handling messages.
+     */
+    protected void setup() {
+        offloader = new Offloader(this);
+        offloader.run(() -> {
+            ShardDirectory.register(this);
+            return null;
+        });
+
+        // Keep the buyer directory up to date instead of searching the DF for every lot
+        SearchConstraints all = new SearchConstraints();
+        all.setMaxResults(-1L);
+        subscription = DFService.createSubscriptionMessage(this, getDefaultDF(), BuyerDirectory.template(), all);
+        if (subscription.getConversationId() == null) {
+            subscription.setConversationId("buyers-" + getName());
+        }
+        send(subscription);
+
+        AgentArgs args = AgentArgs.of(getArguments());
+        if (!args.isHeadless()) {
+            gui = new AuctioneerGui(getLocalName());
+        }
+        TimingWheel deadlines = new TimingWheel(args.getInt("timer-tick", 10), System::currentTimeMillis,
+                auctionId -> core.deadlineReached(auctionId));
+        if (args.has("journal")) {
+            journal = new MappedAuctionJournal(Path.of(args.get("journal", null)),
+                    args.getInt("journal-region", 8 << 20));
+        }
+        metrics = new AgentMetrics(this);
+        Consumer<ACLMessage> send = TrafficLog.tap(this, this::send);
+        core = AuctioneerCore.fromArgs(metrics.sender(journal != null ? journal.gate(send) : send),
+                gui != null ? gui : AuctioneerView.NONE, deadlines, args,
+                journal != null ? journal : AuctionJournal.NONE);
+        registerMetrics(metrics.getMetrics(), deadlines);
+        AuctioneerInbox inbox = new AuctioneerInbox(core, this::startAuction);
+
+        if (journal != null) {
+            // Rebuild the open lots and the buyers, then start a new generation of the journal from them
+            try {
+                journal.recover(core.recovery(buyers::restore));
+                journal.open(this::snapshot);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+
+            // Give the sellers and buyers restarted with the platform time to come back before resuming their lots
+            addBehaviour(new WakerBehaviour(this, args.getInt("resume-delay", 2000)) {
+                protected void onWake() {
+                    core.resume(buyers::contains);
+                }
+            });
+
+            // Compact the journal into a snapshot of the open lots and of the buyers now and then
+            int interval = args.getInt("snapshot-interval", 30000);
+            if (interval > 0) {
+                addBehaviour(new TickerBehaviour(this, interval) {
+                    protected void onTick() {
+                        try {
+                            journal.open(AuctioneerAgent.this::snapshot);
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                        }
+                    }
+                });
+            }
+
+            // Group commit: force the records of the last window to disk at once
+            addBehaviour(new TickerBehaviour(this, args.getInt("journal-sync", 2)) {
+                protected void onTick() {
+                    journal.sync();
+                }
+            });
+        }
+
+        // Turn the timing wheel, closing the lots whose deadline passed
+        addBehaviour(new TickerBehaviour(this, deadlines.getTickMillis()) {
+            protected void onTick() {
+                deadlines.advance();
+                core.clearClosing();
+            }
+        });
+
+        long window = core.getMaxBids().getWindowMillis();
+        if (window > 0) {
+            // Flush the coalesced max-bid broadcasts once per window
+            addBehaviour(new TickerBehaviour(this, window) {
+                protected void onTick() {
+                    core.flushBroadcasts();
+                }
+            });
+        }
+
+        // Bids first, then the messages of the sellers and the requests of the buyers
+        addBehaviour(new MailboxBehaviour(this, metrics, args.getInt("mailbox-batch", 64))
+                .priority(AuctionProtocol.match(ACLMessage.PROPOSE), inbox::onBid)
+                .on(AuctionProtocol.match(ACLMessage.INFORM), inbox::onSellerMessage)
+                .on(AuctionProtocol.match(ACLMessage.REQUEST), inbox::onRequest)
+                .on(offloader.template(), offloader::complete)
+                .on(MessageTemplate.MatchConversationId(subscription.getConversationId()), buyers::onNotification));
+    }
+
+    /**
+     * Writes the buyers known, then the lots, to start a new generation of the journal.
+     */
+    private void snapshot(AuctionJournal target) {
+        buyers.snapshot(target);
+        core.snapshot(target);
+    }
+
+    /**
+     * Exposes the counters of the auctioneer next to the message handling metrics.
+     */
+    private void registerMetrics(Metrics registry, TimingWheel deadlines) {
+        registry.counter("bids_received", core::getBidsReceived);
+        registry.counter("bids_accepted", core::getBidsAccepted);
+        registry.counter("bids_rejected", core::getBidsRejected);
+        registry.counter("bids_duplicate", core::getBidsDuplicate);
+        registry.counter("broadcasts_sent", core.getMaxBids()::getSent);
+        registry.counter("broadcasts_suppressed", core.getMaxBids()::getSuppressed);
+        registry.gauge("lots_open", core::getAuctionCount);
+        registry.gauge("deadlines_pending", deadlines::size);
+        registry.gauge("buyers_known", buyers::size);
+        registry.gauge("bidders_interned", core::getBidderCount);
+        if (journal != null) {
+            registry.counter("journal_records", journal::getRecords);
+            registry.counter("journal_syncs", journal::getSyncs);
+        }
+    }
+
+    /**
+     * Starts the auction of a lot with the buyers of its category. Until the subscription
+     * delivered its first notification, the buyers are searched in the DF on an offloader thread.
+     * @param auctionId The auction id.
+     * @param seconds The duration of the auction.
+     * @param category The category of the lot, or null.
+     */
+    private void startAuction(long auctionId, int seconds, String category) {
+        if (buyers.isReady()) {
+            core.startAuction(auctionId, buyers.topic(category), seconds);
+            return;
+        }
+        SearchConstraints all = new SearchConstraints();
+        all.setMaxResults(-1L);
+        offloader.submit(() -> DFService.search(this, BuyerDirectory.template(), all), result -> {
+            buyers.apply(result);
+            core.startAuction(auctionId, buyers.topic(category), seconds);
+        });
+    }
+
+    /**
+     * Called when the agent is taken down.
+     * Deregisters the shard from the DF, cancels the buyer subscription and disposes of the GUI if there is one.
+     */
+    protected void takeDown() {
+        DirectoryFacilitator.deregister(this);
+        send(DFService.createCancelMessage(this, getDefaultDF(), subscription));
+        offloader.shutdown();
+        if (journal != null) {
+            journal.close();
+        }
+        metrics.unregister();
+        if (gui != null) {
+            gui.dispose();
+        }
+    }
+}
@@ -0,0 +1,1008 @@
+package ma.fstm.ilisi.tp4;
+
+import jade.core.AID;
+import jade.lang.acl.ACLMessage;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * AuctioneerCore holds the auction logic of the auctioneer, independently of any GUI.
+ * It runs many lots at once, each identified by the auction id carried in the
+ * conversation-id of its messages, validates bids and sends the resulting messages.
+ * The auctioneer owns the clock of every lot: it closes a lot at its deadline and tells the seller,
+ * extends it on request and, with anti-sniping, when a bid arrives in its last moments.
+ * Buyers may also leave a hidden maximum: the auctioneer then bids for them, and settles
+ * competing maxima at once at the second highest plus one increment, like eBay's proxy bidding.
+ * Each lot is auctioned in the format its seller asked for, by one of the {@link AuctionMechanism}s
+ * registered with the core: English by default, sealed first-price, Vickrey or Dutch.
+ * With batch clearing, the lots whose deadline passes in the same turn of the timers are cleared
+ * together by a {@link BatchClearing}, with the bundle bids placed on several of them.
+ */
+public class AuctioneerCore {
+    private final Consumer<ACLMessage> sender;
+    private final AuctioneerView view;
+    private final AuctionTimers timers;
+    private final AuctionCodec codec;
+    private final MaxBidCoalescer maxBids;
+    private final long antiSnipeMillis;
+    private final int moreTimeSeconds;
+    private final long proxyIncrement;
+    private final AuctionJournal journal;
+    private final AuctionRegistry auctions = new AuctionRegistry();
+    /** The bidders of every lot, interned once into the ids their bid books are indexed by. */
+    private final BidderRegistry bidders = new BidderRegistry();
+    private final Map<String, AuctionMechanism> mechanisms = new HashMap<>();
+    private final Map<Long, List<BatchClearing.Bundle>> bundles = new HashMap<>();
+    private final List<Auction> closing = new ArrayList<>();
+    private BatchClearing clearing;
+    private long bidsReceived;
+    private long bidsAccepted;
+    private long bidsRejected;
+    private long bidsDuplicate;
+
+    /**
+     * @param sender Sends messages on behalf of the agent.
+     * @param view The view notified of auction events, {@link AuctioneerView#NONE} when headless.
+     * @param timers Schedules the deadline of each lot.
+     * @param codec Writes the content of the messages sent.
+     * @param broadcastWindowMillis The flush window of the max-bid broadcasts, 0 to send each update at once.
+     * @param broadcastDelta true to skip the buyer holding the current maximum in the broadcasts.
+     * @param antiSnipeMillis A bid accepted this close to the deadline pushes it back to this far away, 0 to disable.
+     * @param moreTimeSeconds The extension granted when a buyer asks for more time.
+     * @param proxyIncrement The amount a proxy bid adds to the price it beats, in minor units.
+     * @param journal Records the events of the lots, {@link AuctionJournal#NONE} to keep them in memory only.
+     */
+    public AuctioneerCore(Consumer<ACLMessage> sender, AuctioneerView view, AuctionTimers timers, AuctionCodec codec,
+                          long broadcastWindowMillis, boolean broadcastDelta, long antiSnipeMillis,
+                          int moreTimeSeconds, long proxyIncrement, AuctionJournal journal) {
+        this.sender = sender;
+        this.view = view;
+        this.timers = timers;
+        this.codec = codec;
+        this.antiSnipeMillis = antiSnipeMillis;
+        this.moreTimeSeconds = moreTimeSeconds;
+        this.proxyIncrement = proxyIncrement;
+        this.journal = journal;
+        this.maxBids = new MaxBidCoalescer(sender, codec, view::maxBidBroadcast, broadcastWindowMillis, broadcastDelta);
+        register(AuctionMechanism.ENGLISH);
+        register(new SealedBidAuction(false));
+        register(new SealedBidAuction(true));
+        register(new DutchAuction(2, 20));
+    }
+
+    /**
+     * Creates a core configured by the arguments of an auctioneer agent: "codec", "broadcast-window",
+     * "broadcast-delta", "anti-snipe", "more-time" and "proxy-increment", and for the Dutch lots
+     * "dutch-start", the starting price as a multiple of the minimum price, and "dutch-steps".
+     * With "batch-clearing", the lots are cleared in batches on the common fork-join pool.
+     * @param sender Sends messages on behalf of the agent.
+     * @param view The view notified of auction events.
+     * @param timers Schedules the deadline of each lot.
+     * @param args The agent arguments.
+     * @param journal Records the events of the lots.
+     * @return The core.
+     */
+    public static AuctioneerCore fromArgs(Consumer<ACLMessage> sender, AuctioneerView view, AuctionTimers timers,
+                                          AgentArgs args, AuctionJournal journal) {
+        AuctioneerCore core = new AuctioneerCore(sender, view, timers, AuctionCodec.fromArgs(args),
+                args.getInt("broadcast-window", 0), Boolean.parseBoolean(args.get("broadcast-delta", "false")),
+                args.getInt("anti-snipe", 0), args.getInt("more-time", 30),
+                Money.toMinor(args.getDouble("proxy-increment", 1)), journal);
+        core.register(new DutchAuction(args.getDouble("dutch-start", 2), args.getInt("dutch-steps", 20)));
+        if (Boolean.parseBoolean(args.get("batch-clearing", "false"))) {
+            core.enableBatchClearing(ForkJoinPool.commonPool());
+        }
+        return core;
+    }
+
+    /**
+     * Clears the lots in batches from now on: the auctioneer determines the winners and tells the
+     * sellers and bidders itself, and accepts bundle bids. The agent must then call
+     * {@link #clearClosing()} after each turn of the timers.
+     * @param pool The pool clearing large batches in parallel.
+     */
+    public void enableBatchClearing(ForkJoinPool pool) {
+        clearing = new BatchClearing(pool);
+    }
+
+    /**
+     * Adds an auction format, or replaces the one of the same name, for the lots published from now on.
+     * @param mechanism The mechanism, named by the sellers asking for it.
+     */
+    public final void register(AuctionMechanism mechanism) {
+        mechanisms.put(mechanism.getName(), mechanism);
+    }
+
+    /**
+     * Records a new offer published by a seller.
+     * @param auctionId The auction id chosen by the seller.
+     * @param seller The AID of the seller.
+     * @param item The item offered.
+     * @param minPrice The minimum price of the item, in minor units.
+     * @return false if the id is already live.
+     */
+    public boolean publish(long auctionId, AID seller, String item, long minPrice) {
+        return publish(auctionId, seller, item, minPrice, null);
+    }
+
+    /**
+     * Records a new offer published by a seller, auctioned in the given format.
+     * @param auctionId The auction id chosen by the seller.
+     * @param seller The AID of the seller.
+     * @param item The item offered.
+     * @param minPrice The minimum price of the item, in minor units.
+     * @param format The name of a registered {@link AuctionMechanism}; null or unknown for English.
+     * @return false if the id is already live, e.g. a lot restored by a warm restart; the offer is then ignored.
+     */
+    public boolean publish(long auctionId, AID seller, String item, long minPrice, String format) {
+        if (auctions.get(auctionId) != null) {
+            return false;
+        }
+        Auction auction = new Auction(auctionId, seller, item, minPrice, bidders);
+        auction.setMechanism(mechanisms.getOrDefault(format == null ? "" : format, AuctionMechanism.ENGLISH));
+        auctions.add(auction);
+        journal.published(auctionId, seller, item, minPrice);
+        if (auction.getMechanism() != AuctionMechanism.ENGLISH) {
+            journal.format(auctionId, auction.getMechanism().getName());
+        }
+        view.offerPublished(auction);
+        return true;
+    }
+
+    /**
+     * Starts the auction of a published lot. The lot gets its own topic, forked from the topic
+     * of the buyers invited, that buyers then join and leave while it runs.
+     * @param auctionId The auction id.
+     * @param buyers The topic of the buyers invited, e.g. those of the category of the lot.
+     * @param seconds The duration of the auction.
+     */
+    public void startAuction(long auctionId, Topic buyers, int seconds) {
+        Auction auction = auctions.get(auctionId);
+        if (auction == null || auction.isActive()) {
+            // Unknown, or already running: a second START must not wipe its bids
+            return;
+        }
+        auction.setActive(true);
+        auction.setCurrentMaxBid(auction.getMinPrice());
+        auction.getBids().clear();
+        auction.getProxies().clear();
+        auction.setTopic(buyers.fork(topicName(auctionId)));
+        auction.setDeadline(timers.now() + seconds * 1000L);
+        timers.schedule(auctionId, auction.getMechanism().open(auction, seconds * 1000L));
+        journal.started(auctionId, auction.getBuyers(), auction.getDeadline());
+        view.auctionStarted(auction);
+
+        if (auction.getTopic().size() > 0) {
+            // Send CFP to all buyers with initial price
+            ACLMessage cfp = auction.getTopic().message(ACLMessage.CFP);
+            // The minimum price, or the starting price of a Dutch lot
+            codec.writeCfp(cfp, auctionId, auction.getItem(), auction.getCurrentMaxBid(), seconds);
+            setFormat(cfp, auction);
+            sender.accept(cfp);
+            view.cfpSent(auction, auction.getTopic().size());
+
+            // Initial broadcast of minimum price as current max bid
+            if (auction.getMechanism().isOpenOutcry()) {
+                maxBids.update(auction);
+            }
+        } else {
+            view.noBuyers(auction);
+        }
+    }
+
+    /**
+     * Handles an unsequenced bid from a buyer.
+     * @param auctionId The auction id.
+     * @param bidder The AID of the bidder.
+     * @param proposedBid The amount of the bid, in minor units.
+     */
+    public void handleBid(long auctionId, AID bidder, long proposedBid) {
+        handleBid(auctionId, bidder, proposedBid, 0, 0);
+    }
+
+    /**
+     * Handles a bid from a buyer. A retransmitted bid, whose sequence number the bidder already used
+     * on the lot, is not applied again: it is answered from the current state of the lot.
+     * A refused bid gets a compact REJECT with the current maximum and its sequence number,
+     * {@link AuctionCodec#REASON_STALE} if the bid was based on an older maximum.
+     * @param auctionId The auction id.
+     * @param bidder The AID of the bidder.
+     * @param proposedBid The amount of the bid, in minor units.
+     * @param seq The bidder's own sequence number, 0 if unsequenced.
+     * @param baseSeq The max-bid sequence number the bidder saw when bidding, 0 if unknown.
+     */
+    public void handleBid(long auctionId, AID bidder, long proposedBid, long seq, long baseSeq) {
+        Auction auction = auctions.get(auctionId);
+        if (isRetransmission(auction, bidder, seq)) {
+            if (standing(auction, bidder) == BidBatch.REJECTED) {
+                reject(auction, bidder, AuctionCodec.REASON_TOO_LOW);
+            }
+            return;
+        }
+        switch (evaluate(auction, bidder, proposedBid, seq)) {
+            case BidBatch.ACCEPTED:
+                if (auction.getMechanism().isOpenOutcry()) {
+                    forward(auction, bidder, proposedBid);
+                    resolveProxies(auction);
+                }
+                break;
+
+            case BidBatch.REJECTED:
+                boolean stale = baseSeq != 0 && baseSeq < auction.getMaxBidSeq();
+                reject(auction, bidder, stale ? AuctionCodec.REASON_STALE : AuctionCodec.REASON_TOO_LOW);
+                break;
+        }
+    }
+
+    /**
+     * Drops a bid the bidder already sent on a running lot, counting it.
+     */
+    private boolean isRetransmission(Auction auction, AID bidder, long seq) {
+        if (auction == null || !auction.isActive() || auction.admitSeq(bidder, seq)) {
+            return false;
+        }
+        bidsReceived++;
+        bidsDuplicate++;
+        return true;
+    }
+
+    /**
+     * @return {@link BidBatch#ACCEPTED} if the bidder holds the lead of an open-outcry lot,
+     * or a bid in the book of another format, {@link BidBatch#REJECTED} otherwise.
+     */
+    private byte standing(Auction auction, AID bidder) {
+        boolean holds = auction.getMechanism().isOpenOutcry()
+                ? auction.getBids().isBest(bidder)
+                : auction.getBids().contains(bidder);
+        return holds ? BidBatch.ACCEPTED : BidBatch.REJECTED;
+    }
+
+    /**
+     * Records an unsequenced hidden maximum of a buyer.
+     * @param auctionId The auction id.
+     * @param bidder The AID of the bidder.
+     * @param maxAmount The highest amount the buyer pays, in minor units.
+     */
+    public void handleProxyBid(long auctionId, AID bidder, long maxAmount) {
+        handleProxyBid(auctionId, bidder, maxAmount, 0);
+    }
+
+    /**
+     * Records the hidden maximum of a buyer, replacing any previous one, and bids for the buyer
+     * right away if another buyer holds the current maximum. A retransmission is ignored.
+     * @param auctionId The auction id.
+     * @param bidder The AID of the bidder.
+     * @param maxAmount The highest amount the buyer pays, in minor units.
+     * @param seq The bidder's own sequence number, 0 if unsequenced.
+     */
+    public void handleProxyBid(long auctionId, AID bidder, long maxAmount, long seq) {
+        Auction auction = auctions.get(auctionId);
+        if (isRetransmission(auction, bidder, seq)) {
+            return;
+        }
+        bidsReceived++;
+        if (auction == null || !auction.isActive()) {
+            return;
+        }
+        if (!auction.getMechanism().isOpenOutcry()) {
+            bidsRejected++;
+            view.bidRejected(auction, bidder, maxAmount);
+            reject(auction, bidder, AuctionCodec.REASON_FORMAT);
+            return;
+        }
+        boolean leads = auction.getBids().isBest(bidder);
+        if (maxAmount <= auction.getCurrentMaxBid() && !(leads && maxAmount == auction.getCurrentMaxBid())) {
+            bidsRejected++;
+            view.bidRejected(auction, bidder, maxAmount);
+            reject(auction, bidder, AuctionCodec.REASON_TOO_LOW);
+            return;
+        }
+        auction.getProxies().place(bidder, maxAmount);
+        journal.proxy(auctionId, bidder, maxAmount, seq);
+        resolveProxies(auction);
+    }
+
+    /**
+     * Settles the hidden maxima of a lot in one step. The proxy with the highest maximum,
+     * the earliest on a tie, takes the lead at the second highest maximum, or the current
+     * maximum if a buyer without proxy holds it, plus one increment, capped at its own maximum.
+     * The proxies left below the new price are dropped and their owners told.
+     */
+    private void resolveProxies(Auction auction) {
+        BidBook proxies = auction.getProxies();
+        BidBook.Bid top;
+        while ((top = proxies.best()) != null) {
+            boolean topLeads = auction.getBids().isBest(top.getBidder());
+            if (!topLeads && top.getAmount() <= auction.getCurrentMaxBid()) {
+                // Outbid beyond its maximum, the next proxy may still answer
+                proxies.remove(top.getBidder());
+                journal.dropped(auction.getId(), top.getBidder());
+                reject(auction, top.getBidder(), AuctionCodec.REASON_OUTBID);
+                continue;
+            }
+            BidBook.Bid runnerUp = proxies.runnerUp();
+            long rival = runnerUp != null ? runnerUp.getAmount() : BidBook.NO_BID;
+            if (!topLeads) {
+                rival = Math.max(rival, auction.getCurrentMaxBid());
+            }
+            if (rival != BidBook.NO_BID) {
+                long price = Math.min(top.getAmount(), rival + proxyIncrement);
+                if (price > auction.getCurrentMaxBid() && evaluate(auction, top.getBidder(), price, 0) == BidBatch.ACCEPTED) {
+                    forward(auction, top.getBidder(), price);
+                }
+            }
+            break;
+        }
+        AID holder = auction.getBids().best() != null ? auction.getBids().best().getBidder() : null;
+        for (BidBook.Bid dropped : proxies.removeAtOrBelow(auction.getCurrentMaxBid(), holder)) {
+            journal.dropped(auction.getId(), dropped.getBidder());
+            reject(auction, dropped.getBidder(), AuctionCodec.REASON_OUTBID);
+        }
+    }
+
+    /**
+     * Forwards an accepted bid to the seller, the bidder travels in the reply-to field.
+     */
+    private void forward(Auction auction, AID bidder, long amount) {
+        ACLMessage forwardBid = new ACLMessage(ACLMessage.PROPOSE);
+        forwardBid.addReceiver(auction.getSeller());
+        forwardBid.addReplyTo(bidder);
+        codec.writeBid(forwardBid, auction.getId(), amount, auction.getMaxBidSeq());
+        forwardBid.setReplyWith("bid-" + System.currentTimeMillis());
+        sender.accept(forwardBid);
+    }
+
+    /**
+     * Tells a bidder that a bid was refused, with the current maximum of the lot and its sequence number.
+     */
+    private void reject(Auction auction, AID bidder, byte reason) {
+        ACLMessage reject = new ACLMessage(ACLMessage.REJECT_PROPOSAL);
+        reject.addReceiver(bidder);
+        codec.writeReject(reject, auction.getId(), reason, auction.getCurrentMaxBid(), auction.getMaxBidSeq());
+        sender.accept(reject);
+    }
+
+    /**
+     * Handles the bids of a buyer on many lots, received in one BID_BATCH message.
+     * The bidder gets a single BID_RESULTS message with the outcome of every entry,
+     * and each seller gets a single BID_BATCH message with the accepted bids on its lots.
+     * A retransmitted entry is reported from the current state of its lot without being applied again.
+     * @param bidder The AID of the bidder.
+     * @param batch The frame holding the bids.
+     */
+    public void handleBids(AID bidder, AuctionCodec.Frame batch) {
+        BidBatch results = new BidBatch(batch.getCount());
+        Map<AID, BidBatch> forwards = new HashMap<>();
+        for (int i = 0; i < batch.getCount(); i++) {
+            long auctionId = batch.getAuctionId(i);
+            long proposedBid = batch.getAmount(i);
+            Auction auction = auctions.get(auctionId);
+            if (isRetransmission(auction, bidder, batch.getSeq(i))) {
+                results.add(auctionId, standing(auction, bidder), auction.getCurrentMaxBid(), auction.getMaxBidSeq());
+                continue;
+            }
+            byte status = evaluate(auction, bidder, proposedBid, batch.getSeq(i));
+            if (status == BidBatch.CLOSED) {
+                results.add(auctionId, status, proposedBid, 0);
+                continue;
+            }
+            if (status == BidBatch.ACCEPTED && auction.getMechanism().isOpenOutcry()) {
+                forwards.computeIfAbsent(auction.getSeller(), seller -> new BidBatch())
+                        .add(auctionId, proposedBid, auction.getMaxBidSeq());
+            }
+            results.add(auctionId, status, auction.getCurrentMaxBid(), auction.getMaxBidSeq());
+        }
+
+        // Forward the accepted bids, one message per seller
+        forwards.forEach((seller, accepted) -> {
+            ACLMessage forwardBids = new ACLMessage(ACLMessage.PROPOSE);
+            forwardBids.addReceiver(seller);
+            forwardBids.addReplyTo(bidder);
+            codec.writeBidBatch(forwardBids, accepted);
+            sender.accept(forwardBids);
+        });
+
+        ACLMessage reply = new ACLMessage(ACLMessage.INFORM);
+        reply.addReceiver(bidder);
+        codec.writeBidResults(reply, results);
+        sender.accept(reply);
+
+        // Let the proxies of the lots answer the accepted bids
+        for (int i = 0; i < results.size(); i++) {
+            Auction auction = auctions.get(results.getAuctionId(i));
+            if (results.getStatus(i) == BidBatch.ACCEPTED && auction != null && auction.getMechanism().isOpenOutcry()) {
+                resolveProxies(auction);
+            }
+        }
+    }
+
+    /**
+     * Records an all-or-nothing bid of a buyer on several lots, cleared with them if they close
+     * in the same batch. The bidder gets a single BID_RESULTS message: every entry is accepted,
+     * or refused if batch clearing is off or one lot is unknown, closed, Dutch, listed twice
+     * or offered less than its minimum price.
+     * @param bidder The AID of the bidder.
+     * @param frame The frame holding the lots of the bundle and the amount offered for each.
+     */
+    public void handleBundleBid(AID bidder, AuctionCodec.Frame frame) {
+        bidsReceived++;
+        int count = frame.getCount();
+        long[] auctionIds = new long[count];
+        long[] amounts = new long[count];
+        Set<Long> seen = new HashSet<>();
+        boolean valid = clearing != null && count > 0;
+        for (int i = 0; i < count; i++) {
+            auctionIds[i] = frame.getAuctionId(i);
+            amounts[i] = frame.getAmount(i);
+            Auction auction = auctions.get(auctionIds[i]);
+            valid &= auction != null && auction.isActive() && !auction.getMechanism().closesOnAccept()
+                    && amounts[i] >= auction.getMinPrice() && seen.add(auctionIds[i]);
+        }
+
+        BidBatch results = new BidBatch(count);
+        for (int i = 0; i < count; i++) {
+            Auction auction = auctions.get(auctionIds[i]);
+            if (auction == null || !auction.isActive()) {
+                results.add(auctionIds[i], BidBatch.CLOSED, amounts[i], 0);
+            } else {
+                results.add(auctionIds[i], valid ? BidBatch.ACCEPTED : BidBatch.REJECTED,
+                        auction.getCurrentMaxBid(), auction.getMaxBidSeq());
+            }
+        }
+        if (valid) {
+            bidsAccepted++;
+            addBundle(new BatchClearing.Bundle(bidder, auctionIds, amounts));
+            journal.bundle(bidder, auctionIds, amounts);
+        } else {
+            bidsRejected++;
+        }
+
+        ACLMessage reply = new ACLMessage(ACLMessage.INFORM);
+        reply.addReceiver(bidder);
+        codec.writeBidResults(reply, results);
+        sender.accept(reply);
+    }
+
+    private void addBundle(BatchClearing.Bundle bundle) {
+        for (long auctionId : bundle.getAuctionIds()) {
+            bundles.computeIfAbsent(auctionId, id -> new ArrayList<>(2)).add(bundle);
+        }
+    }
+
+    /**
+     * Drops the bundles on a lot that closes: they win with it or not at all.
+     */
+    private void dropBundles(long auctionId) {
+        List<BatchClearing.Bundle> dropped = bundles.remove(auctionId);
+        if (dropped == null) {
+            return;
+        }
+        for (BatchClearing.Bundle bundle : dropped) {
+            for (long other : bundle.getAuctionIds()) {
+                List<BatchClearing.Bundle> list = bundles.get(other);
+                if (list != null) {
+                    list.remove(bundle);
+                    if (list.isEmpty()) {
+                        bundles.remove(other);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Validates a bid and records it when the format of the lot accepts it.
+     * In open outcry the new maximum is broadcast; a Dutch lot closes on the bid.
+     * @param auction The lot, null if unknown.
+     * @param bidder The AID of the bidder.
+     * @param proposedBid The amount of the bid, in minor units.
+     * @param seq The bidder's own sequence number, journaled with the bid; 0 for a bid placed by the auctioneer.
+     * @return {@link BidBatch#ACCEPTED}, {@link BidBatch#REJECTED} or {@link BidBatch#CLOSED}.
+     */
+    private byte evaluate(Auction auction, AID bidder, long proposedBid, long seq) {
+        bidsReceived++;
+        if (auction == null || !auction.isActive()) {
+            return BidBatch.CLOSED;
+        }
+        AuctionMechanism mechanism = auction.getMechanism();
+        if (!mechanism.accept(auction, bidder, proposedBid)) {
+            bidsRejected++;
+            view.bidRejected(auction, bidder, proposedBid);
+            return BidBatch.REJECTED;
+        }
+        bidsAccepted++;
+        journal.bid(auction.getId(), bidder, proposedBid, seq);
+        view.bidAccepted(auction, bidder, proposedBid);
+        if (mechanism.closesOnAccept()) {
+            timers.cancel(auction.getId());
+            settle(auction);
+            forget(auction.getId());
+            return BidBatch.ACCEPTED;
+        }
+        if (!mechanism.isOpenOutcry()) {
+            // Sealed: nobody learns of the bid before the close
+            return BidBatch.ACCEPTED;
+        }
+
+        // Broadcast new max bid to all buyers, possibly coalesced with the next updates
+        maxBids.update(auction);
+
+        // Anti-sniping: a late bid leaves the other buyers time to answer
+        long now = timers.now();
+        if (antiSnipeMillis > 0 && auction.getDeadline() - now < antiSnipeMillis) {
+            extend(auction, now + antiSnipeMillis);
+        }
+        return BidBatch.ACCEPTED;
+    }
+
+    /**
+     * Grants a buyer's request for more time on a lot.
+     * @param auctionId The auction id.
+     * @param bidder The AID of the buyer asking for more time.
+     */
+    public void requestMoreTime(long auctionId, AID bidder) {
+        Auction auction = auctions.get(auctionId);
+        if (auction == null || !auction.isActive() || auction.getMechanism().closesOnAccept()) {
+            // The clock of a Dutch lot is its price
+            return;
+        }
+        extend(auction, auction.getDeadline() + moreTimeSeconds * 1000L);
+    }
+
+    /**
+     * Adds a buyer to the topic of a running lot, so it receives its updates,
+     * and sends it a CFP with the current maximum and the time left.
+     * @param auctionId The auction id.
+     * @param buyer The AID of the buyer.
+     */
+    public void join(long auctionId, AID buyer) {
+        Auction auction = auctions.get(auctionId);
+        if (auction != null && auction.isActive() && auction.getTopic().join(buyer)) {
+            ACLMessage cfp = new ACLMessage(ACLMessage.CFP);
+            cfp.addReceiver(buyer);
+            int secondsLeft = (int) ((auction.getDeadline() - timers.now() + 999) / 1000);
+            codec.writeCfp(cfp, auctionId, auction.getItem(), auction.getCurrentMaxBid(), Math.max(secondsLeft, 0));
+            setFormat(cfp, auction);
+            sender.accept(cfp);
+        }
+    }
+
+    /**
+     * Removes a buyer from the topic of a lot: it no longer receives the max-bid updates
+     * and deadline extensions of the lot, but its bids are still accepted.
+     * @param auctionId The auction id.
+     * @param buyer The AID of the buyer.
+     */
+    public void leave(long auctionId, AID buyer) {
+        Auction auction = auctions.get(auctionId);
+        if (auction != null && auction.getTopic() != null) {
+            auction.getTopic().leave(buyer);
+        }
+    }
+
+    /**
+     * Moves the deadline of a lot and informs its buyers and its seller of the time left.
+     * @param auction The lot.
+     * @param deadline The new deadline, in milliseconds.
+     */
+    private void extend(Auction auction, long deadline) {
+        long delay = deadline - timers.now();
+        auction.setDeadline(deadline);
+        timers.schedule(auction.getId(), delay);
+        journal.extended(auction.getId(), deadline);
+
+        int secondsLeft = (int) ((delay + 999) / 1000);
+        ACLMessage timeUpdate = auction.getTopic() == null
+                ? new ACLMessage(ACLMessage.INFORM) : auction.getTopic().message(ACLMessage.INFORM);
+        timeUpdate.addReceiver(auction.getSeller());
+        codec.writeTimeExtended(timeUpdate, auction.getId(), secondsLeft);
+        sender.accept(timeUpdate);
+        view.deadlineExtended(auction, secondsLeft);
+    }
+
+    /**
+     * Called when the timer of a lot fires: lowers the asking price of a Dutch lot,
+     * or closes a lot whose deadline passed and tells its seller, who announces the winner.
+     * @param auctionId The auction id.
+     */
+    public void deadlineReached(long auctionId) {
+        Auction auction = auctions.get(auctionId);
+        if (auction != null && auction.isActive()) {
+            long delay = auction.getMechanism().tick(auction, timers.now());
+            if (delay >= 0) {
+                journal.maxBid(auctionId, auction.getCurrentMaxBid(), auction.getMaxBidSeq());
+                timers.schedule(auctionId, delay);
+                maxBids.update(auction);
+                return;
+            }
+            if (clearing != null) {
+                // Cleared with the other lots of this turn of the timers
+                closing.add(auction);
+                return;
+            }
+            settle(auction);
+        }
+        forget(auctionId);
+    }
+
+    /**
+     * Answers a message that could not be read, see {@link AuctionCodec.Frame#isMalformed()}.
+     * @param msg The malformed message.
+     */
+    public void notUnderstood(ACLMessage msg) {
+        sender.accept(AuctionCodec.notUnderstood(msg));
+    }
+
+    /**
+     * Closes a lot after the seller stopped its auction. The bids of a sealed lot are
+     * only known here, so they are sent back to the seller, followed by the close.
+     * @param auctionId The auction id.
+     */
+    public void close(long auctionId) {
+        timers.cancel(auctionId);
+        Auction auction = auctions.get(auctionId);
+        if (auction != null && auction.isActive() && !auction.getMechanism().isOpenOutcry()) {
+            settle(auction);
+        }
+        forget(auctionId);
+    }
+
+    /**
+     * Tells the seller a lot is closed. In the formats without open outcry the seller has not seen
+     * the bids yet: they are forwarded first, in one pass over the book, the best one at the price it pays.
+     */
+    private void settle(Auction auction) {
+        AuctionMechanism mechanism = auction.getMechanism();
+        if (!mechanism.isOpenOutcry() && auction.getBids().size() > 0) {
+            long price = mechanism.clearingPrice(auction);
+            // Best first, so the seller keeps the winner on a tie with the price it pays
+            List<BidBook.Bid> bids = auction.getBids().top(auction.getBids().size());
+            for (int i = 0; i < bids.size(); i++) {
+                forward(auction, bids.get(i).getBidder(), i == 0 ? price : bids.get(i).getAmount());
+            }
+        }
+        ACLMessage close = new ACLMessage(ACLMessage.INFORM);
+        close.addReceiver(auction.getSeller());
+        codec.writeClose(close, auction.getId());
+        sender.accept(close);
+    }
+
+    /**
+     * Clears in one batch the lots whose deadline passed since the last call; a no-op without batch clearing.
+     * Each seller gets an AWARD for its lot, with the winner in the reply-to field, and each bidder a single
+     * BID_RESULTS message covering every lot of the batch it bid on: WON at its price, or LOST at the price
+     * of the winner, 0 if the lot is unsold.
+     */
+    public void clearClosing() {
+        if (closing.isEmpty()) {
+            return;
+        }
+        Set<BatchClearing.Bundle> candidates = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Auction auction : closing) {
+            candidates.addAll(bundles.getOrDefault(auction.getId(), List.of()));
+        }
+        BatchClearing.Result result = clearing.clear(closing, candidates);
+
+        Map<AID, BidBatch> notices = new HashMap<>();
+        for (int i = 0; i < closing.size(); i++) {
+            Auction auction = closing.get(i);
+            AID winner = result.getWinner(i);
+            long price = winner == null ? 0 : result.getPrice(i);
+            ACLMessage award = new ACLMessage(ACLMessage.INFORM);
+            award.addReceiver(auction.getSeller());
+            if (winner != null) {
+                award.addReplyTo(winner);
+            }
+            codec.writeAward(award, auction.getId(), price);
+            sender.accept(award);
+
+            Set<AID> bidders = new HashSet<>(auction.getBids().bidders());
+            for (BatchClearing.Bundle bundle : bundles.getOrDefault(auction.getId(), List.of())) {
+                bidders.add(bundle.getBidder());
+            }
+            for (AID bidder : bidders) {
+                notices.computeIfAbsent(bidder, b -> new BidBatch(4))
+                        .add(auction.getId(), bidder.equals(winner) ? BidBatch.WON : BidBatch.LOST, price, 0);
+            }
+        }
+        notices.forEach((bidder, results) -> {
+            ACLMessage notice = new ACLMessage(ACLMessage.INFORM);
+            notice.addReceiver(bidder);
+            codec.writeBidResults(notice, results);
+            sender.accept(notice);
+        });
+
+        for (Auction auction : closing) {
+            forget(auction.getId());
+        }
+        closing.clear();
+    }
+
+    /**
+     * Names the format of a lot in a CFP, unless it is English.
+     */
+    private static void setFormat(ACLMessage cfp, Auction auction) {
+        if (auction.getMechanism() != AuctionMechanism.ENGLISH) {
+            cfp.addUserDefinedParameter(AuctionProtocol.FORMAT, auction.getMechanism().getName());
+        }
+    }
+
+    /**
+     * @return The name of the topic of a lot.
+     */
+    private static String topicName(long auctionId) {
+        return "auction-" + auctionId;
+    }
+
+    /**
+     * Stops accepting bids for a lot and forgets it. The buyers following a running lot are told it closed,
+     * as those who did not bid hear from neither the seller nor the batch results.
+     */
+    private void forget(long auctionId) {
+        Auction auction = auctions.remove(auctionId);
+        dropBundles(auctionId);
+        if (auction != null) {
+            if (auction.isActive() && !auction.getBuyers().isEmpty()) {
+                ACLMessage close = auction.getTopic().message(ACLMessage.INFORM);
+                codec.writeClose(close, auctionId);
+                sender.accept(close);
+            }
+            auction.setActive(false);
+            journal.closed(auctionId);
+            view.auctionClosed(auction);
+        }
+    }
+
+    /**
+     * Returns a journal rebuilding the lots from replayed events, without sending any message.
+     * Call {@link #resume()} once the replay is over.
+     * @return The target of the replay.
+     */
+    public AuctionJournal recovery() {
+        return recovery((buyer, categories) -> { });
+    }
+
+    /**
+     * Returns a journal rebuilding the lots from replayed events, and handing over the buyers of a snapshot.
+     * @param buyers Called with each buyer and its categories, e.g. to fill a {@link BuyerDirectory}.
+     * @return The target of the replay.
+     */
+    public AuctionJournal recovery(BiConsumer<AID, Set<String>> buyers) {
+        return new AuctionJournal() {
+            public void published(long auctionId, AID seller, String item, long minPrice) {
+                auctions.add(new Auction(auctionId, seller, item, minPrice, bidders));
+            }
+
+            public void format(long auctionId, String format) {
+                Auction auction = auctions.get(auctionId);
+                if (auction != null) {
+                    auction.setMechanism(mechanisms.getOrDefault(format, AuctionMechanism.ENGLISH));
+                }
+            }
+
+            public void started(long auctionId, List<AID> buyers, long deadline) {
+                Auction auction = auctions.get(auctionId);
+                if (auction != null) {
+                    auction.setActive(true);
+                    auction.setCurrentMaxBid(auction.getMinPrice());
+                    auction.getBids().clear();
+                    auction.getProxies().clear();
+                    auction.setTopic(new Topic(topicName(auctionId), buyers));
+                    auction.setDeadline(deadline);
+                }
+            }
+
+            public void bid(long auctionId, AID bidder, long amount, long seq) {
+                Auction auction = auctions.get(auctionId);
+                if (auction != null) {
+                    auction.getMechanism().accept(auction, bidder, amount);
+                    auction.admitSeq(bidder, seq);
+                }
+            }
+
+            public void proxy(long auctionId, AID bidder, long maxAmount, long seq) {
+                Auction auction = auctions.get(auctionId);
+                if (auction != null) {
+                    auction.getProxies().place(bidder, maxAmount);
+                    auction.admitSeq(bidder, seq);
+                }
+            }
+
+            public void dropped(long auctionId, AID bidder) {
+                Auction auction = auctions.get(auctionId);
+                if (auction != null) {
+                    auction.getProxies().remove(bidder);
+                }
+            }
+
+            public void maxBid(long auctionId, long amount, long maxBidSeq) {
+                Auction auction = auctions.get(auctionId);
+                if (auction != null) {
+                    auction.setCurrentMaxBid(amount);
+                    auction.setMaxBidSeq(maxBidSeq);
+                }
+            }
+
+            public void bundle(AID bidder, long[] auctionIds, long[] amounts) {
+                addBundle(new BatchClearing.Bundle(bidder, auctionIds, amounts));
+            }
+
+            public void extended(long auctionId, long deadline) {
+                Auction auction = auctions.get(auctionId);
+                if (auction != null) {
+                    auction.setDeadline(deadline);
+                }
+            }
+
+            public void closed(long auctionId) {
+                auctions.remove(auctionId);
+                dropBundles(auctionId);
+            }
+
+            public void buyer(AID buyer, Set<String> categories) {
+                buyers.accept(buyer, categories);
+            }
+        };
+    }
+
+    /**
+     * Writes the events rebuilding the current lots, to start a new generation of a journal.
+     * @param target The journal written.
+     */
+    public void snapshot(AuctionJournal target) {
+        for (Auction auction : auctions.all()) {
+            target.published(auction.getId(), auction.getSeller(), auction.getItem(), auction.getMinPrice());
+            if (auction.getMechanism() != AuctionMechanism.ENGLISH) {
+                target.format(auction.getId(), auction.getMechanism().getName());
+            }
+            if (auction.isActive()) {
+                target.started(auction.getId(), auction.getBuyers(), auction.getDeadline());
+                // Accepted bids always raise the maximum in open outcry, so the ascending order replays them
+                // as they came; sealed bids replay best first, which keeps the earliest of equal bids ahead
+                List<BidBook.Bid> bids = auction.getBids().top(auction.getBids().size());
+                if (auction.getMechanism().isOpenOutcry()) {
+                    Collections.reverse(bids);
+                }
+                // Each with the last sequence number of its bidder; a bidder whose bids were all refused
+                // is not written, a retransmission of them is refused again
+                for (BidBook.Bid bid : bids) {
+                    target.bid(auction.getId(), bid.getBidder(), bid.getAmount(), auction.getLastSeq(bid.getBidder()));
+                }
+                List<BidBook.Bid> proxies = auction.getProxies().top(auction.getProxies().size());
+                for (int i = proxies.size() - 1; i >= 0; i--) {
+                    AID bidder = proxies.get(i).getBidder();
+                    target.proxy(auction.getId(), bidder, proxies.get(i).getAmount(), auction.getLastSeq(bidder));
+                }
+                // Replaying the standing bids alone counts fewer max-bid updates than the buyers saw
+                target.maxBid(auction.getId(), auction.getCurrentMaxBid(), auction.getMaxBidSeq());
+            }
+        }
+        // After their lots, each bundle once
+        Set<BatchClearing.Bundle> written = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (List<BatchClearing.Bundle> list : bundles.values()) {
+            for (BatchClearing.Bundle bundle : list) {
+                if (written.add(bundle)) {
+                    target.bundle(bundle.getBidder(), bundle.getAuctionIds(), bundle.getAmounts());
+                }
+            }
+        }
+    }
+
+    /**
+     * Resumes the lots rebuilt by a replay, once the agents restarted with the platform had time to come back.
+     * They lost the lots, so each one is offered again: its seller adopts it from a CFP with its minimum price,
+     * followed in the open formats by its standing bids, and the buyers of its topic still registered get
+     * a CFP with the current maximum and the time left. Then its deadline is scheduled again; a lot past its
+     * deadline closes at once. A Dutch lot goes on lowering its asking price from the journaled one.
+     * @param registered Tells whether a buyer is registered; the others are dropped from the lots.
+     */
+    public void resume(Predicate<AID> registered) {
+        long now = timers.now();
+        for (Auction auction : auctions.all()) {
+            if (auction.isActive()) {
+                reopen(auction, registered, (int) Math.max(0, (auction.getDeadline() - now + 999) / 1000));
+                timers.schedule(auction.getId(), auction.getMechanism().resume(auction, auction.getDeadline() - now));
+                view.auctionStarted(auction);
+            }
+        }
+    }
+
+    /**
+     * Offers a resumed lot again to its seller and to its buyers.
+     */
+    private void reopen(Auction auction, Predicate<AID> registered, int secondsLeft) {
+        ACLMessage adopt = new ACLMessage(ACLMessage.CFP);
+        adopt.addReceiver(auction.getSeller());
+        codec.writeCfp(adopt, auction.getId(), auction.getItem(), auction.getMinPrice(), secondsLeft);
+        setFormat(adopt, auction);
+        sender.accept(adopt);
+        if (auction.getMechanism().isOpenOutcry()) {
+            // Best first, so the seller ranks the ties as the book does
+            for (BidBook.Bid bid : auction.getBids().top(auction.getBids().size())) {
+                forward(auction, bid.getBidder(), bid.getAmount());
+            }
+        }
+
+        for (AID buyer : auction.getBuyers()) {
+            if (!registered.test(buyer)) {
+                auction.getTopic().leave(buyer);
+            }
+        }
+        if (!auction.getBuyers().isEmpty()) {
+            ACLMessage cfp = auction.getTopic().message(ACLMessage.CFP);
+            codec.writeCfp(cfp, auction.getId(), auction.getItem(), auction.getCurrentMaxBid(), secondsLeft);
+            setFormat(cfp, auction);
+            sender.accept(cfp);
+            if (auction.getMechanism().isOpenOutcry()) {
+                maxBids.update(auction);
+            }
+        }
+    }
+
+    /**
+     * @return The number of bidders interned since the core started.
+     */
+    public int getBidderCount() {
+        return bidders.size();
+    }
+
+    /**
+     * @return The number of lots currently known.
+     */
+    public int getAuctionCount() {
+        return auctions.size();
+    }
+
+    /**
+     * @return The lots currently known, published or running.
+     */
+    public Collection<Auction> getAuctions() {
+        return auctions.all();
+    }
+
+    /**
+     * @return The number of bids evaluated, including the bids placed for hidden maxima.
+     */
+    public long getBidsReceived() {
+        return bidsReceived;
+    }
+
+    /**
+     * @return The number of bids that raised the maximum of their lot.
+     */
+    public long getBidsAccepted() {
+        return bidsAccepted;
+    }
+
+    /**
+     * @return The number of bids and hidden maxima refused as too low.
+     */
+    public long getBidsRejected() {
+        return bidsRejected;
+    }
+
+    /**
+     * @return The number of retransmitted bids, answered without being applied again.
+     */
+    public long getBidsDuplicate() {
+        return bidsDuplicate;
+    }
+
+    /**
+     * Sends the max-bid broadcasts collapsed since the last flush.
+     */
+    public void flushBroadcasts() {
+        maxBids.flush();
+    }
+
+    /**
+     * @return The coalescer of the max-bid broadcasts, for its counters.
+     */
+    public MaxBidCoalescer getMaxBids() {
+        return maxBids;
+    }
+}
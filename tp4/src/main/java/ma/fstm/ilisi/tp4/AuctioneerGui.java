@@ -0,0 +1,83 @@
+package ma.fstm.ilisi.tp4;
+
+import jade.core.AID;
+
+import javax.swing.*;
+
+/**
+ * AuctioneerGui is the optional Swing view of an auctioneer agent.
+ * It shows the auction events in a log of the last {@value LogModel#DEFAULT_CAPACITY} lines,
+ * written by the event dispatch thread through {@link GuiUpdates}.
+ */
+public class AuctioneerGui implements AuctioneerView {
+    private final JFrame frame;
+    private final GuiUpdates updates = new GuiUpdates();
+    private final LogModel log = new LogModel(LogModel.DEFAULT_CAPACITY);
+
+    /**
+     * Creates and shows the GUI for the auctioneer agent.
+     * @param agentName The local name of the agent.
+     */
+    public AuctioneerGui(String agentName) {
+        frame = new JFrame("Auctioneer: " + agentName);
+
+        JScrollPane scrollPane = new JScrollPane(log.createList(updates, 15));
+        scrollPane.setBorder(BorderFactory.createTitledBorder("Auction Log"));
+
+        frame.add(scrollPane);
+        frame.pack();
+        frame.setLocationRelativeTo(null);
+        frame.setVisible(true);
+    }
+
+    public void offerPublished(Auction auction) {
+        log("New offer published: " + auction.getItem() + " at " + Money.format(auction.getMinPrice()));
+    }
+
+    public void auctionStarted(Auction auction) {
+        log("Starting auction for " + auction.getItem());
+    }
+
+    public void cfpSent(Auction auction, int buyerCount) {
+        log("Sent CFP for " + auction.getItem() + " to " + buyerCount + " buyers");
+    }
+
+    public void noBuyers(Auction auction) {
+        log("No buyers found for " + auction.getItem());
+    }
+
+    public void bidAccepted(Auction auction, AID bidder, long amount) {
+        log("New highest bid on " + auction.getItem() + ": " + Money.format(amount) + " from " + bidder.getLocalName());
+    }
+
+    public void bidRejected(Auction auction, AID bidder, long amount) {
+        log("Rejected bid " + Money.format(amount) + " on " + auction.getItem() + " from " + bidder.getLocalName() + " (below maximum)");
+    }
+
+    public void maxBidBroadcast(Auction auction) {
+        log("Broadcasting current maximum bid on " + auction.getItem() + ": " + Money.format(auction.getCurrentMaxBid()));
+    }
+
+    public void deadlineExtended(Auction auction, int secondsLeft) {
+        log("Deadline of " + auction.getItem() + " extended, " + secondsLeft + "s left");
+    }
+
+    public void auctionClosed(Auction auction) {
+        log("Auction closed for " + auction.getItem());
+    }
+
+    /**
+     * Queues a line of the log; the text is built on the calling thread.
+     */
+    private void log(String line) {
+        updates.post(() -> log.append(line));
+    }
+
+    /**
+     * Disposes of the frame.
+     */
+    public void dispose() {
+        updates.stop();
+        frame.dispose();
+    }
+}
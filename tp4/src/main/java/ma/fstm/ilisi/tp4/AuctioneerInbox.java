@@ -0,0 +1,141 @@
+package ma.fstm.ilisi.tp4;
+
+import jade.lang.acl.ACLMessage;
+
+/**
+ * AuctioneerInbox decodes the auction messages received by an auctioneer and calls its
+ * {@link AuctioneerCore}. The agent and the {@link ReplayEngine} share it, so a replayed
+ * message takes the same path as a live one.
+ */
+public class AuctioneerInbox {
+    /**
+     * Finds the buyers of a lot and starts its auction.
+     */
+    public interface Starter {
+        /**
+         * @param auctionId The auction id.
+         * @param seconds The duration of the auction.
+         * @param category The category of the lot, or null.
+         */
+        void start(long auctionId, int seconds, String category);
+    }
+
+    private final AuctioneerCore core;
+    private final Starter starter;
+    private final AuctionCodec.Frame frame = new AuctionCodec.Frame();
+
+    /**
+     * @param core The auction logic.
+     * @param starter Starts the auction of a lot once its seller asks for it.
+     */
+    public AuctioneerInbox(AuctioneerCore core, Starter starter) {
+        this.core = core;
+        this.starter = starter;
+    }
+
+    /**
+     * Handles any auction message, according to its performative.
+     * @param msg The message.
+     */
+    public void accept(ACLMessage msg) {
+        switch (msg.getPerformative()) {
+            case ACLMessage.PROPOSE:
+                onBid(msg);
+                break;
+
+            case ACLMessage.INFORM:
+                onSellerMessage(msg);
+                break;
+
+            case ACLMessage.REQUEST:
+                onRequest(msg);
+                break;
+        }
+    }
+
+    /**
+     * Handles a bid, a hidden maximum, a batch of bids or a bundle bid from a buyer.
+     * @param msg The PROPOSE message.
+     */
+    public void onBid(ACLMessage msg) {
+        if (!frame.wrap(msg)) {
+            if (frame.isMalformed()) {
+                core.notUnderstood(msg);
+            }
+            return;
+        }
+        switch (frame.getType()) {
+            case AuctionCodec.BID:
+                core.handleBid(frame.getAuctionId(), msg.getSender(), frame.getAmount(), frame.getSeq(), frame.getBaseSeq());
+                break;
+
+            case AuctionCodec.PROXY_BID:
+                core.handleProxyBid(frame.getAuctionId(), msg.getSender(), frame.getAmount(), frame.getSeq());
+                break;
+
+            case AuctionCodec.BID_BATCH:
+                core.handleBids(msg.getSender(), frame);
+                break;
+
+            case AuctionCodec.BUNDLE_BID:
+                core.handleBundleBid(msg.getSender(), frame);
+                break;
+        }
+    }
+
+    /**
+     * Handles the publication, start or stop of a lot by its seller.
+     * @param msg The INFORM message.
+     */
+    public void onSellerMessage(ACLMessage msg) {
+        if (!frame.wrap(msg)) {
+            if (frame.isMalformed()) {
+                core.notUnderstood(msg);
+            }
+            return;
+        }
+        long auctionId = frame.getAuctionId();
+        switch (frame.getType()) {
+            case AuctionCodec.PUBLISH:
+                // Handle publication of new offer
+                core.publish(auctionId, msg.getSender(), frame.getItem(), frame.getAmount(),
+                        msg.getUserDefinedParameter(AuctionProtocol.FORMAT));
+                break;
+
+            case AuctionCodec.START:
+                // Start the auction
+                starter.start(auctionId, frame.getSeconds(), msg.getUserDefinedParameter(AuctionProtocol.CATEGORY));
+                break;
+
+            case AuctionCodec.CLOSE:
+                core.close(auctionId);
+                break;
+        }
+    }
+
+    /**
+     * Handles the request of a buyer for more time on a lot, or to join or leave its topic.
+     * @param msg The REQUEST message.
+     */
+    public void onRequest(ACLMessage msg) {
+        if (!frame.wrap(msg)) {
+            if (frame.isMalformed()) {
+                core.notUnderstood(msg);
+            }
+            return;
+        }
+        switch (frame.getType()) {
+            case AuctionCodec.MORE_TIME:
+                core.requestMoreTime(frame.getAuctionId(), msg.getSender());
+                break;
+
+            case AuctionCodec.JOIN:
+                core.join(frame.getAuctionId(), msg.getSender());
+                break;
+
+            case AuctionCodec.LEAVE:
+                core.leave(frame.getAuctionId(), msg.getSender());
+                break;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package ma.fstm.ilisi.tp4;
+
+import jade.core.AID;
+
+/**
+ * AuctioneerView receives the events of an AuctioneerCore.
+ * All methods default to no-ops so headless agents can use {@link #NONE}.
+ * Amounts are in minor units, see {@link Money}.
+ */
+public interface AuctioneerView {
+    AuctioneerView NONE = new AuctioneerView() { };
+
+    default void offerPublished(Auction auction) { }
+
+    default void auctionStarted(Auction auction) { }
+
+    default void cfpSent(Auction auction, int buyerCount) { }
+
+    default void noBuyers(Auction auction) { }
+
+    default void bidAccepted(Auction auction, AID bidder, long amount) { }
+
+    default void bidRejected(Auction auction, AID bidder, long amount) { }
+
+    default void maxBidBroadcast(Auction auction) { }
+
+    default void deadlineExtended(Auction auction, int secondsLeft) { }
+
+    default void auctionClosed(Auction auction) { }
+}
@@ -0,0 +1,345 @@
+package ma.fstm.ilisi.tp4;
+
+import jade.core.AID;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * BatchClearing determines the winners of many lots closing at the same time, in one pass.
+ * Besides the bids of each lot, buyers may leave {@link Bundle bundle bids}: a bundle wins
+ * all its lots or none, and only when they all close in the same batch.
+ *
+ * <p>Lots linked by bundles form independent components, cleared in parallel on a fork-join pool.
+ * A component keeps the set of disjoint bundles bringing the most revenue over the single bids
+ * they displace: exactly up to {@value #EXACT_BUNDLES} bundles, greedily by surplus beyond.
+ * A lot without bundles only needs the best bid of its book, so most of a batch costs O(1) per lot.
+ * The lots and their books are only read; the caller must not change them while a batch clears.
+ */
+public class BatchClearing {
+    /** The largest number of bundles of a component searched exhaustively. */
+    static final int EXACT_BUNDLES = 16;
+    /** The number of components cleared by one task before the batch is split. */
+    private static final int COMPONENTS_PER_TASK = 256;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * An all-or-nothing bid on several lots: the bidder offers an amount per lot,
+     * and pays them all if it wins the bundle.
+     */
+    public static final class Bundle {
+        private final AID bidder;
+        private final long[] auctionIds;
+        private final long[] amounts;
+        private final long total;
+
+        /**
+         * @param bidder The AID of the bidder.
+         * @param auctionIds The lots of the bundle, each once.
+         * @param amounts The amount offered for each lot, in minor units.
+         */
+        public Bundle(AID bidder, long[] auctionIds, long[] amounts) {
+            this.bidder = bidder;
+            this.auctionIds = auctionIds;
+            this.amounts = amounts;
+            long sum = 0;
+            for (long amount : amounts) {
+                sum += amount;
+            }
+            this.total = sum;
+        }
+
+        public AID getBidder() {
+            return bidder;
+        }
+
+        public long[] getAuctionIds() {
+            return auctionIds;
+        }
+
+        /**
+         * @return The amount offered for each lot, in the order of {@link #getAuctionIds()}.
+         */
+        public long[] getAmounts() {
+            return amounts;
+        }
+
+        /**
+         * @return The sum of the amounts, in minor units.
+         */
+        public long getTotal() {
+            return total;
+        }
+    }
+
+    /**
+     * The outcome of a batch, in the order of the lots given.
+     */
+    public static final class Result {
+        private final AID[] winners;
+        private final long[] prices;
+
+        private Result(int size) {
+            winners = new AID[size];
+            prices = new long[size];
+        }
+
+        public int size() {
+            return winners.length;
+        }
+
+        /**
+         * @param i The index of a lot of the batch.
+         * @return The winner of the lot, or null if it is unsold.
+         */
+        public AID getWinner(int i) {
+            return winners[i];
+        }
+
+        /**
+         * @param i The index of a lot of the batch.
+         * @return The price the winner pays, in minor units.
+         */
+        public long getPrice(int i) {
+            return prices[i];
+        }
+    }
+
+    /**
+     * @param pool The pool clearing the components of large batches.
+     */
+    public BatchClearing(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Clears a batch of lots.
+     * @param lots The lots closing together.
+     * @param bundles The bundles on any of these lots; those with a lot outside the batch are ignored.
+     * @return The winner and price of each lot.
+     */
+    public Result clear(List<Auction> lots, Collection<Bundle> bundles) {
+        int n = lots.size();
+        Map<Long, Integer> index = new HashMap<>(n * 2);
+        for (int i = 0; i < n; i++) {
+            index.put(lots.get(i).getId(), i);
+        }
+
+        // Link the lots of each bundle that can be cleared in this batch
+        int[] parent = new int[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+        }
+        List<Bundle> eligible = new ArrayList<>();
+        List<int[]> eligibleLots = new ArrayList<>();
+        for (Bundle bundle : bundles) {
+            int[] positions = positions(bundle, index);
+            if (positions != null) {
+                eligible.add(bundle);
+                eligibleLots.add(positions);
+                for (int position : positions) {
+                    union(parent, positions[0], position);
+                }
+            }
+        }
+
+        // Group the lots and bundles by component
+        Map<Integer, Component> byRoot = new HashMap<>();
+        List<Component> components = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            int root = find(parent, i);
+            Component component = byRoot.get(root);
+            if (component == null) {
+                component = new Component();
+                byRoot.put(root, component);
+                components.add(component);
+            }
+            component.lots.add(i);
+        }
+        for (int b = 0; b < eligible.size(); b++) {
+            Component component = byRoot.get(find(parent, eligibleLots.get(b)[0]));
+            component.bundles.add(eligible.get(b));
+            component.bundleLots.add(eligibleLots.get(b));
+        }
+
+        Result result = new Result(n);
+        if (components.size() <= COMPONENTS_PER_TASK) {
+            for (Component component : components) {
+                component.clear(lots, result);
+            }
+        } else {
+            pool.invoke(new Task(components, 0, components.size(), lots, result));
+        }
+        return result;
+    }
+
+    /**
+     * @return The positions of the lots of a bundle in the batch, or null if one of them is not in it.
+     */
+    private static int[] positions(Bundle bundle, Map<Long, Integer> index) {
+        long[] auctionIds = bundle.getAuctionIds();
+        int[] positions = new int[auctionIds.length];
+        for (int i = 0; i < auctionIds.length; i++) {
+            Integer position = index.get(auctionIds[i]);
+            if (position == null) {
+                return null;
+            }
+            positions[i] = position;
+        }
+        return positions.length == 0 ? null : positions;
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        parent[find(parent, a)] = find(parent, b);
+    }
+
+    /**
+     * Clears a range of components, splitting it while it is large.
+     */
+    private static final class Task extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<Component> components;
+        private final int from;
+        private final int to;
+        private final transient List<Auction> lots;
+        private final transient Result result;
+
+        private Task(List<Component> components, int from, int to, List<Auction> lots, Result result) {
+            this.components = components;
+            this.from = from;
+            this.to = to;
+            this.lots = lots;
+            this.result = result;
+        }
+
+        protected void compute() {
+            if (to - from <= COMPONENTS_PER_TASK) {
+                for (int i = from; i < to; i++) {
+                    components.get(i).clear(lots, result);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Task(components, from, middle, lots, result), new Task(components, middle, to, lots, result));
+        }
+    }
+
+    /**
+     * Lots linked by bundles, cleared together; a lot without bundles is a component of its own.
+     * Each component writes the entries of its own lots in the result.
+     */
+    private static final class Component {
+        private final List<Integer> lots = new ArrayList<>(1);
+        private final List<Bundle> bundles = new ArrayList<>(0);
+        private final List<int[]> bundleLots = new ArrayList<>(0);
+        private long best;
+        private boolean[] bestChoice;
+
+        private void clear(List<Auction> auctions, Result result) {
+            for (int lot : lots) {
+                Auction auction = auctions.get(lot);
+                BidBook.Bid bid = auction.getBids().best();
+                if (bid != null) {
+                    result.winners[lot] = bid.getBidder();
+                    result.prices[lot] = auction.getMechanism().clearingPrice(auction);
+                }
+            }
+            if (bundles.isEmpty()) {
+                return;
+            }
+
+            // The surplus of a bundle over the single bids it displaces; a bundle without any never helps
+            int count = bundles.size();
+            Integer[] order = new Integer[count];
+            long[] surplus = new long[count];
+            for (int b = 0; b < count; b++) {
+                order[b] = b;
+                surplus[b] = bundles.get(b).getTotal();
+                for (int lot : bundleLots.get(b)) {
+                    surplus[b] -= result.prices[lot];
+                }
+            }
+            Arrays.sort(order, (a, b) -> Long.compare(surplus[b], surplus[a]));
+            Set<Integer> taken = new HashSet<>();
+            boolean[] choice = new boolean[count];
+            if (count <= EXACT_BUNDLES) {
+                best = 0;
+                bestChoice = new boolean[count];
+                search(order, surplus, 0, 0, taken, choice);
+                choice = bestChoice;
+            } else {
+                for (int b : order) {
+                    if (surplus[b] > 0 && fits(bundleLots.get(b), taken)) {
+                        take(bundleLots.get(b), taken);
+                        choice[b] = true;
+                    }
+                }
+            }
+            for (int b = 0; b < count; b++) {
+                if (choice[b]) {
+                    int[] positions = bundleLots.get(b);
+                    for (int i = 0; i < positions.length; i++) {
+                        result.winners[positions[i]] = bundles.get(b).getBidder();
+                        result.prices[positions[i]] = bundles.get(b).getAmounts()[i];
+                    }
+                }
+            }
+        }
+
+        /**
+         * Branch and bound over the bundles by decreasing surplus: a branch stops once
+         * the surplus of the bundles left cannot beat the best set found.
+         */
+        private void search(Integer[] order, long[] surplus, int next, long value, Set<Integer> taken, boolean[] choice) {
+            if (value > best) {
+                best = value;
+                bestChoice = choice.clone();
+            }
+            long bound = value;
+            for (int k = next; k < order.length && surplus[order[k]] > 0; k++) {
+                bound += surplus[order[k]];
+            }
+            if (next == order.length || surplus[order[next]] <= 0 || bound <= best) {
+                return;
+            }
+            int b = order[next];
+            int[] positions = bundleLots.get(b);
+            if (fits(positions, taken)) {
+                take(positions, taken);
+                choice[b] = true;
+                search(order, surplus, next + 1, value + surplus[b], taken, choice);
+                choice[b] = false;
+                for (int position : positions) {
+                    taken.remove(position);
+                }
+            }
+            search(order, surplus, next + 1, value, taken, choice);
+        }
+
+        private static boolean fits(int[] positions, Set<Integer> taken) {
+            for (int position : positions) {
+                if (taken.contains(position)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static void take(int[] positions, Set<Integer> taken) {
+            for (int position : positions) {
+                taken.add(position);
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package ma.fstm.ilisi.tp4;
+
+import java.util.Arrays;
+
+/**
+ * BidBatch is a reusable list of bid entries, one per lot, stored in primitive arrays.
+ * It is the payload of a BID_BATCH message (auction id, amount, sequence number),
+ * of a BUNDLE_BID message, whose entries are the lots of one all-or-nothing bid,
+ * and of a BID_RESULTS message, which adds a status per entry.
+ */
+public class BidBatch {
+    public static final byte ACCEPTED = 1;
+    public static final byte REJECTED = 2;
+    public static final byte CLOSED = 3;
+    /** The lot was cleared in a batch and went to the bidder, at the amount of the entry. */
+    public static final byte WON = 4;
+    /** The lot was cleared in a batch and went to another bidder, or stayed unsold. */
+    public static final byte LOST = 5;
+
+    private long[] auctionIds;
+    private long[] amounts;
+    private long[] seqs;
+    private byte[] statuses;
+    private int size;
+
+    public BidBatch() {
+        this(16);
+    }
+
+    /**
+     * @param capacity The initial number of entries.
+     */
+    public BidBatch(int capacity) {
+        auctionIds = new long[capacity];
+        amounts = new long[capacity];
+        seqs = new long[capacity];
+        statuses = new byte[capacity];
+    }
+
+    /**
+     * Adds a bid entry.
+     * @param auctionId The auction id.
+     * @param amount The amount in minor units.
+     * @param seq The sequence number.
+     */
+    public void add(long auctionId, long amount, long seq) {
+        add(auctionId, (byte) 0, amount, seq);
+    }
+
+    /**
+     * Adds a result entry.
+     * @param auctionId The auction id.
+     * @param status {@link #ACCEPTED}, {@link #REJECTED}, {@link #CLOSED}, {@link #WON} or {@link #LOST}.
+     * @param amount The current maximum of the lot, or the price it was cleared at, in minor units.
+     * @param seq The max-bid sequence number of the lot.
+     */
+    public void add(long auctionId, byte status, long amount, long seq) {
+        if (size == auctionIds.length) {
+            int capacity = Math.max(16, size * 2);
+            auctionIds = Arrays.copyOf(auctionIds, capacity);
+            amounts = Arrays.copyOf(amounts, capacity);
+            seqs = Arrays.copyOf(seqs, capacity);
+            statuses = Arrays.copyOf(statuses, capacity);
+        }
+        auctionIds[size] = auctionId;
+        amounts[size] = amount;
+        seqs[size] = seq;
+        statuses[size] = status;
+        size++;
+    }
+
+    public long getAuctionId(int i) {
+        return auctionIds[i];
+    }
+
+    public long getAmount(int i) {
+        return amounts[i];
+    }
+
+    public long getSeq(int i) {
+        return seqs[i];
+    }
+
+    public byte getStatus(int i) {
+        return statuses[i];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all entries, keeping the arrays for reuse.
+     */
+    public void clear() {
+        size = 0;
+    }
+}
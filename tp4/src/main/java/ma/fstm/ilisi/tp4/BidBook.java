@@ -0,0 +1,330 @@
+package ma.fstm.ilisi.tp4;
+
+import jade.core.AID;
+
+import java.util.*;
+
+/**
+ * BidBook is the order book of a single auction.
+ * Each bidder holds at most one standing bid; a new bid replaces the previous one.
+ * Bids are ranked by amount, then by arrival, so inserting costs O(log n),
+ * the best bid and the second best are available in O(1) and the top K bids are read in O(K log K).
+ *
+ * <p>Bidders are the ids of a {@link BidderRegistry}, shared by the lots of an auctioneer.
+ * The standing bids live in primitive arrays, kept dense by moving the last bid into the hole of a
+ * removed one, and are ranked by an indexed binary heap of their slots: a bid costs about fifty bytes
+ * and no object, whatever the number of bidders. {@link Bid}s are views created when read.
+ */
+public class BidBook {
+    /** Amount returned by {@link #bestAmount()} when the book is empty. */
+    public static final long NO_BID = -1;
+
+    private static final Comparator<Bid> RANKING = (a, b) -> {
+        int byAmount = Long.compare(b.amount, a.amount);
+        return byAmount != 0 ? byAmount : Long.compare(a.seq, b.seq);
+    };
+
+    private final BidderRegistry registry;
+    /** The slot of the bid of each bidder id. */
+    private final IntLongMap slots = new IntLongMap();
+    private int[] bidders = new int[8];
+    private long[] amounts = new long[8];
+    private long[] seqs = new long[8];
+    /** The position of each slot in the heap. */
+    private int[] positions = new int[8];
+    /** The slots, best bid at the root. */
+    private int[] heap = new int[8];
+    private int size;
+    private long nextSeq;
+
+    /**
+     * A standing bid of one bidder.
+     */
+    public static final class Bid {
+        private final AID bidder;
+        private final long amount;
+        private final long seq;
+
+        private Bid(AID bidder, long amount, long seq) {
+            this.bidder = bidder;
+            this.amount = amount;
+            this.seq = seq;
+        }
+
+        public AID getBidder() {
+            return bidder;
+        }
+
+        /**
+         * @return The amount in minor units.
+         */
+        public long getAmount() {
+            return amount;
+        }
+    }
+
+    /**
+     * Creates a book with a registry of its own.
+     */
+    public BidBook() {
+        this(new BidderRegistry());
+    }
+
+    /**
+     * @param registry The registry of the bidders, shared with the other books of the same agent.
+     */
+    public BidBook(BidderRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Places a bid, replacing the previous bid of the same bidder.
+     * @param bidder The AID of the bidder.
+     * @param amount The amount in minor units.
+     * @return true if the bid is now the best bid of the book.
+     */
+    public boolean place(AID bidder, long amount) {
+        int id = registry.intern(bidder);
+        int slot = (int) slots.get(id, -1);
+        if (slot < 0) {
+            if (size == heap.length) {
+                grow();
+            }
+            slot = size++;
+            bidders[slot] = id;
+            amounts[slot] = amount;
+            seqs[slot] = nextSeq++;
+            heap[slot] = slot;
+            positions[slot] = slot;
+            slots.put(id, slot);
+            siftUp(slot);
+        } else {
+            long previous = amounts[slot];
+            amounts[slot] = amount;
+            seqs[slot] = nextSeq++;
+            // A later bid ranks after an equal amount, so only a higher one moves up
+            if (amount > previous) {
+                siftUp(positions[slot]);
+            } else {
+                siftDown(positions[slot]);
+            }
+        }
+        return heap[0] == slot;
+    }
+
+    /**
+     * Removes the standing bid of a bidder.
+     * @param bidder The AID of the bidder.
+     * @return The removed bid, or null if the bidder had none.
+     */
+    public Bid remove(AID bidder) {
+        int slot = slotOf(bidder);
+        if (slot < 0) {
+            return null;
+        }
+        Bid removed = view(slot);
+        removeSlot(slot);
+        return removed;
+    }
+
+    /**
+     * @return The best bid, or null if the book is empty.
+     */
+    public Bid best() {
+        return size == 0 ? null : view(heap[0]);
+    }
+
+    /**
+     * @return The best amount in minor units, or {@link #NO_BID} if the book is empty.
+     */
+    public long bestAmount() {
+        return size == 0 ? NO_BID : amounts[heap[0]];
+    }
+
+    /**
+     * @param bidder The AID of a bidder.
+     * @return true if the bidder holds the best bid, without creating any view.
+     */
+    public boolean isBest(AID bidder) {
+        return size > 0 && bidders[heap[0]] == registry.find(bidder);
+    }
+
+    /**
+     * @param bidder The AID of a bidder.
+     * @return true if the bidder holds a standing bid.
+     */
+    public boolean contains(AID bidder) {
+        return slotOf(bidder) >= 0;
+    }
+
+    /**
+     * @return The second best bid, or null if the book holds less than two bids.
+     */
+    public Bid runnerUp() {
+        if (size < 2) {
+            return null;
+        }
+        // The second best is one of the children of the root
+        return view(size == 2 || better(heap[1], heap[2]) ? heap[1] : heap[2]);
+    }
+
+    /**
+     * Removes the bids whose amount is at most the given amount. Each bid is looked at once and
+     * each removal costs O(log n); after a lot settled its hidden maxima, most of them are removed.
+     * @param amount The amount in minor units.
+     * @param keep A bidder whose bid is kept whatever its amount, may be null.
+     * @return The removed bids, best first.
+     */
+    public List<Bid> removeAtOrBelow(long amount, AID keep) {
+        int kept = keep == null ? BidderRegistry.NONE : registry.find(keep);
+        List<Bid> removed = new ArrayList<>();
+        for (int slot = 0; slot < size; slot++) {
+            if (amounts[slot] <= amount && bidders[slot] != kept) {
+                removed.add(view(slot));
+            }
+        }
+        // Removing moves slots around, so find each bid again by its bidder
+        for (Bid bid : removed) {
+            removeSlot(slotOf(bid.bidder));
+        }
+        removed.sort(RANKING);
+        return removed;
+    }
+
+    /**
+     * @param k The maximum number of bids to return.
+     * @return The k best bids, best first.
+     */
+    public List<Bid> top(int k) {
+        List<Bid> top = new ArrayList<>(Math.min(k, size));
+        if (k >= size) {
+            for (int i = 0; i < size; i++) {
+                top.add(view(i));
+            }
+            top.sort(RANKING);
+            return top;
+        }
+        // Walk the heap best first: the next best is always a child of a bid already taken
+        PriorityQueue<Integer> frontier = new PriorityQueue<>((a, b) -> better(heap[a], heap[b]) ? -1 : 1);
+        if (size > 0) {
+            frontier.add(0);
+        }
+        while (top.size() < k && !frontier.isEmpty()) {
+            int position = frontier.poll();
+            top.add(view(heap[position]));
+            for (int child = 2 * position + 1; child <= 2 * position + 2 && child < size; child++) {
+                frontier.add(child);
+            }
+        }
+        return top;
+    }
+
+    /**
+     * @return The bidders holding a standing bid, in no particular order.
+     */
+    public List<AID> bidders() {
+        List<AID> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(registry.get(bidders[i]));
+        }
+        return list;
+    }
+
+    /**
+     * @return The number of standing bids.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all bids, keeping the arrays for the next round.
+     */
+    public void clear() {
+        slots.clear();
+        size = 0;
+    }
+
+    private int slotOf(AID bidder) {
+        int id = registry.find(bidder);
+        return id == BidderRegistry.NONE ? -1 : (int) slots.get(id, -1);
+    }
+
+    private Bid view(int slot) {
+        return new Bid(registry.get(bidders[slot]), amounts[slot], seqs[slot]);
+    }
+
+    /**
+     * @return true if the bid of slot a ranks before the bid of slot b.
+     */
+    private boolean better(int a, int b) {
+        return amounts[a] > amounts[b] || amounts[a] == amounts[b] && seqs[a] < seqs[b];
+    }
+
+    /**
+     * Takes a slot out of the heap, then moves the last slot into it so the slots stay dense.
+     */
+    private void removeSlot(int slot) {
+        int last = --size;
+        int position = positions[slot];
+        int tail = heap[last];
+        heap[position] = tail;
+        positions[tail] = position;
+        if (position < last) {
+            siftUp(position);
+            siftDown(positions[tail]);
+        }
+        slots.remove(bidders[slot]);
+        if (slot != last) {
+            bidders[slot] = bidders[last];
+            amounts[slot] = amounts[last];
+            seqs[slot] = seqs[last];
+            positions[slot] = positions[last];
+            heap[positions[slot]] = slot;
+            slots.put(bidders[slot], slot);
+        }
+    }
+
+    private void siftUp(int position) {
+        int slot = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (!better(slot, heap[parent])) {
+                break;
+            }
+            heap[position] = heap[parent];
+            positions[heap[position]] = position;
+            position = parent;
+        }
+        heap[position] = slot;
+        positions[slot] = position;
+    }
+
+    private void siftDown(int position) {
+        int slot = heap[position];
+        int half = size >>> 1;
+        while (position < half) {
+            int child = 2 * position + 1;
+            if (child + 1 < size && better(heap[child + 1], heap[child])) {
+                child++;
+            }
+            if (!better(heap[child], slot)) {
+                break;
+            }
+            heap[position] = heap[child];
+            positions[heap[position]] = position;
+            position = child;
+        }
+        heap[position] = slot;
+        positions[slot] = position;
+    }
+
+    private void grow() {
+        int capacity = heap.length * 2;
+        bidders = Arrays.copyOf(bidders, capacity);
+        amounts = Arrays.copyOf(amounts, capacity);
+        seqs = Arrays.copyOf(seqs, capacity);
+        positions = Arrays.copyOf(positions, capacity);
+        heap = Arrays.copyOf(heap, capacity);
+    }
+}
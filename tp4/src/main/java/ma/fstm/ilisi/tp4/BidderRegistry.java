@@ -0,0 +1,111 @@
+package ma.fstm.ilisi.tp4;
+
+import jade.core.AID;
+
+import java.util.Arrays;
+
+/**
+ * BidderRegistry interns the AIDs of the bidders seen by an agent into dense int ids: 0, 1, 2...
+ * in order of first appearance. The state of the lots is then kept in primitive arrays indexed by
+ * these ids, see {@link BidBook}, instead of maps keyed by AIDs, whose hash code lowercases the name
+ * at every lookup. An AID is looked up once per message, by its name, whose hash the String caches.
+ *
+ * <p>The table is open-addressed on the names with linear probing, and ids are never reused: a million
+ * bidders take two arrays of a million entries and their AIDs. Names are compared exactly, the way the
+ * platform writes them. Like the core it belongs to, a registry is only used by the agent thread.
+ */
+public class BidderRegistry {
+    /** Id returned by {@link #find(AID)} for a bidder never interned. */
+    public static final int NONE = -1;
+
+    private String[] names = new String[64];
+    private int[] slots = new int[64];
+    private AID[] aids = new AID[32];
+    private int size;
+
+    /**
+     * Returns the id of a bidder, giving it the next id the first time.
+     * @param bidder The AID of the bidder.
+     * @return Its id.
+     */
+    public int intern(AID bidder) {
+        String name = bidder.getName();
+        int mask = names.length - 1;
+        for (int i = mix(name.hashCode()) & mask; ; i = (i + 1) & mask) {
+            if (names[i] == null) {
+                if (size == aids.length) {
+                    aids = Arrays.copyOf(aids, size * 2);
+                }
+                aids[size] = bidder;
+                names[i] = name;
+                slots[i] = size;
+                if (++size * 2 > names.length) {
+                    rehash();
+                }
+                return size - 1;
+            }
+            if (names[i].equals(name)) {
+                return slots[i];
+            }
+        }
+    }
+
+    /**
+     * @param bidder The AID of a bidder.
+     * @return Its id, or {@link #NONE} if it was never interned.
+     */
+    public int find(AID bidder) {
+        String name = bidder.getName();
+        int mask = names.length - 1;
+        for (int i = mix(name.hashCode()) & mask; names[i] != null; i = (i + 1) & mask) {
+            if (names[i].equals(name)) {
+                return slots[i];
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * @param id The id of a bidder.
+     * @return Its AID, as first interned.
+     */
+    public AID get(int id) {
+        return aids[id];
+    }
+
+    /**
+     * @return The number of bidders interned, which is also the next id.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Doubles the table, keeping it at most half full.
+     */
+    private void rehash() {
+        String[] oldNames = names;
+        int[] oldSlots = slots;
+        names = new String[oldNames.length * 2];
+        slots = new int[oldNames.length * 2];
+        int mask = names.length - 1;
+        for (int j = 0; j < oldNames.length; j++) {
+            if (oldNames[j] != null) {
+                int i = mix(oldNames[j].hashCode()) & mask;
+                while (names[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                names[i] = oldNames[j];
+                slots[i] = oldSlots[j];
+            }
+        }
+    }
+
+    /**
+     * Spreads the bits of a hash, the names of agents differing mostly in their last characters.
+     */
+    static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,98 @@
+package ma.fstm.ilisi.tp4;
+
+/**
+ * BiddingStrategy decides the bids of a buyer without anyone at the keyboard.
+ * A BuyerCore calls it from the agent thread on every event of a lot it follows;
+ * implementations must return quickly and never block, and act through the core:
+ * {@link BuyerCore#placeBid(long, long)} to bid and {@link BuyerCore#wakeUp(long, long)}
+ * to be called back through {@link #wake(BuyerCore, long)} later, and {@link BuyerCore#leave(long)}
+ * to stop following a lot once the budget is exceeded.
+ * All methods default to no-ops, so {@link #MANUAL} leaves the bidding to the GUI.
+ * Amounts are in minor units, see {@link Money}.
+ */
+public interface BiddingStrategy {
+    BiddingStrategy MANUAL = new BiddingStrategy() { };
+
+    /**
+     * Called when the buyer is invited to a lot, see {@link BuyerCore#getFormat(long)} for its format.
+     */
+    default void auctionOpened(BuyerCore buyer, long auctionId, long minPrice) { }
+
+    /**
+     * Called when the maximum bid of a lot changes, including after a bid of this buyer.
+     * {@link BuyerCore#isLeading(long)} tells whether this buyer holds the maximum.
+     */
+    default void maxBidChanged(BuyerCore buyer, long auctionId, long maxBid) { }
+
+    /**
+     * Called when a bid of this buyer was refused by the auctioneer.
+     */
+    default void bidRejected(BuyerCore buyer, long auctionId) { }
+
+    /**
+     * Called when the deadline of a lot moved, see {@link BuyerCore#getDeadline(long)}.
+     */
+    default void deadlineChanged(BuyerCore buyer, long auctionId) { }
+
+    /**
+     * Called at the time requested with {@link BuyerCore#wakeUp(long, long)}.
+     */
+    default void wake(BuyerCore buyer, long auctionId) { }
+
+    /**
+     * Bids for a budget-bound strategy in a lot without open outcry, where raising the maximum
+     * step by step does not apply: the whole budget once as a sealed bid, which is the best bid
+     * in a Vickrey auction, or the asking price of a Dutch lot as soon as it is within the budget.
+     * @param buyer The buyer.
+     * @param auctionId The auction id.
+     * @param budget The highest amount the buyer pays, in minor units.
+     * @return false for an English lot, left to the strategy.
+     */
+    static boolean bidWithoutOutcry(BuyerCore buyer, long auctionId, long budget) {
+        long price = buyer.getCurrentMaxBid(auctionId);
+        switch (buyer.getFormat(auctionId)) {
+            case EnglishAuction.NAME:
+                return false;
+
+            case DutchAuction.NAME:
+                if (price <= budget && buyer.getOwnBid(auctionId) != price) {
+                    buyer.placeBid(auctionId, price);
+                }
+                return true;
+
+            default:
+                if (buyer.getOwnBid(auctionId) == 0 && price <= budget) {
+                    buyer.placeBid(auctionId, budget);
+                }
+                return true;
+        }
+    }
+
+    /**
+     * Creates the strategy named by the "strategy" agent argument.
+     * <ul>
+     *   <li>"proxy": {@link ProxyBiddingStrategy}, outbids at once up to "budget";
+     *   with "server-side", the auctioneer bids for the buyer.</li>
+     *   <li>"increment": {@link FixedIncrementStrategy}, raises by "increment" every "period" ms up to "budget".</li>
+     *   <li>"snipe": {@link SnipingStrategy}, bids up to "budget" "snipe-lead" ms before the deadline.</li>
+     * </ul>
+     * Any other value, or none, gives {@link #MANUAL}.
+     * @param args The agent arguments; "budget" and "increment" are in major units.
+     * @return The strategy.
+     */
+    static BiddingStrategy fromArgs(AgentArgs args) {
+        long budget = Money.toMinor(args.getDouble("budget", 100));
+        long increment = Math.max(1, Money.toMinor(args.getDouble("increment", 1)));
+        switch (args.get("strategy", "manual")) {
+            case "proxy":
+                return new ProxyBiddingStrategy(budget, increment,
+                        Boolean.parseBoolean(args.get("server-side", "false")));
+            case "increment":
+                return new FixedIncrementStrategy(budget, increment, args.getInt("period", 1000));
+            case "snipe":
+                return new SnipingStrategy(budget, increment, args.getInt("snipe-lead", 500));
+            default:
+                return MANUAL;
+        }
+    }
+}
@@ -1,206 +1,152 @@
-package ma.fstm.ilisi.tp4;
-
-import jade.core.AID;
-import jade.core.Agent;
-import jade.core.behaviours.CyclicBehaviour;
-import jade.domain.DFService;
-import jade.domain.FIPAAgentManagement.DFAgentDescription;
-import jade.domain.FIPAAgentManagement.ServiceDescription;
-import jade.domain.FIPAException;
-import jade.lang.acl.ACLMessage;
-
-import javax.swing.*;
-import java.awt.*;
-
-/**
- * BuyerAgent is a JADE agent that participates in auctions by placing bids.
- * It handles receiving auction information, placing bids, and requesting more time.
- */
-public class BuyerAgent extends Agent {
-    private JFrame frame;
-    private JTextArea logArea;
-    private JTextField bidField;
-    private JButton bidButton;
-    private JButton moreTimeButton;
-    private JLabel statusLabel;
-    private JLabel currentMaxBidLabel;
-    private double minPrice;
-    private double currentMaxBid;
-    private String currentItem;
-    private boolean canBid = false;
-
-    /**
-     * Setup method is called when the agent is initialized.
-     * It registers the agent with the Directory Facilitator (DF) and creates the GUI.
-     */
-    protected void setup() {
-        // Register with DF
-        DFAgentDescription dfd = new DFAgentDescription();
-        dfd.setName(getAID());
-        ServiceDescription sd = new ServiceDescription();
-        sd.setType("buyer");
-        sd.setName("auction-buyer");
-        dfd.addServices(sd);
-        try {
-            DFService.register(this, dfd);
-        } catch (FIPAException fe) {
-            fe.printStackTrace();
-        }
-
-        createGUI();
-
-        addBehaviour(new CyclicBehaviour() {
-            public void action() {
-                ACLMessage msg = receive();
-                if (msg != null) {
-                    switch (msg.getPerformative()) {
-                        case ACLMessage.CFP:
-                            String[] content = msg.getContent().split(";");
-                            currentItem = content[0];
-                            minPrice = Double.parseDouble(content[1]);
-                            currentMaxBid = minPrice; // Initialize max bid with minimum price
-                            canBid = true;
-                            statusLabel.setText("Current auction: " + currentItem);
-                            currentMaxBidLabel.setText("Current max bid: " + currentMaxBid);
-                            bidButton.setEnabled(true);
-                            moreTimeButton.setEnabled(true);
-                            logArea.append("New auction for " + currentItem + " (min: " + minPrice + ")\n");
-                            break;
-
-                        case ACLMessage.ACCEPT_PROPOSAL:
-                            logArea.append("Your bid was accepted! You won " + currentItem + "\n");
-                            resetBidding();
-                            break;
-
-                        case ACLMessage.REJECT_PROPOSAL:
-                            logArea.append("Your bid was rejected\n");
-                            resetBidding();
-                            break;
-
-                        case ACLMessage.INFORM:
-                            if (msg.getContent().startsWith("TIME_EXTENDED")) {
-                                String[] timeInfo = msg.getContent().split(";");
-                                logArea.append("Auction time extended to " + timeInfo[1] + " seconds\n");
-                            } else if (msg.getContent().startsWith("NEW_BID")) {
-                                // Handle updates about new maximum bids
-                                String[] bidInfo = msg.getContent().split(";");
-                                currentMaxBid = Double.parseDouble(bidInfo[1]);
-                                currentMaxBidLabel.setText("Current max bid: " + currentMaxBid);
-                                logArea.append("New maximum bid: " + currentMaxBid + "\n");
-                            }
-                            break;
-                    }
-                }
-                block();
-            }
-        });
-    }
-
-    /**
-     * Resets the bidding state and updates the GUI accordingly.
-     */
-    private void resetBidding() {
-        canBid = false;
-        bidButton.setEnabled(false);
-        moreTimeButton.setEnabled(false);
-        statusLabel.setText("No active auction");
-        currentMaxBidLabel.setText("Current max bid: --");
-        currentItem = null;
-        currentMaxBid = 0;
-    }
-
-    /**
-     * Creates the GUI for the buyer agent.
-     */
-    private void createGUI() {
-        frame = new JFrame("Buyer: " + getLocalName());
-        frame.setLayout(new BorderLayout(10, 10));
-
-        // Status panel
-        JPanel statusPanel = new JPanel(new GridLayout(2, 1));
-        statusLabel = new JLabel("No active auction");
-        currentMaxBidLabel = new JLabel("Current max bid: --");
-        statusPanel.add(statusLabel);
-        statusPanel.add(currentMaxBidLabel);
-
-        // Bidding panel
-        JPanel biddingPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
-        biddingPanel.setBorder(BorderFactory.createTitledBorder("Place Bid"));
-
-        bidField = new JTextField(10);
-        bidButton = new JButton("Submit Bid");
-        bidButton.setEnabled(false);
-        moreTimeButton = new JButton("Request More Time");
-        moreTimeButton.setEnabled(false);
-
-        biddingPanel.add(new JLabel("Amount:"));
-        biddingPanel.add(bidField);
-        biddingPanel.add(bidButton);
-        biddingPanel.add(moreTimeButton);
-
-        // Log panel
-        logArea = new JTextArea(10, 40);
-        logArea.setEditable(false);
-        JScrollPane scrollPane = new JScrollPane(logArea);
-        scrollPane.setBorder(BorderFactory.createTitledBorder("Auction Log"));
-
-        // Main panel
-        JPanel mainPanel = new JPanel(new BorderLayout(5, 5));
-        mainPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
-        mainPanel.add(statusPanel, BorderLayout.NORTH);
-        mainPanel.add(biddingPanel, BorderLayout.CENTER);
-        mainPanel.add(scrollPane, BorderLayout.SOUTH);
-
-        frame.add(mainPanel);
-
-        // Action listeners
-        bidButton.addActionListener(e -> {
-            if (canBid) {
-                try {
-                    double bid = Double.parseDouble(bidField.getText());
-                    if (bid > currentMaxBid) {
-                        ACLMessage msg = new ACLMessage(ACLMessage.PROPOSE);
-                        msg.addReceiver(new AID("seller", AID.ISLOCALNAME));
-                        msg.setContent(String.valueOf(bid));
-                        send(msg);
-                        logArea.append("Bid placed: " + bid + "\n");
-                        bidField.setText("");
-                    } else {
-                        JOptionPane.showMessageDialog(frame,
-                                "Bid must be higher than current maximum bid: " + currentMaxBid);
-                    }
-                } catch (NumberFormatException ex) {
-                    JOptionPane.showMessageDialog(frame,
-                            "Please enter a valid number");
-                }
-            }
-        });
-
-        moreTimeButton.addActionListener(e -> {
-            if (canBid) {
-                ACLMessage msg = new ACLMessage(ACLMessage.REQUEST);
-                msg.addReceiver(new AID("seller", AID.ISLOCALNAME));
-                msg.setContent("MORE_TIME");
-                send(msg);
-                logArea.append("Requested more time\n");
-            }
-        });
-
-        frame.pack();
-        frame.setLocationRelativeTo(null);
-        frame.setVisible(true);
-    }
-
-    /**
-     * Called when the agent is taken down.
-     * Deregisters the agent from the DF and disposes of the GUI.
-     */
-    protected void takeDown() {
-        try {
-            DFService.deregister(this);
-        } catch (FIPAException fe) {
-            fe.printStackTrace();
-        }
-        frame.dispose();
-    }
-}
\ No newline at end of file
+package ma.fstm.ilisi.tp4;
+
+import jade.core.Agent;
+import jade.core.behaviours.TickerBehaviour;
+import jade.domain.DFService;
+import jade.domain.FIPAAgentManagement.DFAgentDescription;
+import jade.lang.acl.ACLMessage;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * BuyerAgent is a JADE agent that participates in auctions by placing bids.
+ * It handles receiving auction information, placing bids, and requesting more time.
+ * The bidding state lives in {@link BuyerCore}; the Swing frame is only created
+ * when the agent is not started with the "headless" argument.
+ * With a "strategy" argument the buyer bids on its own, see {@link BiddingStrategy#fromArgs(AgentArgs)}.
+ * It is only called for the lots of the comma-separated "categories" argument, or for every lot without it.
+ * Its {@link AgentMetrics} report the bid-to-notification latency as "notification_latency_ns".
+ * The actions of the GUI reach the core as commands run in the agent thread by the {@link Offloader}.
+ */
+public class BuyerAgent extends Agent {
+    private static final long serialVersionUID = 1L;
+
+    private transient BuyerGui gui;
+    private transient BuyerCore core;
+    private transient AgentMetrics metrics;
+    private transient Offloader offloader;
+    /** Sends the messages of the agent through its metrics and the traffic log. */
+    private transient Consumer<ACLMessage> sender;
+    private final transient AuctionCodec.Frame frame = new AuctionCodec.Frame();
+
+    /**
+     * Setup method is called when the agent is initialized.
+     * It registers the agent with the Directory Facilitator (DF) and creates the GUI unless headless.
+     */
+    protected void setup() {
+        AgentArgs args = AgentArgs.of(getArguments());
+
+        // Register with DF, with the categories of interest, without holding up the setup
+        String categories = args.get("categories", "");
+        DFAgentDescription dfd = BuyerDirectory.describe(getAID(), categories.isEmpty()
+                ? List.of() : Arrays.asList(categories.split(",")));
+        offloader = new Offloader(this);
+        offloader.run(() -> DFService.register(this, dfd));
+
+        if (!args.isHeadless()) {
+            gui = new BuyerGui(getLocalName());
+        }
+        BiddingStrategy strategy = BiddingStrategy.fromArgs(args);
+        TimingWheel wakeUps = new TimingWheel(args.getInt("timer-tick", 10), System::currentTimeMillis,
+                auctionId -> core.wake(auctionId));
+        metrics = new AgentMetrics(this);
+        sender = metrics.sender(TrafficLog.tap(this, this::send));
+        core = new BuyerCore(sender, gui != null ? gui : BuyerView.NONE, AuctionCodec.fromArgs(args),
+                strategy, wakeUps);
+        if (gui != null) {
+            gui.bind(core, offloader);
+        }
+
+        // Call the strategy back at the times it asked for, and let go of the lots closed without an answer
+        addBehaviour(new TickerBehaviour(this, wakeUps.getTickMillis()) {
+            protected void onTick() {
+                wakeUps.advance();
+            }
+        });
+
+        // A buyer keeps the arrival order: the CFP of a lot must come before its updates
+        addBehaviour(new MailboxBehaviour(this, metrics, args.getInt("mailbox-batch", 64))
+                .on(AuctionProtocol.match(ACLMessage.INFORM), this::onUpdate)
+                .on(AuctionProtocol.match(ACLMessage.CFP), this::onCfp)
+                .on(AuctionProtocol.match(ACLMessage.ACCEPT_PROPOSAL),
+                        msg -> core.onAccepted(AuctionProtocol.auctionId(msg)))
+                .on(AuctionProtocol.match(ACLMessage.REJECT_PROPOSAL), this::onReject)
+                .on(offloader.template(), offloader::complete));
+    }
+
+    /**
+     * Handles the call for proposals opening a lot.
+     * @param msg The CFP message.
+     */
+    private void onCfp(ACLMessage msg) {
+        if (frame.wrap(msg) && frame.getType() == AuctionCodec.CFP) {
+            core.onCfp(frame.getAuctionId(), msg.getSender(), frame.getItem(), frame.getAmount(),
+                    frame.getSeconds(), msg.getUserDefinedParameter(AuctionProtocol.FORMAT));
+        } else if (frame.isMalformed()) {
+            sender.accept(AuctionCodec.notUnderstood(msg));
+        }
+    }
+
+    /**
+     * Handles a refused bid, with the current maximum of the lot, or the refusal of the seller closing it.
+     * @param msg The REJECT_PROPOSAL message.
+     */
+    private void onReject(ACLMessage msg) {
+        if (frame.wrap(msg) && frame.getType() == AuctionCodec.REJECT) {
+            core.onBidRejected(frame.getAuctionId(), frame.getReason(), frame.getAmount(), frame.getSeq());
+        } else if (frame.isMalformed()) {
+            sender.accept(AuctionCodec.notUnderstood(msg));
+        } else {
+            core.onRejected(AuctionProtocol.auctionId(msg), msg.getSender());
+        }
+    }
+
+    /**
+     * Handles the updates of the auctioneer: new maximum bids, deadlines and batch results.
+     * @param msg The INFORM message.
+     */
+    private void onUpdate(ACLMessage msg) {
+        if (!frame.wrap(msg)) {
+            if (frame.isMalformed()) {
+                sender.accept(AuctionCodec.notUnderstood(msg));
+            }
+            return;
+        }
+        switch (frame.getType()) {
+            case AuctionCodec.MAX_BID:
+                // Handle updates about new maximum bids
+                core.onMaxBid(frame.getAuctionId(), frame.getAmount(), frame.getSeq());
+                break;
+
+            case AuctionCodec.CLOSE:
+                core.onClosed(frame.getAuctionId());
+                break;
+
+            case AuctionCodec.TIME_EXTENDED:
+                core.onTimeExtended(frame.getAuctionId(), frame.getSeconds());
+                break;
+
+            case AuctionCodec.BID_RESULTS:
+                // Outcome of a batch of bids, or of the lots cleared in a batch
+                for (int i = 0; i < frame.getCount(); i++) {
+                    core.onBidResult(frame.getAuctionId(i), frame.getStatus(i), frame.getAmount(i), frame.getSeq(i));
+                }
+                break;
+        }
+    }
+
+    /**
+     * Called when the agent is taken down.
+     * Deregisters the agent from the DF and disposes of the GUI if there is one.
+     */
+    protected void takeDown() {
+        DirectoryFacilitator.deregister(this);
+        offloader.shutdown();
+        metrics.unregister();
+        if (gui != null) {
+            gui.dispose();
+        }
+    }
+}
@@ -0,0 +1,548 @@
+package ma.fstm.ilisi.tp4;
+
+import jade.core.AID;
+import jade.lang.acl.ACLMessage;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * BuyerCore holds the bidding state of a buyer, independently of any GUI.
+ * It follows every lot the buyer was invited to, keyed by auction id,
+ * reacts to auction messages and sends the buyer's bids and requests to the auctioneer.
+ * Bids come from the GUI or from a {@link BiddingStrategy}, told of every event of a lot.
+ * A buyer {@link #leave(long) leaves} the lots it gave up on, so the auctioneer stops sending it their updates.
+ * In a sealed lot the maximum stays at the minimum price, and in a Dutch lot it is the asking price.
+ * The core is not thread-safe: only the agent thread calls it, a GUI submits its actions as commands.
+ * Each bid carries the sequence number of the last maximum the buyer saw; a refused bid comes back with
+ * the current maximum, so the buyer can bid again at once. Updates older than the one known are ignored.
+ * A lot is forgotten once its outcome is known, or when it closes if the buyer never bid on it.
+ */
+public class BuyerCore {
+    /** How long a closed lot this buyer bid on waits for the answer of its seller or its batch results. */
+    public static final long OUTCOME_WAIT_MILLIS = 60_000;
+
+    private final Consumer<ACLMessage> sender;
+    private final BuyerView view;
+    private final AuctionCodec codec;
+    private final BiddingStrategy strategy;
+    private final AuctionTimers timers;
+    /**
+     * Starts from the clock in milliseconds, shifted so a million bids a millisecond never catch up with it:
+     * the bids of a restarted buyer come after those of its last run, which a restarted auctioneer still knows.
+     */
+    private long bidSeq = System.currentTimeMillis() << 20;
+    private final Map<Long, Lot> lots = new HashMap<>();
+
+    /**
+     * The state of one lot as seen by the buyer.
+     */
+    private static final class Lot {
+        private final String item;
+        private final AID auctioneer;
+        private final String format;
+        private long currentMaxBid;
+        private long maxBidSeq;
+        private long ownBid;
+        private long maxBid;
+        private long deadline;
+        private boolean closed;
+
+        private Lot(String item, AID auctioneer, String format, long minPrice, long deadline) {
+            this.item = item;
+            this.auctioneer = auctioneer;
+            this.format = format;
+            this.currentMaxBid = minPrice; // Initialize max bid with minimum price
+            this.deadline = deadline;
+        }
+
+        /**
+         * @return true if the auctioneer accepts the bid: above the maximum in an English lot,
+         * at or above the minimum price of a sealed lot or the asking price of a Dutch lot.
+         */
+        private boolean admits(long bid) {
+            return format.equals(EnglishAuction.NAME) ? bid > currentMaxBid : bid >= currentMaxBid;
+        }
+    }
+
+    /**
+     * @param sender Sends messages on behalf of the agent.
+     * @param view The view notified of bidding events, {@link BuyerView#NONE} when headless.
+     * @param codec Writes the content of the messages sent.
+     * @param strategy Places bids automatically, {@link BiddingStrategy#MANUAL} to leave them to the GUI.
+     * @param timers Wakes the strategy up at the times it asks for, keyed by auction id.
+     */
+    public BuyerCore(Consumer<ACLMessage> sender, BuyerView view, AuctionCodec codec, BiddingStrategy strategy,
+                     AuctionTimers timers) {
+        this.sender = sender;
+        this.view = view;
+        this.codec = codec;
+        this.strategy = strategy;
+        this.timers = timers;
+    }
+
+    /**
+     * Handles a call for proposals for a new auction.
+     * @param auctionId The auction id.
+     * @param auctioneer The auctioneer running the lot.
+     * @param item The item being auctioned.
+     * @param minPrice The minimum price of the item, in minor units.
+     * @param seconds The time left before the deadline, 0 if unknown.
+     */
+    public void onCfp(long auctionId, AID auctioneer, String item, long minPrice, int seconds) {
+        onCfp(auctionId, auctioneer, item, minPrice, seconds, null);
+    }
+
+    /**
+     * Handles a call for proposals for a new auction in the given format. A lot already followed is
+     * offered again when its auctioneer resumes it after a warm restart: the bids of the buyer on it stand.
+     * @param auctionId The auction id.
+     * @param auctioneer The auctioneer running the lot.
+     * @param item The item being auctioned.
+     * @param minPrice The minimum price of the item, in minor units.
+     * @param seconds The time left before the deadline, 0 if unknown.
+     * @param format The name of the {@link AuctionMechanism} of the lot, null for English.
+     */
+    public void onCfp(long auctionId, AID auctioneer, String item, long minPrice, int seconds, String format) {
+        Lot lot = new Lot(item, auctioneer, format == null ? EnglishAuction.NAME : format, minPrice,
+                seconds > 0 ? now() + seconds * 1000L : 0);
+        Lot followed = lots.put(auctionId, lot);
+        if (followed != null && !followed.closed) {
+            lot.maxBidSeq = followed.maxBidSeq;
+            lot.ownBid = followed.ownBid;
+            lot.maxBid = followed.maxBid;
+        }
+        view.auctionOpened(auctionId, item, minPrice);
+        strategy.auctionOpened(this, auctionId, minPrice);
+    }
+
+    /**
+     * Handles an unsequenced update of the maximum bid.
+     * @param auctionId The auction id.
+     * @param maxBid The new maximum bid, in minor units.
+     */
+    public void onMaxBid(long auctionId, long maxBid) {
+        onMaxBid(auctionId, maxBid, 0);
+    }
+
+    /**
+     * Handles an update of the maximum bid, unless the buyer already knows this one or a later one.
+     * @param auctionId The auction id.
+     * @param maxBid The new maximum bid, in minor units.
+     * @param seq The number of max-bid updates of the lot so far, 0 if unknown.
+     */
+    public void onMaxBid(long auctionId, long maxBid, long seq) {
+        Lot lot = lots.get(auctionId);
+        if (lot != null && (seq == 0 || seq > lot.maxBidSeq)) {
+            lot.maxBidSeq = Math.max(lot.maxBidSeq, seq);
+            lot.currentMaxBid = maxBid;
+            view.maxBidChanged(auctionId, maxBid);
+            strategy.maxBidChanged(this, auctionId, maxBid);
+        }
+    }
+
+    /**
+     * Handles the extension of the auction time.
+     * @param auctionId The auction id.
+     * @param seconds The new remaining time, as sent by the auctioneer.
+     */
+    public void onTimeExtended(long auctionId, int seconds) {
+        Lot lot = lots.get(auctionId);
+        if (lot != null) {
+            lot.deadline = now() + seconds * 1000L;
+        }
+        view.timeExtended(auctionId, seconds);
+        if (lot != null) {
+            strategy.deadlineChanged(this, auctionId);
+        }
+    }
+
+    /**
+     * Handles the close of a lot by the auctioneer. A buyer that never bid on it forgets it at once;
+     * otherwise the lot waits for its outcome, at most {@link #OUTCOME_WAIT_MILLIS}.
+     * @param auctionId The auction id.
+     */
+    public void onClosed(long auctionId) {
+        Lot lot = lots.get(auctionId);
+        if (lot == null) {
+            return;
+        }
+        if (lot.ownBid == 0 && lot.maxBid == 0) {
+            lots.remove(auctionId);
+            timers.cancel(auctionId);
+            view.biddingClosed(auctionId);
+        } else {
+            lot.closed = true;
+            timers.schedule(auctionId, OUTCOME_WAIT_MILLIS);
+        }
+    }
+
+    /**
+     * Handles the refusal of a bid by the auctioneer, which sent the current maximum of the lot with it:
+     * the maximum is updated first, so the strategy bids again against the right price.
+     * @param auctionId The auction id.
+     * @param reason The reason code, e.g. {@link AuctionCodec#REASON_STALE}.
+     * @param maxBid The current maximum of the lot, in minor units.
+     * @param seq The number of max-bid updates of the lot so far.
+     */
+    public void onBidRejected(long auctionId, byte reason, long maxBid, long seq) {
+        Lot lot = lots.get(auctionId);
+        if (lot == null) {
+            return;
+        }
+        catchUp(auctionId, lot, maxBid, seq);
+        if (reason == AuctionCodec.REASON_OUTBID) {
+            lot.maxBid = 0;
+        }
+        view.bidRejected(auctionId);
+        strategy.bidRejected(this, auctionId);
+    }
+
+    /**
+     * Takes the maximum sent with the answer to a bid, if it is newer than the one known.
+     */
+    private void catchUp(long auctionId, Lot lot, long maxBid, long seq) {
+        if (seq != 0 ? seq > lot.maxBidSeq : maxBid > lot.currentMaxBid) {
+            lot.maxBidSeq = Math.max(lot.maxBidSeq, seq);
+            lot.currentMaxBid = maxBid;
+            view.maxBidChanged(auctionId, maxBid);
+            strategy.maxBidChanged(this, auctionId, maxBid);
+        }
+    }
+
+    /**
+     * Handles the acceptance of this buyer's bid by the seller.
+     * @param auctionId The auction id.
+     */
+    public void onAccepted(long auctionId) {
+        Lot lot = lots.remove(auctionId);
+        if (lot != null) {
+            timers.cancel(auctionId);
+            view.bidWon(lot.item);
+            view.biddingClosed(auctionId);
+        }
+    }
+
+    /**
+     * Handles a rejection without the state of the lot. A rejection from an older auctioneer only refuses
+     * one bid, a rejection from the seller means the lot went to another buyer.
+     * @param auctionId The auction id.
+     * @param from The sender of the rejection.
+     */
+    public void onRejected(long auctionId, AID from) {
+        Lot lot = lots.get(auctionId);
+        if (lot == null) {
+            return;
+        }
+        view.bidRejected(auctionId);
+        if (!from.equals(lot.auctioneer)) {
+            lots.remove(auctionId);
+            timers.cancel(auctionId);
+            view.biddingClosed(auctionId);
+        } else {
+            strategy.bidRejected(this, auctionId);
+        }
+    }
+
+    /**
+     * Places a bid if it is higher than the current maximum bid, or in a sealed or Dutch lot
+     * at least the minimum or asking price.
+     * @param auctionId The auction id.
+     * @param bid The amount of the bid, in minor units.
+     * @return false if nothing was sent: the lot is unknown or closed, or the auctioneer would refuse the bid
+     * as too low.
+     */
+    public boolean placeBid(long auctionId, long bid) {
+        Lot lot = lots.get(auctionId);
+        if (lot == null || lot.closed || !lot.admits(bid)) {
+            return false;
+        }
+        ACLMessage msg = new ACLMessage(ACLMessage.PROPOSE);
+        msg.addReceiver(lot.auctioneer);
+        codec.writeBid(msg, auctionId, bid, ++bidSeq, lot.maxBidSeq);
+        sender.accept(msg);
+        lot.ownBid = bid;
+        view.bidPlaced(auctionId, bid);
+        return true;
+    }
+
+    /**
+     * Leaves a hidden maximum with the auctioneer, which then bids for this buyer up to it.
+     * @param auctionId The auction id.
+     * @param maxBid The highest amount this buyer pays, in minor units.
+     * @return false if nothing was sent: the lot is unknown or closed, or the maximum is not higher than
+     * the current maximum bid.
+     */
+    public boolean placeMaxBid(long auctionId, long maxBid) {
+        Lot lot = lots.get(auctionId);
+        if (lot == null || lot.closed || maxBid <= lot.currentMaxBid) {
+            return false;
+        }
+        ACLMessage msg = new ACLMessage(ACLMessage.PROPOSE);
+        msg.addReceiver(lot.auctioneer);
+        codec.writeProxyBid(msg, auctionId, maxBid, ++bidSeq);
+        sender.accept(msg);
+        lot.maxBid = maxBid;
+        view.maxBidPlaced(auctionId, maxBid);
+        return true;
+    }
+
+    /**
+     * Places bids on many lots at once, with one message per auctioneer.
+     * Entries the auctioneer would refuse as too low, or on unknown lots, are skipped.
+     * @param bids The bids, auction id and amount per entry; sequence numbers are assigned here.
+     * @return The number of bids sent.
+     */
+    public int placeBids(BidBatch bids) {
+        Map<AID, BidBatch> batches = new HashMap<>();
+        for (int i = 0; i < bids.size(); i++) {
+            long auctionId = bids.getAuctionId(i);
+            long bid = bids.getAmount(i);
+            Lot lot = lots.get(auctionId);
+            if (lot != null && lot.admits(bid)) {
+                batches.computeIfAbsent(lot.auctioneer, auctioneer -> new BidBatch())
+                        .add(auctionId, bid, ++bidSeq);
+                lot.ownBid = bid;
+            }
+        }
+        int sent = 0;
+        for (Map.Entry<AID, BidBatch> batch : batches.entrySet()) {
+            ACLMessage msg = new ACLMessage(ACLMessage.PROPOSE);
+            msg.addReceiver(batch.getKey());
+            codec.writeBidBatch(msg, batch.getValue());
+            sender.accept(msg);
+            for (int i = 0; i < batch.getValue().size(); i++) {
+                view.bidPlaced(batch.getValue().getAuctionId(i), batch.getValue().getAmount(i));
+            }
+            sent += batch.getValue().size();
+        }
+        return sent;
+    }
+
+    /**
+     * Places an all-or-nothing bid on several lots of the same auctioneer: this buyer wins them all
+     * or none, if they close in the same batch. Only auctioneers clearing lots in batches accept it.
+     * @param bundle The lots, auction id and amount per entry; sequence numbers are assigned here.
+     * @return false if the bundle is empty, or a lot is unknown or run by another auctioneer.
+     */
+    public boolean placeBundle(BidBatch bundle) {
+        AID auctioneer = null;
+        for (int i = 0; i < bundle.size(); i++) {
+            Lot lot = lots.get(bundle.getAuctionId(i));
+            if (lot == null || auctioneer != null && !auctioneer.equals(lot.auctioneer)) {
+                return false;
+            }
+            auctioneer = lot.auctioneer;
+        }
+        if (auctioneer == null) {
+            return false;
+        }
+        BidBatch entries = new BidBatch(bundle.size());
+        for (int i = 0; i < bundle.size(); i++) {
+            entries.add(bundle.getAuctionId(i), bundle.getAmount(i), ++bidSeq);
+        }
+        ACLMessage msg = new ACLMessage(ACLMessage.PROPOSE);
+        msg.addReceiver(auctioneer);
+        codec.writeBundleBid(msg, entries);
+        sender.accept(msg);
+        for (int i = 0; i < entries.size(); i++) {
+            view.bidPlaced(entries.getAuctionId(i), entries.getAmount(i));
+        }
+        return true;
+    }
+
+    /**
+     * Handles the outcome of one bid of a batch.
+     * @param auctionId The auction id.
+     * A lot cleared in a batch is reported {@link BidBatch#WON} or {@link BidBatch#LOST} when it closes.
+     * @param status {@link BidBatch#ACCEPTED}, {@link BidBatch#REJECTED}, {@link BidBatch#CLOSED},
+     * {@link BidBatch#WON} or {@link BidBatch#LOST}.
+     * @param maxBid The current maximum of the lot, or the price it was sold at, in minor units.
+     */
+    public void onBidResult(long auctionId, byte status, long maxBid) {
+        onBidResult(auctionId, status, maxBid, 0);
+    }
+
+    /**
+     * Handles the outcome of one bid of a batch, with the sequence number of the maximum sent.
+     * @param auctionId The auction id.
+     * @param status The status of the entry, see {@link #onBidResult(long, byte, long)}.
+     * @param maxBid The current maximum of the lot, or the price it was sold at, in minor units.
+     * @param seq The number of max-bid updates of the lot so far, 0 if unknown.
+     */
+    public void onBidResult(long auctionId, byte status, long maxBid, long seq) {
+        Lot lot = lots.get(auctionId);
+        if (lot == null) {
+            return;
+        }
+        if (status == BidBatch.WON || status == BidBatch.LOST) {
+            lots.remove(auctionId);
+            timers.cancel(auctionId);
+            if (status == BidBatch.WON) {
+                view.bidWon(lot.item);
+            } else {
+                view.bidRejected(auctionId);
+            }
+            view.biddingClosed(auctionId);
+            return;
+        }
+        if (status == BidBatch.CLOSED) {
+            view.bidRejected(auctionId);
+            return;
+        }
+        catchUp(auctionId, lot, maxBid, seq);
+        if (status == BidBatch.REJECTED) {
+            view.bidRejected(auctionId);
+            strategy.bidRejected(this, auctionId);
+        }
+    }
+
+    /**
+     * Asks the auctioneer for more time on a lot.
+     * @param auctionId The auction id.
+     */
+    public void requestMoreTime(long auctionId) {
+        Lot lot = lots.get(auctionId);
+        if (lot != null) {
+            ACLMessage msg = new ACLMessage(ACLMessage.REQUEST);
+            msg.addReceiver(lot.auctioneer);
+            codec.writeMoreTime(msg, auctionId);
+            sender.accept(msg);
+            view.moreTimeRequested(auctionId);
+        }
+    }
+
+    /**
+     * Stops following a lot: the auctioneer no longer sends its updates to this buyer.
+     * A buyer leaving a lot it still leads can still win it.
+     * @param auctionId The auction id.
+     */
+    public void leave(long auctionId) {
+        Lot lot = lots.remove(auctionId);
+        if (lot != null) {
+            timers.cancel(auctionId);
+            ACLMessage msg = new ACLMessage(ACLMessage.REQUEST);
+            msg.addReceiver(lot.auctioneer);
+            codec.writeLeave(msg, auctionId);
+            sender.accept(msg);
+            view.auctionLeft(auctionId);
+            view.biddingClosed(auctionId);
+        }
+    }
+
+    /**
+     * Asks an auctioneer to follow a running lot this buyer was not invited to.
+     * The auctioneer answers with a CFP carrying the current maximum, which opens the lot here.
+     * @param auctioneer The auctioneer running the lot.
+     * @param auctionId The auction id.
+     */
+    public void join(AID auctioneer, long auctionId) {
+        if (!lots.containsKey(auctionId)) {
+            ACLMessage msg = new ACLMessage(ACLMessage.REQUEST);
+            msg.addReceiver(auctioneer);
+            codec.writeJoin(msg, auctionId);
+            sender.accept(msg);
+        }
+    }
+
+    /**
+     * Asks to call the strategy back for a lot after a delay, replacing any previous request for that lot.
+     * @param auctionId The auction id.
+     * @param delayMillis The delay before {@link BiddingStrategy#wake(BuyerCore, long)} is called.
+     */
+    public void wakeUp(long auctionId, long delayMillis) {
+        Lot lot = lots.get(auctionId);
+        if (lot != null && !lot.closed) {
+            timers.schedule(auctionId, delayMillis);
+        }
+    }
+
+    /**
+     * Called by the agent when the delay asked with {@link #wakeUp(long, long)} is over,
+     * or when a closed lot waited long enough for its outcome, which is then given up on.
+     * @param auctionId The auction id.
+     */
+    public void wake(long auctionId) {
+        Lot lot = lots.get(auctionId);
+        if (lot == null) {
+            return;
+        }
+        if (lot.closed) {
+            lots.remove(auctionId);
+            view.biddingClosed(auctionId);
+        } else {
+            strategy.wake(this, auctionId);
+        }
+    }
+
+    /**
+     * @return The current time in milliseconds, as seen by the timers.
+     */
+    public long now() {
+        return timers.now();
+    }
+
+    /**
+     * @param auctionId The auction id.
+     * @return true if the lot is known and still takes bids.
+     */
+    public boolean isOpen(long auctionId) {
+        Lot lot = lots.get(auctionId);
+        return lot != null && !lot.closed;
+    }
+
+    /**
+     * @param auctionId The auction id.
+     * @return true if the last bid of this buyer on the lot is its current maximum.
+     */
+    public boolean isLeading(long auctionId) {
+        Lot lot = lots.get(auctionId);
+        return lot != null && lot.ownBid > 0 && lot.ownBid == lot.currentMaxBid;
+    }
+
+    /**
+     * @param auctionId The auction id.
+     * @return The last bid of this buyer on the lot, in minor units, or 0 if none.
+     */
+    public long getOwnBid(long auctionId) {
+        Lot lot = lots.get(auctionId);
+        return lot == null ? 0 : lot.ownBid;
+    }
+
+    /**
+     * @param auctionId The auction id.
+     * @return The hidden maximum this buyer left with the auctioneer, in minor units, or 0 if none.
+     */
+    public long getMaxBid(long auctionId) {
+        Lot lot = lots.get(auctionId);
+        return lot == null ? 0 : lot.maxBid;
+    }
+
+    /**
+     * @param auctionId The auction id.
+     * @return The deadline of the lot in milliseconds, or 0 if unknown.
+     */
+    public long getDeadline(long auctionId) {
+        Lot lot = lots.get(auctionId);
+        return lot == null ? 0 : lot.deadline;
+    }
+
+    /**
+     * @param auctionId The auction id.
+     * @return The name of the {@link AuctionMechanism} of the lot, "english" if the lot is unknown.
+     */
+    public String getFormat(long auctionId) {
+        Lot lot = lots.get(auctionId);
+        return lot == null ? EnglishAuction.NAME : lot.format;
+    }
+
+    /**
+     * @param auctionId The auction id.
+     * @return The current maximum bid of the lot, in minor units, or 0 if the lot is unknown.
+     */
+    public long getCurrentMaxBid(long auctionId) {
+        Lot lot = lots.get(auctionId);
+        return lot == null ? 0 : lot.currentMaxBid;
+    }
+}
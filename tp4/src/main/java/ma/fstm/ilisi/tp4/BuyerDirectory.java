@@ -0,0 +1,234 @@
+package ma.fstm.ilisi.tp4;
+
+import jade.core.AID;
+import jade.domain.DFService;
+import jade.domain.FIPAAgentManagement.DFAgentDescription;
+import jade.domain.FIPAAgentManagement.Property;
+import jade.domain.FIPAAgentManagement.ServiceDescription;
+import jade.domain.FIPAException;
+import jade.lang.acl.ACLMessage;
+
+import java.util.*;
+
+/**
+ * BuyerDirectory is the local copy, kept by the auctioneer, of the buyers registered in the DF.
+ * It is fed by the notifications of a DF subscription: each one adds, updates or removes
+ * a few buyers, instead of searching the whole DF for every lot.
+ *
+ * <p>Buyers are indexed by the categories they registered as "category" properties of their
+ * "buyer" service; a buyer without category is interested in every lot. Each category is a
+ * {@link Topic}, created when its first lot starts: buyers join and leave it as they register,
+ * change or withdraw their interests, and the lots of the category fork it.
+ */
+public class BuyerDirectory {
+    public static final String SERVICE_TYPE = "buyer";
+
+    private final Map<AID, Set<String>> interests = new HashMap<>();
+    private final Map<String, Set<AID>> byCategory = new HashMap<>();
+    private final Set<AID> everything = new LinkedHashSet<>();
+    private final Map<String, Topic> topics = new HashMap<>();
+    private final Topic all = new Topic("buyers", List.of());
+    /** The buyers restored from a snapshot, until the first notification tells which ones are still registered. */
+    private final Set<AID> unconfirmed = new HashSet<>();
+    private boolean ready;
+
+    /**
+     * Describes a buyer for its registration with the DF.
+     * @param buyer The AID of the buyer.
+     * @param categories The categories of interest, none for every lot.
+     * @return The description to register.
+     */
+    public static DFAgentDescription describe(AID buyer, Collection<String> categories) {
+        DFAgentDescription dfd = new DFAgentDescription();
+        dfd.setName(buyer);
+        ServiceDescription sd = new ServiceDescription();
+        sd.setType(SERVICE_TYPE);
+        sd.setName("auction-buyer");
+        for (String category : categories) {
+            sd.addProperties(new Property(AuctionProtocol.CATEGORY, category));
+        }
+        dfd.addServices(sd);
+        return dfd;
+    }
+
+    /**
+     * @return The template of the subscription: every agent offering the buyer service.
+     */
+    public static DFAgentDescription template() {
+        DFAgentDescription template = new DFAgentDescription();
+        ServiceDescription sd = new ServiceDescription();
+        sd.setType(SERVICE_TYPE);
+        template.addServices(sd);
+        return template;
+    }
+
+    /**
+     * Applies a notification of the DF subscription. A description without services
+     * is a buyer that deregistered. The first notification lists every buyer registered: the buyers
+     * restored from a snapshot it leaves out are gone, and removed.
+     * The other replies of the subscription carry no description:
+     * an AGREE is skipped, a refusal or a failure is printed.
+     * @param msg A message of the conversation of the subscription.
+     */
+    public void onNotification(ACLMessage msg) {
+        if (msg.getPerformative() != ACLMessage.INFORM) {
+            if (msg.getPerformative() != ACLMessage.AGREE) {
+                System.err.println("Buyer subscription refused by the DF: " + msg.getContent());
+            }
+            return;
+        }
+        try {
+            DFAgentDescription[] changes = DFService.decodeNotification(msg.getContent());
+            for (DFAgentDescription dfd : changes) {
+                unconfirmed.remove(dfd.getName());
+            }
+            unconfirmed.forEach(this::remove);
+            unconfirmed.clear();
+            apply(changes);
+            ready = true;
+        } catch (FIPAException fe) {
+            fe.printStackTrace();
+        }
+    }
+
+    /**
+     * Applies the descriptions of a notification or of a search of the DF.
+     * @param changes The descriptions; one without services is a buyer that deregistered.
+     */
+    public void apply(DFAgentDescription[] changes) {
+        for (DFAgentDescription dfd : changes) {
+            Iterator<?> services = dfd.getAllServices();
+            if (!services.hasNext()) {
+                remove(dfd.getName());
+                continue;
+            }
+            Set<String> categories = new HashSet<>();
+            while (services.hasNext()) {
+                ServiceDescription sd = (ServiceDescription) services.next();
+                Iterator<?> properties = sd.getAllProperties();
+                while (properties.hasNext()) {
+                    Property property = (Property) properties.next();
+                    if (AuctionProtocol.CATEGORY.equals(property.getName())) {
+                        categories.add(String.valueOf(property.getValue()));
+                    }
+                }
+            }
+            put(dfd.getName(), categories);
+        }
+    }
+
+    /**
+     * Adds a buyer, or replaces its categories.
+     * @param buyer The AID of the buyer.
+     * @param categories The categories of interest, empty for every lot.
+     */
+    public void put(AID buyer, Set<String> categories) {
+        remove(buyer);
+        interests.put(buyer, categories);
+        all.join(buyer);
+        if (categories.isEmpty()) {
+            everything.add(buyer);
+            topics.values().forEach(topic -> topic.join(buyer));
+        } else {
+            for (String category : categories) {
+                byCategory.computeIfAbsent(category, c -> new LinkedHashSet<>()).add(buyer);
+                Topic topic = topics.get(category);
+                if (topic != null) {
+                    topic.join(buyer);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a buyer written by a snapshot of the auctioneer. The directory is then ready:
+     * after a warm restart, lots start with the buyers known before, and the DF subscription
+     * brings them up to date as the buyers register again. The buyer is removed if the first notification
+     * does not list it.
+     * @param buyer The AID of the buyer.
+     * @param categories The categories of interest, empty for every lot.
+     */
+    public void restore(AID buyer, Set<String> categories) {
+        put(buyer, categories);
+        unconfirmed.add(buyer);
+        ready = true;
+    }
+
+    /**
+     * Writes every known buyer to a snapshot.
+     * @param target The journal written.
+     */
+    public void snapshot(AuctionJournal target) {
+        for (Map.Entry<AID, Set<String>> buyer : interests.entrySet()) {
+            target.buyer(buyer.getKey(), buyer.getValue());
+        }
+    }
+
+    /**
+     * Removes a buyer, if known.
+     * @param buyer The AID of the buyer.
+     */
+    public void remove(AID buyer) {
+        Set<String> categories = interests.remove(buyer);
+        if (categories == null) {
+            return;
+        }
+        all.leave(buyer);
+        if (categories.isEmpty()) {
+            everything.remove(buyer);
+            topics.values().forEach(topic -> topic.leave(buyer));
+        } else {
+            for (String category : categories) {
+                Set<AID> buyers = byCategory.get(category);
+                buyers.remove(buyer);
+                if (buyers.isEmpty()) {
+                    byCategory.remove(category);
+                }
+                Topic topic = topics.get(category);
+                if (topic != null) {
+                    topic.leave(buyer);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param category The category of a lot, null for a lot without category.
+     * @return The topic of the buyers interested in the category; every buyer for a lot without category.
+     */
+    public Topic topic(String category) {
+        if (category == null) {
+            return all;
+        }
+        Topic topic = topics.get(category);
+        if (topic == null) {
+            Set<AID> buyers = new LinkedHashSet<>(everything);
+            buyers.addAll(byCategory.getOrDefault(category, Collections.emptySet()));
+            topic = new Topic(category, buyers);
+            topics.put(category, topic);
+        }
+        return topic;
+    }
+
+    /**
+     * @param buyer The AID of a buyer.
+     * @return true if the buyer is known.
+     */
+    public boolean contains(AID buyer) {
+        return interests.containsKey(buyer);
+    }
+
+    /**
+     * @return true once the first notification arrived; before, the directory may be incomplete.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * @return The number of buyers known.
+     */
+    public int size() {
+        return interests.size();
+    }
+}
@@ -0,0 +1,224 @@
+package ma.fstm.ilisi.tp4;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.concurrent.Executor;
+
+/**
+ * BuyerGui is the optional Swing view of a buyer agent.
+ * It lets a person place bids and request more time through a {@link BuyerCore},
+ * on the most recently opened auction.
+ * The events of the core are applied on the event dispatch thread, once per frame, through {@link GuiUpdates},
+ * and the actions of the buttons run in the agent thread, submitted as commands.
+ */
+public class BuyerGui implements BuyerView {
+    private final JFrame frame;
+    private final GuiUpdates updates = new GuiUpdates();
+    private final LogModel log = new LogModel(LogModel.DEFAULT_CAPACITY);
+    private JTextField bidField;
+    private JButton bidButton;
+    private JButton maxBidButton;
+    private JButton moreTimeButton;
+    private JButton leaveButton;
+    private JLabel statusLabel;
+    private JLabel currentMaxBidLabel;
+    private BuyerCore core;
+    private Executor commands;
+    private long currentAuctionId = AuctionProtocol.NO_AUCTION;
+
+    /**
+     * Creates and shows the GUI for the buyer agent.
+     * @param agentName The local name of the agent.
+     */
+    public BuyerGui(String agentName) {
+        frame = new JFrame("Buyer: " + agentName);
+        frame.setLayout(new BorderLayout(10, 10));
+
+        // Status panel
+        JPanel statusPanel = new JPanel(new GridLayout(2, 1));
+        statusLabel = new JLabel("No active auction");
+        currentMaxBidLabel = new JLabel("Current max bid: --");
+        statusPanel.add(statusLabel);
+        statusPanel.add(currentMaxBidLabel);
+
+        // Bidding panel
+        JPanel biddingPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        biddingPanel.setBorder(BorderFactory.createTitledBorder("Place Bid"));
+
+        bidField = new JTextField(10);
+        bidButton = new JButton("Submit Bid");
+        bidButton.setEnabled(false);
+        maxBidButton = new JButton("Set Max Bid");
+        maxBidButton.setEnabled(false);
+        moreTimeButton = new JButton("Request More Time");
+        moreTimeButton.setEnabled(false);
+        leaveButton = new JButton("Leave");
+        leaveButton.setEnabled(false);
+
+        biddingPanel.add(new JLabel("Amount:"));
+        biddingPanel.add(bidField);
+        biddingPanel.add(bidButton);
+        biddingPanel.add(maxBidButton);
+        biddingPanel.add(moreTimeButton);
+        biddingPanel.add(leaveButton);
+
+        // Log panel
+        JScrollPane scrollPane = new JScrollPane(log.createList(updates, 10));
+        scrollPane.setBorder(BorderFactory.createTitledBorder("Auction Log"));
+
+        // Main panel
+        JPanel mainPanel = new JPanel(new BorderLayout(5, 5));
+        mainPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        mainPanel.add(statusPanel, BorderLayout.NORTH);
+        mainPanel.add(biddingPanel, BorderLayout.CENTER);
+        mainPanel.add(scrollPane, BorderLayout.SOUTH);
+
+        frame.add(mainPanel);
+
+        // Action listeners
+        bidButton.addActionListener(e -> {
+            try {
+                long bid = Money.toMinor(Double.parseDouble(bidField.getText()));
+                long auctionId = currentAuctionId;
+                bidField.setText("");
+                commands.execute(() -> {
+                    if (!core.placeBid(auctionId, bid)) {
+                        refused("Bid", auctionId);
+                    }
+                });
+            } catch (NumberFormatException ex) {
+                JOptionPane.showMessageDialog(frame,
+                        "Please enter a valid number");
+            }
+        });
+
+        maxBidButton.addActionListener(e -> {
+            try {
+                long maxBid = Money.toMinor(Double.parseDouble(bidField.getText()));
+                long auctionId = currentAuctionId;
+                bidField.setText("");
+                commands.execute(() -> {
+                    if (!core.placeMaxBid(auctionId, maxBid)) {
+                        refused("Max bid", auctionId);
+                    }
+                });
+            } catch (NumberFormatException ex) {
+                JOptionPane.showMessageDialog(frame,
+                        "Please enter a valid number");
+            }
+        });
+
+        moreTimeButton.addActionListener(e -> {
+            long auctionId = currentAuctionId;
+            commands.execute(() -> core.requestMoreTime(auctionId));
+        });
+        leaveButton.addActionListener(e -> {
+            long auctionId = currentAuctionId;
+            commands.execute(() -> core.leave(auctionId));
+        });
+
+        frame.pack();
+        frame.setLocationRelativeTo(null);
+        frame.setVisible(true);
+    }
+
+    /**
+     * Binds the buttons of this view to the given core.
+     * @param core The core that places the bids.
+     * @param commands Runs the actions on the core in the agent thread.
+     */
+    public void bind(BuyerCore core, Executor commands) {
+        this.core = core;
+        this.commands = commands;
+    }
+
+    /**
+     * Tells the user a bid was not sent, from the agent thread.
+     */
+    private void refused(String what, long auctionId) {
+        String message = core.isOpen(auctionId)
+                ? what + " must be higher than current maximum bid: " + Money.format(core.getCurrentMaxBid(auctionId))
+                : "The auction is closed";
+        SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(frame, message));
+    }
+
+    public void auctionOpened(long auctionId, String item, long minPrice) {
+        updates.post(() -> {
+            currentAuctionId = auctionId;
+            statusLabel.setText("Current auction: " + item);
+            currentMaxBidLabel.setText("Current max bid: " + Money.format(minPrice));
+            bidButton.setEnabled(true);
+            maxBidButton.setEnabled(true);
+            moreTimeButton.setEnabled(true);
+            leaveButton.setEnabled(true);
+            log.append("New auction for " + item + " (min: " + Money.format(minPrice) + ")");
+        });
+    }
+
+    public void maxBidChanged(long auctionId, long maxBid) {
+        updates.post(() -> {
+            if (auctionId == currentAuctionId) {
+                currentMaxBidLabel.setText("Current max bid: " + Money.format(maxBid));
+                log.append("New maximum bid: " + Money.format(maxBid));
+            }
+        });
+    }
+
+    public void timeExtended(long auctionId, int seconds) {
+        log("Auction time extended to " + seconds + " seconds");
+    }
+
+    public void bidPlaced(long auctionId, long amount) {
+        log("Bid placed: " + Money.format(amount));
+    }
+
+    public void maxBidPlaced(long auctionId, long maxAmount) {
+        log("Max bid set: " + Money.format(maxAmount));
+    }
+
+    public void bidWon(String item) {
+        log("Your bid was accepted! You won " + item);
+    }
+
+    public void bidRejected(long auctionId) {
+        log("Your bid was rejected");
+    }
+
+    public void biddingClosed(long auctionId) {
+        updates.post(() -> {
+            if (auctionId != currentAuctionId) {
+                return;
+            }
+            currentAuctionId = AuctionProtocol.NO_AUCTION;
+            bidButton.setEnabled(false);
+            maxBidButton.setEnabled(false);
+            moreTimeButton.setEnabled(false);
+            leaveButton.setEnabled(false);
+            statusLabel.setText("No active auction");
+            currentMaxBidLabel.setText("Current max bid: --");
+        });
+    }
+
+    public void moreTimeRequested(long auctionId) {
+        log("Requested more time");
+    }
+
+    public void auctionLeft(long auctionId) {
+        log("Left the auction");
+    }
+
+    /**
+     * Queues a line of the log; the text is built on the calling thread.
+     */
+    private void log(String line) {
+        updates.post(() -> log.append(line));
+    }
+
+    /**
+     * Disposes of the frame.
+     */
+    public void dispose() {
+        updates.stop();
+        frame.dispose();
+    }
+}
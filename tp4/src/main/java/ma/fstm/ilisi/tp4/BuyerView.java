@@ -0,0 +1,30 @@
+package ma.fstm.ilisi.tp4;
+
+/**
+ * BuyerView receives the events of a BuyerCore.
+ * All methods default to no-ops so headless agents can use {@link #NONE}.
+ * Amounts are in minor units, see {@link Money}.
+ */
+public interface BuyerView {
+    BuyerView NONE = new BuyerView() { };
+
+    default void auctionOpened(long auctionId, String item, long minPrice) { }
+
+    default void maxBidChanged(long auctionId, long maxBid) { }
+
+    default void timeExtended(long auctionId, int seconds) { }
+
+    default void bidPlaced(long auctionId, long amount) { }
+
+    default void maxBidPlaced(long auctionId, long maxAmount) { }
+
+    default void bidWon(String item) { }
+
+    default void bidRejected(long auctionId) { }
+
+    default void biddingClosed(long auctionId) { }
+
+    default void moreTimeRequested(long auctionId) { }
+
+    default void auctionLeft(long auctionId) { }
+}
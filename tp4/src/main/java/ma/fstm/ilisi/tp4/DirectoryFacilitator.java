@@ -0,0 +1,25 @@
+package ma.fstm.ilisi.tp4;
+
+import jade.core.Agent;
+import jade.domain.DFService;
+import jade.domain.FIPAAgentManagement.DFAgentDescription;
+import jade.domain.FIPAAgentManagement.FIPAManagementVocabulary;
+
+/**
+ * DirectoryFacilitator gathers the calls to the DF shared by the agents, whatever service they registered.
+ */
+public final class DirectoryFacilitator {
+    private DirectoryFacilitator() {
+    }
+
+    /**
+     * Deregisters an agent from the DF without waiting for the reply, as the agent is going away.
+     * @param agent The agent being taken down.
+     */
+    public static void deregister(Agent agent) {
+        DFAgentDescription dfd = new DFAgentDescription();
+        dfd.setName(agent.getAID());
+        agent.send(DFService.createRequestMessage(agent, agent.getDefaultDF(),
+                FIPAManagementVocabulary.DEREGISTER, dfd, null));
+    }
+}
@@ -0,0 +1,77 @@
+package ma.fstm.ilisi.tp4;
+
+import jade.core.AID;
+
+/**
+ * DutchAuction is the descending clock auction: the asking price starts above the minimum price
+ * and falls by equal steps, spread over the duration of the lot, down to the minimum price.
+ * Each new asking price is broadcast as the current maximum of the lot. The first bid at or above
+ * the asking price wins at that price and closes the lot; without one, the lot closes unsold at its deadline.
+ */
+public class DutchAuction implements AuctionMechanism {
+    public static final String NAME = "dutch";
+
+    private final double startRatio;
+    private final int steps;
+
+    /**
+     * @param startRatio The starting asking price, as a multiple of the minimum price, e.g. 2.
+     * @param steps The number of steps from the starting price down to the minimum price.
+     */
+    public DutchAuction(double startRatio, int steps) {
+        this.startRatio = Math.max(1, startRatio);
+        this.steps = Math.max(1, steps);
+    }
+
+    public String getName() {
+        return NAME;
+    }
+
+    public boolean closesOnAccept() {
+        return true;
+    }
+
+    public long open(Auction auction, long durationMillis) {
+        auction.setCurrentMaxBid(Math.round(auction.getMinPrice() * startRatio));
+        return durationMillis / (stepsLeft(auction) + 1);
+    }
+
+    public long resume(Auction auction, long durationMillis) {
+        // The asking price goes on falling from where it was
+        return Math.max(0, durationMillis) / (stepsLeft(auction) + 1);
+    }
+
+    public boolean accept(Auction auction, AID bidder, long amount) {
+        if (amount < auction.getCurrentMaxBid()) {
+            return false;
+        }
+        // The winner pays the asking price, not more
+        auction.getBids().place(bidder, auction.getCurrentMaxBid());
+        return true;
+    }
+
+    public long tick(Auction auction, long now) {
+        long ask = auction.getCurrentMaxBid();
+        if (ask <= auction.getMinPrice()) {
+            return -1;
+        }
+        auction.setCurrentMaxBid(Math.max(auction.getMinPrice(), ask - step(auction)));
+        return Math.max(0, auction.getDeadline() - now) / (stepsLeft(auction) + 1);
+    }
+
+    /**
+     * @return The amount the asking price falls by at each step, in minor units.
+     */
+    private long step(Auction auction) {
+        long start = Math.round(auction.getMinPrice() * startRatio);
+        return Math.max(1, (start - auction.getMinPrice()) / steps);
+    }
+
+    /**
+     * @return The number of steps left before the asking price reaches the minimum price.
+     */
+    private long stepsLeft(Auction auction) {
+        long step = step(auction);
+        return (auction.getCurrentMaxBid() - auction.getMinPrice() + step - 1) / step;
+    }
+}
@@ -0,0 +1,29 @@
+package ma.fstm.ilisi.tp4;
+
+import jade.core.AID;
+
+/**
+ * EnglishAuction is the open ascending auction: every bid must beat the current maximum,
+ * which all the buyers of the lot are told, and the best bid at the deadline wins at its own amount.
+ * It is the format of the lots published without one.
+ */
+public class EnglishAuction implements AuctionMechanism {
+    public static final String NAME = "english";
+
+    public String getName() {
+        return NAME;
+    }
+
+    public boolean isOpenOutcry() {
+        return true;
+    }
+
+    public boolean accept(Auction auction, AID bidder, long amount) {
+        if (amount <= auction.getCurrentMaxBid()) {
+            return false;
+        }
+        auction.setCurrentMaxBid(amount);
+        auction.getBids().place(bidder, amount);
+        return true;
+    }
+}
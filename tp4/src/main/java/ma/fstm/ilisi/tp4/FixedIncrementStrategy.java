@@ -0,0 +1,47 @@
+package ma.fstm.ilisi.tp4;
+
+/**
+ * FixedIncrementStrategy bids at a steady pace, like a person watching the lot:
+ * once per period, if another buyer holds the maximum, it raises it by a fixed increment,
+ * as long as the new bid stays within the budget.
+ * Sealed and Dutch lots are bid as {@link BiddingStrategy#bidWithoutOutcry} does.
+ */
+public class FixedIncrementStrategy implements BiddingStrategy {
+    private final long budget;
+    private final long increment;
+    private final long periodMillis;
+
+    /**
+     * @param budget The highest amount this buyer pays, in minor units.
+     * @param increment The amount added to the current maximum, in minor units.
+     * @param periodMillis The time between two bids.
+     */
+    public FixedIncrementStrategy(long budget, long increment, long periodMillis) {
+        this.budget = budget;
+        this.increment = increment;
+        this.periodMillis = periodMillis;
+    }
+
+    public void auctionOpened(BuyerCore buyer, long auctionId, long minPrice) {
+        if (!BiddingStrategy.bidWithoutOutcry(buyer, auctionId, budget)) {
+            wake(buyer, auctionId);
+        }
+    }
+
+    public void maxBidChanged(BuyerCore buyer, long auctionId, long maxBid) {
+        // Only the asking price of a Dutch lot calls for an answer before the next period
+        BiddingStrategy.bidWithoutOutcry(buyer, auctionId, budget);
+    }
+
+    public void wake(BuyerCore buyer, long auctionId) {
+        long bid = buyer.getCurrentMaxBid(auctionId) + increment;
+        if (!buyer.isLeading(auctionId) && bid <= budget) {
+            buyer.placeBid(auctionId, bid);
+        }
+        if (bid <= budget) {
+            buyer.wakeUp(auctionId, periodMillis);
+        } else if (!buyer.isLeading(auctionId)) {
+            buyer.leave(auctionId);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package ma.fstm.ilisi.tp4;
+
+import javax.swing.Timer;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * GuiUpdates carries the events of an agent to its Swing view. The agent threads post updates on a
+ * lock-free queue, which the event dispatch thread drains at most {@value #FRAMES_PER_SECOND} times
+ * per second, so a burst of bids costs one repaint per frame instead of one per bid.
+ * After each drain, the frame tasks run, e.g. to fire the changes of a model once for the whole frame.
+ *
+ * <p>Updates must copy what they show on the agent thread, the state of the cores is not thread-safe.
+ * A frame stops draining after {@value #FRAME_BUDGET_MILLIS} ms; the rest waits for the next frame.
+ */
+public class GuiUpdates {
+    public static final int FRAMES_PER_SECOND = 30;
+    private static final long FRAME_BUDGET_MILLIS = 10;
+
+    private final ConcurrentLinkedQueue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    private final List<Runnable> frameTasks = new CopyOnWriteArrayList<>();
+    private final Timer timer;
+
+    /**
+     * Creates the queue and starts draining it.
+     */
+    public GuiUpdates() {
+        timer = new Timer(1000 / FRAMES_PER_SECOND, e -> drain());
+        timer.setCoalesce(true);
+        timer.start();
+    }
+
+    /**
+     * Queues an update, run on the event dispatch thread at the next frame.
+     * @param update The update; any thread may call this.
+     */
+    public void post(Runnable update) {
+        queue.offer(update);
+    }
+
+    /**
+     * Runs a task on the event dispatch thread after each drain of the queue.
+     * @param task The task, e.g. flushing a model.
+     */
+    public void onFrame(Runnable task) {
+        frameTasks.add(task);
+    }
+
+    private void drain() {
+        long end = System.nanoTime() + FRAME_BUDGET_MILLIS * 1_000_000;
+        Runnable update;
+        int count = 0;
+        while ((update = queue.poll()) != null) {
+            update.run();
+            // Check the clock every 64 updates only
+            if ((++count & 63) == 0 && System.nanoTime() > end) {
+                break;
+            }
+        }
+        for (Runnable task : frameTasks) {
+            task.run();
+        }
+    }
+
+    /**
+     * Stops draining the queue; pending updates are dropped.
+     */
+    public void stop() {
+        timer.stop();
+        queue.clear();
+    }
+}
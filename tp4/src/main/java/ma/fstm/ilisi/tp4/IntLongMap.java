@@ -0,0 +1,118 @@
+package ma.fstm.ilisi.tp4;
+
+import java.util.Arrays;
+
+/**
+ * IntLongMap maps the ids of a {@link BidderRegistry} to longs, in two primitive arrays:
+ * no boxing and no entry object, so a lot with many bidders stays a few arrays for the GC.
+ * It is open-addressed with linear probing, kept at most half full, and removals shift the
+ * following entries back instead of leaving tombstones.
+ */
+public class IntLongMap {
+    /** Key stored in free cells; keys are ids, never negative. */
+    private static final int FREE = -1;
+
+    private int[] keys;
+    private long[] values;
+    private int size;
+
+    public IntLongMap() {
+        keys = new int[8];
+        values = new long[8];
+        Arrays.fill(keys, FREE);
+    }
+
+    /**
+     * @param key The key, not negative.
+     * @param missing The value returned when the key is absent.
+     * @return The value of the key, or missing.
+     */
+    public long get(int key, long missing) {
+        int mask = keys.length - 1;
+        for (int i = BidderRegistry.mix(key) & mask; keys[i] != FREE; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Sets the value of a key.
+     * @param key The key, not negative.
+     * @param value The value.
+     */
+    public void put(int key, long value) {
+        int mask = keys.length - 1;
+        int i = BidderRegistry.mix(key) & mask;
+        while (keys[i] != FREE) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+    }
+
+    /**
+     * Removes a key, if present.
+     * @param key The key.
+     */
+    public void remove(int key) {
+        int mask = keys.length - 1;
+        int i = BidderRegistry.mix(key) & mask;
+        while (keys[i] != key) {
+            if (keys[i] == FREE) {
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        // Shift back the entries of the run that would no longer be reachable
+        for (int j = (i + 1) & mask; keys[j] != FREE; j = (j + 1) & mask) {
+            int home = BidderRegistry.mix(keys[j]) & mask;
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                i = j;
+            }
+        }
+        keys[i] = FREE;
+        size--;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes every key, keeping the arrays.
+     */
+    public void clear() {
+        Arrays.fill(keys, FREE);
+        size = 0;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new int[capacity];
+        values = new long[capacity];
+        Arrays.fill(keys, FREE);
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != FREE) {
+                int i = BidderRegistry.mix(oldKeys[j]) & mask;
+                while (keys[i] != FREE) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+}
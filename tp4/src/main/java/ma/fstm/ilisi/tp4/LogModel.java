@@ -0,0 +1,86 @@
+package ma.fstm.ilisi.tp4;
+
+import javax.swing.*;
+
+/**
+ * LogModel keeps the last lines of a log in a ring buffer, for a {@link JList}: the oldest line
+ * is dropped once the buffer is full, so the memory of a log stays flat however long the agent runs.
+ * Lines are added on the event dispatch thread, and the list is told once per frame by {@link #flush()}.
+ */
+public class LogModel extends AbstractListModel<String> {
+    private static final long serialVersionUID = 1L;
+    public static final int DEFAULT_CAPACITY = 1000;
+
+    private final String[] lines;
+    private int start;
+    private int size;
+    private int shownSize;
+    private boolean dirty;
+
+    /**
+     * @param capacity The number of lines kept.
+     */
+    public LogModel(int capacity) {
+        lines = new String[capacity];
+    }
+
+    /**
+     * Adds a line, dropping the oldest one if the buffer is full.
+     * @param line The line.
+     */
+    public void append(String line) {
+        if (size < lines.length) {
+            lines[(start + size++) % lines.length] = line;
+        } else {
+            lines[start] = line;
+            start = (start + 1) % lines.length;
+        }
+        dirty = true;
+    }
+
+    /**
+     * Tells the list about the lines added since the last call.
+     * @return true if there were any.
+     */
+    public boolean flush() {
+        if (!dirty) {
+            return false;
+        }
+        dirty = false;
+        if (size > shownSize) {
+            fireIntervalAdded(this, shownSize, size - 1);
+        }
+        if (shownSize > 0) {
+            fireContentsChanged(this, 0, shownSize - 1);
+        }
+        shownSize = size;
+        return true;
+    }
+
+    public int getSize() {
+        return shownSize;
+    }
+
+    public String getElementAt(int index) {
+        return lines[(start + index) % lines.length];
+    }
+
+    /**
+     * Creates the list of a log view: fixed row height, so only the visible rows are laid out,
+     * kept scrolled to the last line.
+     * @param updates The queue whose frames flush the model.
+     * @param rows The number of visible rows.
+     * @return The list, to put in a scroll pane.
+     */
+    public JList<String> createList(GuiUpdates updates, int rows) {
+        JList<String> list = new JList<>(this);
+        list.setPrototypeCellValue("X".repeat(60));
+        list.setVisibleRowCount(rows);
+        updates.onFrame(() -> {
+            if (flush()) {
+                list.ensureIndexIsVisible(shownSize - 1);
+            }
+        });
+        return list;
+    }
+}
@@ -0,0 +1,117 @@
+package ma.fstm.ilisi.tp4;
+
+import jade.core.Agent;
+import jade.core.behaviours.CyclicBehaviour;
+import jade.domain.FIPANames;
+import jade.lang.acl.ACLMessage;
+import jade.lang.acl.MessageTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * MailboxBehaviour drains the mailbox of an agent in bounded batches and hands each message
+ * to the first handler whose {@link MessageTemplate} matches it. Unmatched auction messages are dropped,
+ * while the messages of other conversations are left in the mailbox for their own receiver. The replies
+ * of the DF to a request, such as a lookup running on an {@link Offloader} thread, are never taken,
+ * even by a handler whose template would match them.
+ * It only blocks once the mailbox is empty, so a backlog costs one scheduler round per batch
+ * instead of one per message, while the bound lets the tickers of the agent run between batches.
+ *
+ * <p>Messages matching a {@link #priority priority} template, such as bids, are taken first,
+ * for up to three quarters of a batch; the rest of the batch takes the mailbox in arrival order,
+ * so informational messages always make progress.
+ */
+public class MailboxBehaviour extends CyclicBehaviour {
+    private static final long serialVersionUID = 1L;
+
+    private final transient AgentMetrics metrics;
+    private final int batchSize;
+    private final transient List<MessageTemplate> templates = new ArrayList<>();
+    private final transient List<Consumer<ACLMessage>> handlers = new ArrayList<>();
+    private MessageTemplate priority;
+    private MessageTemplate matched = AuctionProtocol.matchAuction();
+    /** The messages taken from the mailbox: those matched, except the replies awaited by a DF call. */
+    private MessageTemplate taken;
+    private MessageTemplate priorityTaken;
+
+    /**
+     * @param agent The agent owning the mailbox.
+     * @param metrics The metrics of the agent, recording the handling of each message.
+     * @param batchSize The most messages handled per action.
+     */
+    public MailboxBehaviour(Agent agent, AgentMetrics metrics, int batchSize) {
+        super(agent);
+        this.metrics = metrics;
+        this.batchSize = Math.max(1, batchSize);
+        taken = withoutDfReplies(matched);
+    }
+
+    /**
+     * Handles the messages matching a template.
+     * @param template The template, e.g. {@link AuctionProtocol#match(int)}.
+     * @param handler The handler.
+     * @return This behaviour.
+     */
+    public MailboxBehaviour on(MessageTemplate template, Consumer<ACLMessage> handler) {
+        templates.add(template);
+        handlers.add(handler);
+        matched = MessageTemplate.or(matched, template);
+        taken = withoutDfReplies(matched);
+        return this;
+    }
+
+    /**
+     * Handles the messages matching a template, before the other messages of the mailbox.
+     * @param template The template.
+     * @param handler The handler.
+     * @return This behaviour.
+     */
+    public MailboxBehaviour priority(MessageTemplate template, Consumer<ACLMessage> handler) {
+        priority = priority == null ? template : MessageTemplate.or(priority, template);
+        priorityTaken = withoutDfReplies(priority);
+        return on(template, handler);
+    }
+
+    public void action() {
+        int handled = 0;
+        ACLMessage msg;
+        if (priority != null) {
+            int quota = batchSize - batchSize / 4;
+            while (handled < quota && (msg = myAgent.receive(priorityTaken)) != null) {
+                dispatch(msg);
+                handled++;
+            }
+        }
+        while (handled < batchSize && (msg = myAgent.receive(taken)) != null) {
+            dispatch(msg);
+            handled++;
+        }
+        if (handled < batchSize) {
+            // Nothing left for this behaviour, wait for the next message
+            block();
+        }
+    }
+
+    /**
+     * The DF answers its requests in the fipa-request protocol, and the calls of DFService wait for these
+     * answers on their own thread; its subscription notifications use another protocol and may be handled.
+     */
+    private MessageTemplate withoutDfReplies(MessageTemplate template) {
+        MessageTemplate dfReplies = MessageTemplate.and(MessageTemplate.MatchSender(myAgent.getDefaultDF()),
+                MessageTemplate.MatchProtocol(FIPANames.InteractionProtocol.FIPA_REQUEST));
+        return MessageTemplate.and(template, MessageTemplate.not(dfReplies));
+    }
+
+    private void dispatch(ACLMessage msg) {
+        long start = metrics.received(msg);
+        for (int i = 0; i < templates.size(); i++) {
+            if (templates.get(i).match(msg)) {
+                handlers.get(i).accept(msg);
+                break;
+            }
+        }
+        metrics.handled(start);
+    }
+}
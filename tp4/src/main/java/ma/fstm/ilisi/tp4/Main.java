@@ -1,40 +1,264 @@
-package ma.fstm.ilisi.tp4;
-
-import jade.core.Profile;
-import jade.core.ProfileImpl;
-import jade.core.Runtime;
-import jade.wrapper.AgentContainer;
-
-/**
- * The Main class is the entry point of the application.
- * It sets up the JADE runtime environment and creates the main container.
- * It also creates and starts the seller, auctioneer, and buyer agents.
- */
-public class Main {
-    public static void main(String[] args) {
-        // Get the JADE runtime instance
-        Runtime rt = Runtime.instance();
-
-        // Create a profile for the main container
-        Profile p = new ProfileImpl();
-        p.setParameter(Profile.MAIN_HOST, "localhost");
-        p.setParameter(Profile.GUI, "true");
-
-        // Create the main container
-        AgentContainer container = rt.createMainContainer(p);
-
-        try {
-            // Create and start the seller agent
-            container.createNewAgent("seller", "ma.fstm.ilisi.tp4.SellerAgent", null).start();
-            // Create and start the auctioneer agent
-            container.createNewAgent("auctioneer", "ma.fstm.ilisi.tp4.AuctioneerAgent", null).start();
-
-            // Create and start four buyer agents
-            for (int i = 0; i < 4; i++) {
-                container.createNewAgent("buyer" + (i+1), "ma.fstm.ilisi.tp4.BuyerAgent", null).start();
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-    }
-}
\ No newline at end of file
+package ma.fstm.ilisi.tp4;
+
+import jade.core.Profile;
+import jade.core.ProfileImpl;
+import jade.core.Runtime;
+import jade.wrapper.AgentContainer;
+import jade.wrapper.AgentController;
+import jade.wrapper.StaleProxyException;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The Main class is the entry point of the application.
+ * It sets up the JADE runtime environment and creates the main container.
+ * It also creates and starts the seller, auctioneer, and buyer agents.
+ *
+ * <p>Usage: {@code Main [--headless] [--rma] [--buyers=N] [--sellers=N] [--item=NAME --price=P --time=S --delay=MS]
+ * [--shards=N] [--containers=N] [--join=HOST --shard-base=K] [--broadcast-window=MS] [--broadcast-delta]
+ * [--anti-snipe=MS] [--more-time=S] [--journal=DIR [--snapshot-interval=MS]] [--codec=binary|text]
+ * [--proxy-increment=I] [--strategy=proxy|increment|snipe|mix --budget=B --increment=I [--server-side]]
+ * [--metrics-port=P] [--categories=A,B,...] [--formats=english|sealed|vickrey|dutch,...
+ * --dutch-start=R --dutch-steps=N] [--batch-clearing] [--record=FILE]}, or {@code Main --replay=FILE [--speed=X]}.
+ * <ul>
+ *   <li>With {@code --headless} no Swing frame is created by the agents,
+ *   and the sellers run the auction given by {@code --item}, {@code --price} and {@code --time},
+ *   {@code --delay} milliseconds after they start.</li>
+ *   <li>The JADE remote management GUI is only started with {@code --rma}: it costs startup time
+ *   and a view of every agent.</li>
+ *   <li>With several sellers, the auctioneers run one concurrent lot per seller.</li>
+ *   <li>The sellers and the buyers are created in parallel, on one thread per processor.</li>
+ *   <li>{@code --shards} starts that many auctioneer shards, spread round-robin over the main
+ *   container and {@code --containers} extra containers of this JVM.</li>
+ *   <li>{@code --join} starts only auctioneer shards, in a container of this JVM joining the
+ *   platform whose main container runs on HOST; {@code --shard-base} keeps their names unique.</li>
+ *   <li>{@code --anti-snipe} pushes the deadline of a lot back when a bid arrives that close to it;
+ *   {@code --more-time} is the extension granted to a buyer asking for more time (30 seconds).</li>
+ *   <li>{@code --proxy-increment} is the step of the bids the auctioneer places for hidden maxima.</li>
+ *   <li>{@code --journal} keeps a journal of each auctioneer shard in DIR, replayed when the shard restarts.
+ *   Every {@code --snapshot-interval} milliseconds (30000) it is compacted into a snapshot of the open lots
+ *   and of the buyers known: restarting with the same DIR offers new lots to the buyers known before,
+ *   while the agents register with the DF again, and two seconds later offers the open lots again
+ *   to their sellers, with their standing bids, and to their buyers still registered.</li>
+ *   <li>{@code --strategy} makes the buyers bid on their own; "mix" cycles through the three strategies.
+ *   The budgets are spread between half and one and a half times {@code --budget}.
+ *   With {@code --server-side}, proxy buyers leave their budget with the auctioneer as a hidden maximum.</li>
+ *   <li>{@code --metrics-port} serves the metrics of the agents of this JVM as text on
+ *   {@code http://localhost:P/metrics}; they are always available through JMX.</li>
+ *   <li>{@code --categories} deals the categories round-robin to the sellers and to the buyers,
+ *   so each lot is only offered to the buyers of its category.</li>
+ *   <li>{@code --formats} deals the auction formats round-robin to the sellers, see {@link AuctionMechanism}.
+ *   A Dutch lot starts at {@code --dutch-start} times its minimum price (2) and falls to it
+ *   in {@code --dutch-steps} steps (20) over its duration.</li>
+ *   <li>With {@code --batch-clearing}, the auctioneers clear the lots closing together in one batch,
+ *   with the bundle bids on several of them, see {@link BatchClearing}.</li>
+ *   <li>{@code --record} writes every message between the agents of this JVM to a {@link TrafficLog}.</li>
+ *   <li>{@code --replay} runs a recorded log through the auctioneers with a {@link ReplayEngine},
+ *   without JADE, at {@code --speed} times the recorded pace (0, the default, for as fast as possible),
+ *   and prints its throughput, handling times and the outcome of every lot. The auctioneer options
+ *   above apply to the replay.</li>
+ * </ul>
+ */
+public class Main {
+    public static void main(String[] args) {
+        AgentArgs options = AgentArgs.of(Arrays.stream(args)
+                .map(arg -> arg.startsWith("--") ? arg.substring(2) : arg)
+                .toArray());
+        boolean headless = options.isHeadless();
+        int buyerCount = options.getInt("buyers", 4);
+        int sellerCount = options.getInt("sellers", 1);
+        int shardCount = options.getInt("shards", 1);
+        int shardBase = options.getInt("shard-base", 0);
+        String item = options.get("item", null);
+        String price = options.get("price", "100");
+        String time = options.get("time", "60");
+        String journal = options.get("journal", null);
+        String[] categories = options.has("categories") ? options.get("categories", "").split(",") : null;
+        String[] formats = options.has("formats") ? options.get("formats", "").split(",") : null;
+
+        if (options.has("metrics-port")) {
+            MetricsServer.start(options.getInt("metrics-port", 9404));
+        }
+
+        Object[] agentArgs = {AgentArgs.HEADLESS + "=" + headless, "codec=" + options.get("codec", "binary")};
+        Object[] shardArgs = {agentArgs[0], agentArgs[1],
+                "broadcast-window=" + options.getInt("broadcast-window", 0),
+                "broadcast-delta=" + options.has("broadcast-delta"),
+                "anti-snipe=" + options.getInt("anti-snipe", 0),
+                "more-time=" + options.getInt("more-time", 30),
+                "proxy-increment=" + options.get("proxy-increment", "1"),
+                "dutch-start=" + options.get("dutch-start", "2"),
+                "dutch-steps=" + options.getInt("dutch-steps", 20),
+                "batch-clearing=" + options.has("batch-clearing"),
+                "snapshot-interval=" + options.getInt("snapshot-interval", 30000)};
+
+        try {
+            if (options.has("replay")) {
+                // Replay a recording through the auctioneers, without any container
+                new ReplayEngine(TrafficLog.read(Path.of(options.get("replay", null))), AgentArgs.of(shardArgs))
+                        .run(options.getDouble("speed", 0))
+                        .print(System.out);
+                return;
+            }
+            if (options.has("record")) {
+                TrafficLog.start(Path.of(options.get("record", null)));
+                java.lang.Runtime.getRuntime().addShutdownHook(new Thread(TrafficLog::stop));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        // Get the JADE runtime instance
+        Runtime rt = Runtime.instance();
+
+        if (options.has("join")) {
+            // Only host auctioneer shards, in a container joining an existing platform
+            Profile p = new ProfileImpl(false);
+            p.setParameter(Profile.MAIN_HOST, options.get("join", "localhost"));
+            AgentContainer container = rt.createAgentContainer(p);
+            startShards(List.of(container), shardCount, shardBase, shardArgs, journal);
+            return;
+        }
+
+        // Create a profile for the main container
+        Profile p = new ProfileImpl();
+        p.setParameter(Profile.MAIN_HOST, "localhost");
+        p.setParameter(Profile.GUI, String.valueOf(options.has("rma")));
+
+        // Create the main container
+        AgentContainer container = rt.createMainContainer(p);
+
+        // Extra containers for the auctioneer shards
+        List<AgentContainer> shardContainers = new ArrayList<>();
+        shardContainers.add(container);
+        for (int i = 0; i < options.getInt("containers", 0); i++) {
+            Profile cp = new ProfileImpl(false);
+            cp.setParameter(Profile.MAIN_HOST, "localhost");
+            cp.setParameter(Profile.CONTAINER_NAME, "shards-" + (i+1));
+            shardContainers.add(rt.createAgentContainer(cp));
+        }
+
+        try {
+            // Create and start the auctioneer shards
+            startShards(shardContainers, shardCount, shardBase, shardArgs, journal);
+
+            List<Callable<AgentController>> agents = new ArrayList<>();
+
+            // Create and start the seller agents
+            for (int i = 0; i < sellerCount; i++) {
+                Object[] sellerArgs = agentArgs;
+                if (item != null) {
+                    String lot = sellerCount == 1 ? item : item + "-" + (i+1);
+                    sellerArgs = new Object[]{agentArgs[0], agentArgs[1], "item=" + lot, "price=" + price,
+                            "time=" + time, "delay=" + options.getInt("delay", 2000)};
+                }
+                if (categories != null) {
+                    sellerArgs = append(sellerArgs, "category=" + categories[i % categories.length]);
+                }
+                if (formats != null) {
+                    sellerArgs = append(sellerArgs, "format=" + formats[i % formats.length]);
+                }
+                String name = sellerCount == 1 ? "seller" : "seller" + (i+1);
+                Object[] startArgs = sellerArgs;
+                agents.add(() -> start(container.createNewAgent(name, "ma.fstm.ilisi.tp4.SellerAgent", startArgs)));
+            }
+
+            // Create and start the buyer agents
+            String[] strategies = {"proxy", "increment", "snipe"};
+            String strategy = options.get("strategy", null);
+            double budget = options.getDouble("budget", 100);
+            for (int i = 0; i < buyerCount; i++) {
+                Object[] buyerArgs = agentArgs;
+                if (strategy != null) {
+                    // Golden-ratio spread of the budgets, so the buyers do not all stop at the same price
+                    double spread = 0.5 + (i * 0.6180339887) % 1.0;
+                    buyerArgs = new Object[]{agentArgs[0], agentArgs[1],
+                            "strategy=" + (strategy.equals("mix") ? strategies[i % strategies.length] : strategy),
+                            "budget=" + Money.format(Money.toMinor(budget * spread)),
+                            "increment=" + options.get("increment", "1"),
+                            "server-side=" + options.has("server-side")};
+                }
+                if (categories != null) {
+                    buyerArgs = append(buyerArgs, "categories=" + categories[i % categories.length]);
+                }
+                String name = "buyer" + (i+1);
+                Object[] startArgs = buyerArgs;
+                agents.add(() -> start(container.createNewAgent(name, "ma.fstm.ilisi.tp4.BuyerAgent", startArgs)));
+            }
+            startAll(agents);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Creates and starts agents in parallel: each one spends most of its creation waiting for the
+     * container, so thousands of buyers start in a fraction of the time of a loop.
+     * @param agents Each creates and starts one agent.
+     */
+    private static void startAll(List<Callable<AgentController>> agents) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(java.lang.Runtime.getRuntime().availableProcessors());
+        try {
+            for (Future<AgentController> agent : pool.invokeAll(agents)) {
+                try {
+                    agent.get();
+                } catch (ExecutionException e) {
+                    e.getCause().printStackTrace();
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static AgentController start(AgentController agent) throws StaleProxyException {
+        agent.start();
+        return agent;
+    }
+
+    /**
+     * @return A copy of the arguments of an agent, with one more argument.
+     */
+    private static Object[] append(Object[] args, String arg) {
+        Object[] copy = Arrays.copyOf(args, args.length + 1);
+        copy[args.length] = arg;
+        return copy;
+    }
+
+    /**
+     * Creates and starts auctioneer shards, round-robin over the given containers.
+     * A single shard keeps the historical name "auctioneer".
+     * @param containers The containers hosting the shards.
+     * @param count The number of shards.
+     * @param base The number of shards started by other JVMs, to keep names unique.
+     * @param shardArgs The arguments of the shards.
+     * @param journal The directory of the journals of the shards, or null to run without journal.
+     */
+    private static void startShards(List<AgentContainer> containers, int count, int base, Object[] shardArgs,
+                                    String journal) {
+        try {
+            for (int i = 0; i < count; i++) {
+                String name = count == 1 && base == 0 ? "auctioneer" : "auctioneer-" + (base + i + 1);
+                Object[] args = shardArgs;
+                if (journal != null) {
+                    args = Arrays.copyOf(shardArgs, shardArgs.length + 1);
+                    args[shardArgs.length] = "journal=" + Path.of(journal, name);
+                }
+                containers.get(i % containers.size())
+                        .createNewAgent(name, "ma.fstm.ilisi.tp4.AuctioneerAgent", args).start();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,522 @@
+package ma.fstm.ilisi.tp4;
+
+import jade.core.AID;
+import jade.lang.acl.ACLMessage;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * MappedAuctionJournal is an append-only, memory-mapped journal of auction events.
+ * Records are binary and small: a bid or a proxy bid takes 29 bytes with its sequence number, bidders being written once
+ * as a NAME record and then referenced by an int. The type byte of a record is written
+ * after its payload, so a record torn by a crash reads as the end of the journal.
+ *
+ * <p>Writes go to the mapped file and are forced to disk by {@link #sync()}, called
+ * once per group-commit window. Messages sent through {@link #gate(Consumer)} while
+ * records are not yet on disk are held back until the next sync, so nobody learns of
+ * a bid the journal could still lose.
+ *
+ * <p>Each restart replays the last complete generation of the journal and starts a new
+ * generation with a snapshot of the open lots, so recovery only reads live state.
+ * The auctioneer also starts a new generation periodically, which keeps the journal as small
+ * as its open lots however many bids they received.
+ * A generation is complete once its snapshot ends with a CHECKPOINT record; the previous one
+ * is only deleted then, so a crash while writing a snapshot falls back to it.
+ */
+public class MappedAuctionJournal implements AuctionJournal {
+    private static final byte NAME = 1;
+    private static final byte PUBLISH = 2;
+    private static final byte START = 3;
+    private static final byte BID = 4;
+    private static final byte EXTEND = 5;
+    private static final byte CLOSE = 6;
+    private static final byte CHECKPOINT = 7;
+    private static final byte SKIP = 8;
+    private static final byte PROXY = 9;
+    private static final byte FORMAT = 10;
+    private static final byte BUNDLE = 11;
+    private static final byte BUYER = 12;
+    private static final byte DROP = 13;
+    private static final byte MAX_BID = 14;
+    /** Room kept at the end of a region for the SKIP record to the next region. */
+    private static final int SKIP_SIZE = 5;
+    private static final String SUFFIX = ".journal";
+
+    private final Path dir;
+    private final String base;
+    private final int regionSize;
+    private final Map<AID, Integer> names = new HashMap<>();
+    private final List<ACLMessage> held = new ArrayList<>();
+    private Consumer<ACLMessage> sender;
+    private FileChannel channel;
+    private MappedByteBuffer region;
+    private long regionStart;
+    private int syncedPosition;
+    private long generation;
+    private boolean dirty;
+    private long records;
+    private long syncs;
+
+    /**
+     * @param base The path of the journal; generations are written to "base-N.journal".
+     * @param regionSize The size of each mapped region of the file.
+     */
+    public MappedAuctionJournal(Path base, int regionSize) {
+        Path parent = base.toAbsolutePath().getParent();
+        this.dir = parent;
+        this.base = base.getFileName().toString();
+        this.regionSize = regionSize;
+    }
+
+    /**
+     * Wraps the sender of the agent so that messages wait for the records written before them.
+     * @param sender Sends messages on behalf of the agent.
+     * @return The sender to use for every message of the auctioneer.
+     */
+    public Consumer<ACLMessage> gate(Consumer<ACLMessage> sender) {
+        this.sender = sender;
+        return msg -> {
+            if (dirty) {
+                held.add(msg);
+            } else {
+                sender.accept(msg);
+            }
+        };
+    }
+
+    /**
+     * Replays the last complete generation into the given target.
+     * @param target Rebuilds the lots from the events.
+     * @return The number of events replayed.
+     */
+    public long recover(AuctionJournal target) throws IOException {
+        List<Long> generations = generations();
+        for (int i = generations.size() - 1; i >= 0; i--) {
+            long gen = generations.get(i);
+            if (generation == 0 && read(file(gen), AuctionJournal.NONE) >= 0) {
+                generation = gen;
+            }
+        }
+        return generation == 0 ? 0 : read(file(generation), target);
+    }
+
+    /**
+     * Starts a new generation of the journal with a snapshot of the open lots,
+     * then deletes the older generations. The current generation, if any, is synced and closed first.
+     * @param snapshot Writes the events rebuilding the open lots into the journal.
+     */
+    public void open(Consumer<AuctionJournal> snapshot) throws IOException {
+        if (channel != null) {
+            sync();
+            channel.close();
+        }
+        generation++;
+        Files.createDirectories(dir);
+        channel = FileChannel.open(file(generation), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        regionStart = 0;
+        region = channel.map(FileChannel.MapMode.READ_WRITE, 0, regionSize);
+        syncedPosition = 0;
+        names.clear();
+
+        snapshot.accept(this);
+        ensure(1);
+        commit(region.position(), CHECKPOINT, 1);
+        sync();
+
+        for (long gen : generations()) {
+            if (gen < generation) {
+                try {
+                    Files.deleteIfExists(file(gen));
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    public void published(long auctionId, AID seller, String item, long minPrice) {
+        int sellerRef = ref(seller);
+        byte[] utf8 = item.getBytes(StandardCharsets.UTF_8);
+        int size = 1 + 8 + 4 + 8 + 2 + utf8.length;
+        int at = ensure(size);
+        region.putLong(at + 1, auctionId);
+        region.putInt(at + 9, sellerRef);
+        region.putLong(at + 13, minPrice);
+        region.putShort(at + 21, (short) utf8.length);
+        region.put(at + 23, utf8);
+        commit(at, PUBLISH, size);
+    }
+
+    public void format(long auctionId, String format) {
+        byte[] utf8 = format.getBytes(StandardCharsets.UTF_8);
+        int size = 1 + 8 + 2 + utf8.length;
+        int at = ensure(size);
+        region.putLong(at + 1, auctionId);
+        region.putShort(at + 9, (short) utf8.length);
+        region.put(at + 11, utf8);
+        commit(at, FORMAT, size);
+    }
+
+    public void started(long auctionId, List<AID> buyers, long deadline) {
+        int[] refs = new int[buyers.size()];
+        for (int i = 0; i < refs.length; i++) {
+            refs[i] = ref(buyers.get(i));
+        }
+        int size = 1 + 8 + 8 + 4 + 4 * refs.length;
+        int at = ensure(size);
+        region.putLong(at + 1, auctionId);
+        region.putLong(at + 9, deadline);
+        region.putInt(at + 17, refs.length);
+        for (int i = 0; i < refs.length; i++) {
+            region.putInt(at + 21 + 4 * i, refs[i]);
+        }
+        commit(at, START, size);
+    }
+
+    public void bid(long auctionId, AID bidder, long amount, long seq) {
+        int bidderRef = ref(bidder);
+        int at = ensure(29);
+        region.putLong(at + 1, auctionId);
+        region.putInt(at + 9, bidderRef);
+        region.putLong(at + 13, amount);
+        region.putLong(at + 21, seq);
+        commit(at, BID, 29);
+    }
+
+    public void proxy(long auctionId, AID bidder, long maxAmount, long seq) {
+        int bidderRef = ref(bidder);
+        int at = ensure(29);
+        region.putLong(at + 1, auctionId);
+        region.putInt(at + 9, bidderRef);
+        region.putLong(at + 13, maxAmount);
+        region.putLong(at + 21, seq);
+        commit(at, PROXY, 29);
+    }
+
+    public void dropped(long auctionId, AID bidder) {
+        int bidderRef = ref(bidder);
+        int at = ensure(13);
+        region.putLong(at + 1, auctionId);
+        region.putInt(at + 9, bidderRef);
+        commit(at, DROP, 13);
+    }
+
+    public void maxBid(long auctionId, long amount, long maxBidSeq) {
+        int at = ensure(25);
+        region.putLong(at + 1, auctionId);
+        region.putLong(at + 9, amount);
+        region.putLong(at + 17, maxBidSeq);
+        commit(at, MAX_BID, 25);
+    }
+
+    public void bundle(AID bidder, long[] auctionIds, long[] amounts) {
+        int bidderRef = ref(bidder);
+        int size = 1 + 4 + 4 + 16 * auctionIds.length;
+        int at = ensure(size);
+        region.putInt(at + 1, bidderRef);
+        region.putInt(at + 5, auctionIds.length);
+        for (int i = 0; i < auctionIds.length; i++) {
+            region.putLong(at + 9 + 16 * i, auctionIds[i]);
+            region.putLong(at + 17 + 16 * i, amounts[i]);
+        }
+        commit(at, BUNDLE, size);
+    }
+
+    public void extended(long auctionId, long deadline) {
+        int at = ensure(17);
+        region.putLong(at + 1, auctionId);
+        region.putLong(at + 9, deadline);
+        commit(at, EXTEND, 17);
+    }
+
+    public void closed(long auctionId) {
+        int at = ensure(9);
+        region.putLong(at + 1, auctionId);
+        commit(at, CLOSE, 9);
+    }
+
+    public void buyer(AID buyer, Set<String> categories) {
+        int buyerRef = ref(buyer);
+        byte[][] utf8 = new byte[categories.size()][];
+        int size = 1 + 4 + 2;
+        int i = 0;
+        for (String category : categories) {
+            utf8[i] = category.getBytes(StandardCharsets.UTF_8);
+            size += 2 + utf8[i++].length;
+        }
+        int at = ensure(size);
+        region.putInt(at + 1, buyerRef);
+        region.putShort(at + 5, (short) utf8.length);
+        int pos = at + 7;
+        for (byte[] category : utf8) {
+            region.putShort(pos, (short) category.length);
+            region.put(pos + 2, category);
+            pos += 2 + category.length;
+        }
+        commit(at, BUYER, size);
+    }
+
+    /**
+     * Forces the records written since the last sync to disk, then sends the messages held back meanwhile.
+     */
+    public void sync() {
+        if (!dirty) {
+            return;
+        }
+        region.force(syncedPosition, region.position() - syncedPosition);
+        syncedPosition = region.position();
+        dirty = false;
+        syncs++;
+        if (!held.isEmpty()) {
+            List<ACLMessage> released = new ArrayList<>(held);
+            held.clear();
+            released.forEach(sender);
+        }
+    }
+
+    /**
+     * Forces the pending records and closes the file.
+     */
+    public void close() {
+        try {
+            sync();
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return The number of records written since the journal was opened.
+     */
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * @return The number of group commits forced to disk.
+     */
+    public long getSyncs() {
+        return syncs;
+    }
+
+    /**
+     * @return The size of the current generation, in bytes.
+     */
+    public long getBytes() {
+        return regionStart + region.position();
+    }
+
+    /**
+     * Returns the id of a name, writing a NAME record the first time the name is seen.
+     */
+    private int ref(AID aid) {
+        Integer ref = names.get(aid);
+        if (ref != null) {
+            return ref;
+        }
+        ref = names.size();
+        names.put(aid, ref);
+        byte[] utf8 = aid.getName().getBytes(StandardCharsets.UTF_8);
+        int size = 1 + 4 + 2 + utf8.length;
+        int at = ensure(size);
+        region.putInt(at + 1, ref);
+        region.putShort(at + 5, (short) utf8.length);
+        region.put(at + 7, utf8);
+        commit(at, NAME, size);
+        return ref;
+    }
+
+    /**
+     * Makes room for a record in the current region, mapping the next region when it is full.
+     * @return The position of the record.
+     */
+    private int ensure(int size) {
+        if (region.position() + size + SKIP_SIZE <= region.capacity()) {
+            return region.position();
+        }
+        int at = region.position();
+        region.putInt(at + 1, region.capacity() - at);
+        region.put(at, SKIP);
+        region.force(syncedPosition, region.capacity() - syncedPosition);
+        try {
+            regionStart += region.capacity();
+            region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, Math.max(regionSize, size + SKIP_SIZE));
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot extend the journal", e);
+        }
+        syncedPosition = 0;
+        return 0;
+    }
+
+    /**
+     * Publishes a record whose payload is written by setting its type byte.
+     */
+    private void commit(int at, byte type, int size) {
+        region.put(at, type);
+        region.position(at + size);
+        dirty = true;
+        records++;
+    }
+
+    /**
+     * Reads a generation and feeds its events to the target.
+     * @return The number of events, or -1 if the generation has no checkpoint.
+     */
+    private static long read(Path path, AuctionJournal target) throws IOException {
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buf = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            List<AID> names = new ArrayList<>();
+            boolean checkpoint = false;
+            long events = 0;
+            int pos = 0;
+            while (pos < buf.limit()) {
+                byte type = buf.get(pos);
+                switch (type) {
+                    case NAME: {
+                        int length = buf.getShort(pos + 5) & 0xffff;
+                        names.add(new AID(string(buf, pos + 7, length), AID.ISGUID));
+                        pos += 7 + length;
+                        continue;
+                    }
+                    case PUBLISH: {
+                        int length = buf.getShort(pos + 21) & 0xffff;
+                        target.published(buf.getLong(pos + 1), names.get(buf.getInt(pos + 9)),
+                                string(buf, pos + 23, length), buf.getLong(pos + 13));
+                        pos += 23 + length;
+                        break;
+                    }
+                    case FORMAT: {
+                        int length = buf.getShort(pos + 9) & 0xffff;
+                        target.format(buf.getLong(pos + 1), string(buf, pos + 11, length));
+                        pos += 11 + length;
+                        break;
+                    }
+                    case START: {
+                        int count = buf.getInt(pos + 17);
+                        List<AID> buyers = new ArrayList<>(count);
+                        for (int i = 0; i < count; i++) {
+                            buyers.add(names.get(buf.getInt(pos + 21 + 4 * i)));
+                        }
+                        target.started(buf.getLong(pos + 1), buyers, buf.getLong(pos + 9));
+                        pos += 21 + 4 * count;
+                        break;
+                    }
+                    case BID:
+                        target.bid(buf.getLong(pos + 1), names.get(buf.getInt(pos + 9)), buf.getLong(pos + 13),
+                                buf.getLong(pos + 21));
+                        pos += 29;
+                        break;
+                    case PROXY:
+                        target.proxy(buf.getLong(pos + 1), names.get(buf.getInt(pos + 9)), buf.getLong(pos + 13),
+                                buf.getLong(pos + 21));
+                        pos += 29;
+                        break;
+                    case DROP:
+                        target.dropped(buf.getLong(pos + 1), names.get(buf.getInt(pos + 9)));
+                        pos += 13;
+                        break;
+                    case MAX_BID:
+                        target.maxBid(buf.getLong(pos + 1), buf.getLong(pos + 9), buf.getLong(pos + 17));
+                        pos += 25;
+                        break;
+                    case BUNDLE: {
+                        int count = buf.getInt(pos + 5);
+                        long[] auctionIds = new long[count];
+                        long[] amounts = new long[count];
+                        for (int i = 0; i < count; i++) {
+                            auctionIds[i] = buf.getLong(pos + 9 + 16 * i);
+                            amounts[i] = buf.getLong(pos + 17 + 16 * i);
+                        }
+                        target.bundle(names.get(buf.getInt(pos + 1)), auctionIds, amounts);
+                        pos += 9 + 16 * count;
+                        break;
+                    }
+                    case BUYER: {
+                        int count = buf.getShort(pos + 5) & 0xffff;
+                        Set<String> categories = new HashSet<>();
+                        int at = pos + 7;
+                        for (int i = 0; i < count; i++) {
+                            int length = buf.getShort(at) & 0xffff;
+                            categories.add(string(buf, at + 2, length));
+                            at += 2 + length;
+                        }
+                        target.buyer(names.get(buf.getInt(pos + 1)), categories);
+                        pos = at;
+                        break;
+                    }
+                    case EXTEND:
+                        target.extended(buf.getLong(pos + 1), buf.getLong(pos + 9));
+                        pos += 17;
+                        break;
+                    case CLOSE:
+                        target.closed(buf.getLong(pos + 1));
+                        pos += 9;
+                        break;
+                    case CHECKPOINT:
+                        checkpoint = true;
+                        pos += 1;
+                        continue;
+                    case SKIP:
+                        pos += buf.getInt(pos + 1);
+                        continue;
+                    default:
+                        // End of the journal, or a record torn by a crash
+                        return checkpoint ? events : -1;
+                }
+                events++;
+            }
+            return checkpoint ? events : -1;
+        }
+    }
+
+    private static String string(MappedByteBuffer buf, int at, int length) {
+        byte[] utf8 = new byte[length];
+        buf.get(at, utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private Path file(long gen) {
+        return dir.resolve(base + "-" + gen + SUFFIX);
+    }
+
+    /**
+     * @return The generations found on disk, in ascending order.
+     */
+    private List<Long> generations() throws IOException {
+        List<Long> generations = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            return generations;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, base + "-*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String gen = name.substring(base.length() + 1, name.length() - SUFFIX.length());
+                try {
+                    generations.add(Long.parseLong(gen));
+                } catch (NumberFormatException e) {
+                    // Not a generation of this journal
+                }
+            }
+        }
+        generations.sort(null);
+        return generations;
+    }
+}
@@ -0,0 +1,133 @@
+package ma.fstm.ilisi.tp4;
+
+import jade.lang.acl.ACLMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * MaxBidCoalescer sends the max-bid broadcasts of the auctioneer.
+ * With a flush window, the updates of a lot are collapsed until the next {@link #flush()}
+ * and only the latest maximum is broadcast, so a bidding war costs at most one
+ * broadcast per lot and per window instead of one per accepted bid.
+ * In delta mode, the buyer holding the current maximum is not told about its own bid,
+ * and a lot whose maximum did not change since its last broadcast is not broadcast again.
+ */
+public class MaxBidCoalescer {
+    private final Consumer<ACLMessage> sender;
+    private final AuctionCodec codec;
+    private final Consumer<Auction> onBroadcast;
+    private final long windowMillis;
+    private final boolean delta;
+    private final List<Auction> pending = new ArrayList<>();
+    private long updates;
+    private long suppressed;
+    private long sent;
+    private long skippedReceivers;
+
+    /**
+     * @param sender Sends messages on behalf of the agent.
+     * @param codec Writes the content of the broadcasts.
+     * @param onBroadcast Called after each broadcast, e.g. to log it.
+     * @param windowMillis The flush window, 0 to broadcast every update at once.
+     * @param delta true to skip receivers that already hold the current maximum.
+     */
+    public MaxBidCoalescer(Consumer<ACLMessage> sender, AuctionCodec codec, Consumer<Auction> onBroadcast,
+                           long windowMillis, boolean delta) {
+        this.sender = sender;
+        this.codec = codec;
+        this.onBroadcast = onBroadcast;
+        this.windowMillis = windowMillis;
+        this.delta = delta;
+    }
+
+    /**
+     * @return The flush window in milliseconds, 0 when updates are broadcast at once.
+     */
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    /**
+     * Records that the maximum bid of a lot changed.
+     * @param auction The lot.
+     */
+    public void update(Auction auction) {
+        updates++;
+        if (windowMillis <= 0) {
+            broadcast(auction);
+        } else if (auction.isBroadcastPending()) {
+            suppressed++;
+        } else {
+            auction.setBroadcastPending(true);
+            pending.add(auction);
+        }
+    }
+
+    /**
+     * Broadcasts the latest maximum of every lot updated since the last flush.
+     */
+    public void flush() {
+        for (Auction auction : pending) {
+            auction.setBroadcastPending(false);
+            if (auction.isActive()) {
+                broadcast(auction);
+            }
+        }
+        pending.clear();
+    }
+
+    /**
+     * Broadcasts the current maximum bid of a lot to the topic of its buyers.
+     * @param auction The lot.
+     */
+    private void broadcast(Auction auction) {
+        if (delta && auction.getLastBroadcastSeq() == auction.getMaxBidSeq()) {
+            suppressed++;
+            return;
+        }
+        if (auction.getTopic() == null || auction.getTopic().size() == 0) {
+            // Nobody follows the lot, there is no one to tell
+            suppressed++;
+            return;
+        }
+        ACLMessage broadcast = auction.getTopic().message(ACLMessage.INFORM);
+        if (delta && auction.getBids().best() != null && broadcast.removeReceiver(auction.getBids().best().getBidder())) {
+            skippedReceivers++;
+        }
+        codec.writeMaxBid(broadcast, auction.getId(), auction.getCurrentMaxBid(), auction.getMaxBidSeq());
+        sender.accept(broadcast);
+        auction.setLastBroadcastSeq(auction.getMaxBidSeq());
+        sent++;
+        onBroadcast.accept(auction);
+    }
+
+    /**
+     * @return The number of max-bid updates recorded.
+     */
+    public long getUpdates() {
+        return updates;
+    }
+
+    /**
+     * @return The number of updates that did not lead to a broadcast of their own.
+     */
+    public long getSuppressed() {
+        return suppressed;
+    }
+
+    /**
+     * @return The number of broadcasts sent.
+     */
+    public long getSent() {
+        return sent;
+    }
+
+    /**
+     * @return The number of receivers skipped in delta mode.
+     */
+    public long getSkippedReceivers() {
+        return skippedReceivers;
+    }
+}
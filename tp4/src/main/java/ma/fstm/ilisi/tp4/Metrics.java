@@ -0,0 +1,233 @@
+package ma.fstm.ilisi.tp4;
+
+import javax.management.*;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Metrics is the registry of the counters, gauges and histograms of one agent.
+ * Once {@link #register() registered}, it is exposed as the JMX bean
+ * {@code ma.fstm.ilisi.tp4:type=Metrics,name=<agent>}, whose attributes are the counters, the gauges
+ * and the count, mean, percentiles and maximum of each histogram, and is included in the text
+ * written by {@link #writeText(StringBuilder)} for the {@link MetricsServer} scrape endpoint.
+ * Counters may also read an existing field of the agent, such as the counters of {@link MaxBidCoalescer}.
+ */
+public class Metrics implements DynamicMBean {
+    private static final String PREFIX = "tp4_";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String[] HISTOGRAM_ATTRIBUTES = {"count", "mean", "p50", "p90", "p99", "p999", "max"};
+    private static final List<Metrics> REGISTERED = new CopyOnWriteArrayList<>();
+
+    private final String agent;
+    private final Map<String, Metric> metrics = new ConcurrentSkipListMap<>();
+    private ObjectName objectName;
+
+    /**
+     * A named instrument: a counter or gauge reading a value, or a histogram.
+     */
+    private static final class Metric {
+        private final String type;
+        private final LongSupplier value;
+        private final Histogram histogram;
+
+        private Metric(String type, LongSupplier value, Histogram histogram) {
+            this.type = type;
+            this.value = value;
+            this.histogram = histogram;
+        }
+    }
+
+    /**
+     * @param agent The local name of the agent, used as label and in the JMX name.
+     */
+    public Metrics(String agent) {
+        this.agent = agent;
+    }
+
+    /**
+     * Creates a counter incremented by the agent.
+     * @param name The metric name, e.g. "messages_received".
+     * @return The counter.
+     */
+    public LongAdder counter(String name) {
+        LongAdder counter = new LongAdder();
+        metrics.put(name, new Metric("counter", counter::sum, null));
+        return counter;
+    }
+
+    /**
+     * Exposes a monotonic value kept by the agent as a counter.
+     * @param name The metric name.
+     * @param value Reads the value.
+     */
+    public void counter(String name, LongSupplier value) {
+        metrics.put(name, new Metric("counter", value, null));
+    }
+
+    /**
+     * Exposes a value that goes up and down, such as the depth of the mailbox.
+     * @param name The metric name.
+     * @param value Reads the value.
+     */
+    public void gauge(String name, LongSupplier value) {
+        metrics.put(name, new Metric("gauge", value, null));
+    }
+
+    /**
+     * Creates a histogram recorded by the agent.
+     * @param name The metric name, with its unit, e.g. "action_time_ns".
+     * @return The histogram.
+     */
+    public Histogram histogram(String name) {
+        Histogram histogram = new Histogram();
+        metrics.put(name, new Metric("summary", null, histogram));
+        return histogram;
+    }
+
+    public String getAgent() {
+        return agent;
+    }
+
+    /**
+     * Registers the JMX bean and adds this registry to the scrape endpoint.
+     */
+    public void register() {
+        REGISTERED.add(this);
+        try {
+            objectName = new ObjectName("ma.fstm.ilisi.tp4:type=Metrics,name=" + ObjectName.quote(agent));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Removes the JMX bean and this registry from the scrape endpoint, when the agent is taken down.
+     */
+    public void unregister() {
+        REGISTERED.remove(this);
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Writes the metrics of every registered agent of this JVM in the Prometheus text format,
+     * the agent name being a label; a histogram is written as a summary with its maximum as quantile 1.
+     * @param out The text written.
+     */
+    public static void writeText(StringBuilder out) {
+        // Group the samples by metric, so each metric is described once
+        Map<String, List<Metrics>> byName = new TreeMap<>();
+        for (Metrics registry : REGISTERED) {
+            for (String name : registry.metrics.keySet()) {
+                byName.computeIfAbsent(name, n -> new ArrayList<>()).add(registry);
+            }
+        }
+        byName.forEach((name, registries) -> {
+            String type = registries.get(0).metrics.get(name).type;
+            out.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+            for (Metrics registry : registries) {
+                Metric metric = registry.metrics.get(name);
+                String label = "agent=\"" + registry.agent + "\"";
+                if (metric.histogram == null) {
+                    sample(out, name, label, metric.value.getAsLong());
+                    continue;
+                }
+                Histogram histogram = metric.histogram;
+                for (double quantile : QUANTILES) {
+                    sample(out, name, label + ",quantile=\"" + quantile + "\"",
+                            histogram.getValueAtPercentile(quantile * 100));
+                }
+                sample(out, name, label + ",quantile=\"1\"", histogram.getMax());
+                sample(out, name + "_sum", label, histogram.getSum());
+                sample(out, name + "_count", label, histogram.getCount());
+            }
+        });
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, long value) {
+        out.append(PREFIX).append(name).append('{').append(labels).append("} ").append(value).append('\n');
+    }
+
+    // DynamicMBean: a histogram h is read through the attributes h.count, h.mean, h.p50 to h.p999 and h.max
+
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Metric metric = metrics.get(attribute);
+        if (metric != null && metric.histogram == null) {
+            return metric.value.getAsLong();
+        }
+        int dot = attribute.lastIndexOf('.');
+        metric = dot < 0 ? null : metrics.get(attribute.substring(0, dot));
+        if (metric == null || metric.histogram == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        Histogram histogram = metric.histogram;
+        switch (attribute.substring(dot + 1)) {
+            case "count":
+                return histogram.getCount();
+            case "mean":
+                return histogram.getMean();
+            case "p50":
+                return histogram.getValueAtPercentile(50);
+            case "p90":
+                return histogram.getValueAtPercentile(90);
+            case "p99":
+                return histogram.getValueAtPercentile(99);
+            case "p999":
+                return histogram.getValueAtPercentile(99.9);
+            case "max":
+                return histogram.getMax();
+            default:
+                throw new AttributeNotFoundException(attribute);
+        }
+    }
+
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            try {
+                list.add(new Attribute(attribute, getAttribute(attribute)));
+            } catch (AttributeNotFoundException e) {
+                // Skipped, as the contract of getAttributes allows
+            }
+        }
+        return list;
+    }
+
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+    }
+
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        metrics.forEach((name, metric) -> {
+            if (metric.histogram == null) {
+                attributes.add(new MBeanAttributeInfo(name, "long", metric.type, true, false, false));
+            } else {
+                for (String suffix : HISTOGRAM_ATTRIBUTES) {
+                    attributes.add(new MBeanAttributeInfo(name + "." + suffix,
+                            suffix.equals("mean") ? "double" : "long", metric.type, true, false, false));
+                }
+            }
+        });
+        return new MBeanInfo(getClass().getName(), "Metrics of agent " + agent,
+                attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+    }
+}
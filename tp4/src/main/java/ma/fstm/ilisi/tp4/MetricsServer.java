@@ -0,0 +1,57 @@
+package ma.fstm.ilisi.tp4;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * MetricsServer is the local text scrape endpoint of the JVM:
+ * {@code GET http://localhost:<port>/metrics} returns the metrics of every agent of this JVM,
+ * see {@link Metrics#writeText(StringBuilder)}. It only listens on the loopback address.
+ */
+public class MetricsServer {
+    private static HttpServer server;
+
+    private MetricsServer() {
+    }
+
+    /**
+     * Starts the endpoint, once per JVM.
+     * @param port The port, on the loopback address.
+     */
+    public static synchronized void start(int port) {
+        if (server != null) {
+            return;
+        }
+        try {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            server.createContext("/metrics", exchange -> {
+                StringBuilder text = new StringBuilder();
+                Metrics.writeText(text);
+                byte[] body = text.toString().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            server.start();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Stops the endpoint, if started.
+     */
+    public static synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+}
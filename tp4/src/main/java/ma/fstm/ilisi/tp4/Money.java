@@ -0,0 +1,99 @@
+package ma.fstm.ilisi.tp4;
+
+/**
+ * Money converts between decimal prices and the long minor units (cents) used for bid amounts.
+ * Keeping amounts as primitive longs avoids boxing and rounding issues in the bid books.
+ */
+public final class Money {
+    public static final int MINOR_PER_MAJOR = 100;
+
+    private Money() {
+    }
+
+    /**
+     * @param amount A decimal price, e.g. 12.5.
+     * @return The price in minor units, e.g. 1250.
+     */
+    public static long toMinor(double amount) {
+        return Math.round(amount * MINOR_PER_MAJOR);
+    }
+
+    /**
+     * @param minor A price in minor units.
+     * @return The decimal price.
+     */
+    public static double toMajor(long minor) {
+        return (double) minor / MINOR_PER_MAJOR;
+    }
+
+    /**
+     * Parses a decimal price as sent in the text messages.
+     * @param text The decimal price, e.g. "12.5".
+     * @return The price in minor units.
+     */
+    public static long parse(String text) {
+        return parse(text, 0, text.length());
+    }
+
+    /**
+     * Parses a decimal price in a part of a string, without allocating.
+     * Plain decimals such as "12.5" are read digit by digit; other forms, such as the
+     * "1.0E7" written by Double.toString, go through Double.parseDouble.
+     * @param text The text holding the price.
+     * @param from The index of the first character of the price.
+     * @param to The index after the last character of the price.
+     * @return The price in minor units.
+     * @throws NumberFormatException if the text is not a price, e.g. empty, or "12." without decimals.
+     */
+    public static long parse(CharSequence text, int from, int to) {
+        int i = from;
+        boolean negative = i < to && text.charAt(i) == '-';
+        if (negative) {
+            i++;
+        }
+        long major = 0;
+        long minor = 0;
+        int digits = 0;
+        int decimals = -1;
+        for (; i < to; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (decimals < 0) {
+                    major = major * 10 + (c - '0');
+                    digits++;
+                } else if (decimals < 2) {
+                    minor = minor * 10 + (c - '0');
+                    decimals++;
+                } else if (decimals == 2) {
+                    if (c >= '5') {
+                        minor++; // Round half up on the third decimal
+                    }
+                    decimals++;
+                }
+            } else if (c == '.' && decimals < 0) {
+                decimals = 0;
+            } else {
+                return toMinor(Double.parseDouble(text.subSequence(from, to).toString()));
+            }
+        }
+        if (digits == 0 || decimals == 0) {
+            throw new NumberFormatException("Not a price: \"" + text.subSequence(from, to) + "\"");
+        }
+        if (decimals == 1) {
+            minor *= 10;
+        }
+        long amount = major * MINOR_PER_MAJOR + minor;
+        return negative ? -amount : amount;
+    }
+
+    /**
+     * Formats a price with two decimals, e.g. 1250 as "12.50".
+     * @param minor A price in minor units.
+     * @return The formatted price, readable by {@link #parse(String)}.
+     */
+    public static String format(long minor) {
+        long abs = Math.abs(minor);
+        long cents = abs % MINOR_PER_MAJOR;
+        return (minor < 0 ? "-" : "") + abs / MINOR_PER_MAJOR + (cents < 10 ? ".0" : ".") + cents;
+    }
+}
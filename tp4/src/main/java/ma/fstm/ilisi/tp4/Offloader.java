@@ -0,0 +1,125 @@
+package ma.fstm.ilisi.tp4;
+
+import jade.core.Agent;
+import jade.lang.acl.ACLMessage;
+import jade.lang.acl.MessageTemplate;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Offloader runs the blocking calls of an agent, such as DF lookups, on virtual threads,
+ * so the agent keeps handling bids while they wait. The result of a call is posted back into
+ * the mailbox of the agent as an internal message, and its callback runs in the agent thread
+ * when the {@link MailboxBehaviour} hands that message to {@link #complete(ACLMessage)}:
+ * the state of the agent is never touched from another thread.
+ *
+ * <p>JADE lets another thread wait for the reply of the DF, as long as the agent thread does not
+ * take it first; the mailbox behaviour never takes the replies of the DF to a request.
+ *
+ * <p>As an {@link Executor}, it runs commands from other threads, such as the actions of a GUI,
+ * in the agent thread the same way: the agent is the single writer of its state.
+ */
+public class Offloader implements Executor {
+    /** The ontology of the internal messages carrying results back to the agent. */
+    public static final String ONTOLOGY = "offload";
+
+    private final Agent agent;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, Runnable> completions = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong();
+
+    /**
+     * @param agent The agent owning the calls.
+     */
+    public Offloader(Agent agent) {
+        this.agent = agent;
+    }
+
+    /**
+     * Runs a blocking call on a virtual thread. If the call fails, the error is printed
+     * and the callback is not called.
+     * @param call The blocking call.
+     * @param onResult Called with the result, in the agent thread.
+     */
+    public <T> void submit(Callable<T> call, Consumer<T> onResult) {
+        String id = ONTOLOGY + "-" + nextId.incrementAndGet();
+        executor.execute(() -> {
+            T result;
+            try {
+                result = call.call();
+            } catch (Exception e) {
+                e.printStackTrace();
+                return;
+            }
+            completions.put(id, () -> onResult.accept(result));
+            post(id);
+        });
+    }
+
+    /**
+     * Runs a command in the agent thread, after the messages already in the mailbox.
+     * @param command The command; any thread may call this.
+     */
+    public void execute(Runnable command) {
+        String id = ONTOLOGY + "-" + nextId.incrementAndGet();
+        completions.put(id, command);
+        post(id);
+    }
+
+    /**
+     * Posts the internal message waking the agent up for a completion.
+     */
+    private void post(String id) {
+        ACLMessage done = new ACLMessage(ACLMessage.INFORM);
+        done.setSender(agent.getAID());
+        done.setOntology(ONTOLOGY);
+        done.setConversationId(id);
+        agent.postMessage(done);
+    }
+
+    /**
+     * Runs a blocking call on a virtual thread, without waiting for its result.
+     * @param call The blocking call; its failure is printed.
+     */
+    public void run(Callable<?> call) {
+        executor.execute(() -> {
+            try {
+                call.call();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * @return The template of the internal messages, to route them to {@link #complete(ACLMessage)}.
+     */
+    public MessageTemplate template() {
+        return MessageTemplate.MatchOntology(ONTOLOGY);
+    }
+
+    /**
+     * Runs the callback of a finished call.
+     * @param msg The internal message posted when the call finished.
+     */
+    public void complete(ACLMessage msg) {
+        Runnable completion = completions.remove(msg.getConversationId());
+        if (completion != null) {
+            completion.run();
+        }
+    }
+
+    /**
+     * Stops accepting calls; the calls already running finish on their own.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,136 @@
+package ma.fstm.ilisi.tp4;
+
+import jade.core.AID;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.*;
+
+/**
+ * ProposalTableModel holds the standing proposal of each bidder of the lot of a seller, best first,
+ * for a {@link javax.swing.JTable}, which only renders the visible rows whatever the number of bidders.
+ * Proposals are staged on the event dispatch thread and applied once per frame by {@link #flush()}:
+ * a few are moved into place, a large frame is sorted at once.
+ */
+public class ProposalTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+    private static final String[] COLUMNS = {"Bidder", "Amount (MAD)"};
+    /** Ranked like a {@link BidBook}: best amount first, then the earliest. */
+    private static final Comparator<Row> RANKING = (a, b) -> {
+        int byAmount = Long.compare(b.amount, a.amount);
+        return byAmount != 0 ? byAmount : Long.compare(a.seq, b.seq);
+    };
+
+    private static final class Row {
+        private final AID bidder;
+        private long amount;
+        private long seq;
+
+        private Row(AID bidder) {
+            this.bidder = bidder;
+        }
+    }
+
+    private final transient List<Row> rows = new ArrayList<>();
+    private final transient Map<AID, Row> byBidder = new HashMap<>();
+    private final transient Map<AID, Long> staged = new LinkedHashMap<>();
+    private long nextSeq;
+    private boolean cleared;
+
+    /**
+     * Stages the proposal of a bidder, replacing its previous one.
+     * @param bidder The AID of the bidder.
+     * @param amount The amount in minor units.
+     */
+    public void place(AID bidder, long amount) {
+        staged.remove(bidder);
+        staged.put(bidder, amount);
+    }
+
+    /**
+     * Stages the removal of every proposal.
+     */
+    public void clear() {
+        staged.clear();
+        cleared = true;
+    }
+
+    /**
+     * Applies the staged changes and tells the table.
+     * @return true if there were any.
+     */
+    public boolean flush() {
+        if (!cleared && staged.isEmpty()) {
+            return false;
+        }
+        if (cleared) {
+            rows.clear();
+            byBidder.clear();
+            cleared = false;
+        }
+        boolean sort = staged.size() > 16 && staged.size() * 16 > rows.size();
+        for (Map.Entry<AID, Long> proposal : staged.entrySet()) {
+            Row row = byBidder.get(proposal.getKey());
+            if (row == null) {
+                row = new Row(proposal.getKey());
+                byBidder.put(row.bidder, row);
+            } else if (!sort) {
+                rows.remove(Collections.binarySearch(rows, row, RANKING));
+            }
+            row.amount = proposal.getValue();
+            row.seq = nextSeq++;
+            if (!sort) {
+                rows.add(-Collections.binarySearch(rows, row, RANKING) - 1, row);
+            }
+        }
+        staged.clear();
+        if (sort) {
+            rows.clear();
+            rows.addAll(byBidder.values());
+            rows.sort(RANKING);
+        }
+        fireTableDataChanged();
+        return true;
+    }
+
+    /**
+     * @param row The index of a row.
+     * @return The bidder of that row.
+     */
+    public AID getBidder(int row) {
+        return rows.get(row).bidder;
+    }
+
+    /**
+     * @param row The index of a row.
+     * @return The amount of that row, in minor units.
+     */
+    public long getAmount(int row) {
+        return rows.get(row).amount;
+    }
+
+    /**
+     * @param bidder The AID of a bidder.
+     * @return The row of its proposal, or -1 if it has none.
+     */
+    public int indexOf(AID bidder) {
+        Row row = byBidder.get(bidder);
+        return row == null ? -1 : Collections.binarySearch(rows, row, RANKING);
+    }
+
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    public Object getValueAt(int row, int column) {
+        Row proposal = rows.get(row);
+        return column == 0 ? proposal.bidder.getLocalName() : Money.format(proposal.amount);
+    }
+}
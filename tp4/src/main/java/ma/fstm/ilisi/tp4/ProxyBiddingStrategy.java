@@ -0,0 +1,68 @@
+package ma.fstm.ilisi.tp4;
+
+/**
+ * ProxyBiddingStrategy bids on behalf of the buyer up to a maximum budget:
+ * whenever another buyer holds the maximum, it outbids them by the smallest increment
+ * the budget allows, and stops once the maximum exceeds the budget.
+ * Server-side, it leaves the budget once with the auctioneer as a hidden maximum instead,
+ * and the auctioneer settles the bidding without any further message from the buyer.
+ * Sealed and Dutch lots are bid as {@link BiddingStrategy#bidWithoutOutcry} does.
+ */
+public class ProxyBiddingStrategy implements BiddingStrategy {
+    private final long budget;
+    private final long increment;
+    private final boolean serverSide;
+
+    /**
+     * @param budget The highest amount this buyer pays, in minor units.
+     * @param increment The amount added to the current maximum, in minor units.
+     * @param serverSide true to leave the budget with the auctioneer instead of bidding step by step.
+     */
+    public ProxyBiddingStrategy(long budget, long increment, boolean serverSide) {
+        this.budget = budget;
+        this.increment = increment;
+        this.serverSide = serverSide;
+    }
+
+    public void auctionOpened(BuyerCore buyer, long auctionId, long minPrice) {
+        if (BiddingStrategy.bidWithoutOutcry(buyer, auctionId, budget)) {
+            return;
+        }
+        if (serverSide) {
+            buyer.placeMaxBid(auctionId, budget);
+        } else {
+            outbid(buyer, auctionId);
+        }
+    }
+
+    public void maxBidChanged(BuyerCore buyer, long auctionId, long maxBid) {
+        if (BiddingStrategy.bidWithoutOutcry(buyer, auctionId, budget)) {
+            return;
+        }
+        if (serverSide && maxBid > budget) {
+            // The auctioneer already bid the whole budget for this buyer
+            buyer.leave(auctionId);
+            return;
+        }
+        outbid(buyer, auctionId);
+    }
+
+    public void bidRejected(BuyerCore buyer, long auctionId) {
+        if (!BiddingStrategy.bidWithoutOutcry(buyer, auctionId, budget)) {
+            outbid(buyer, auctionId);
+        }
+    }
+
+    private void outbid(BuyerCore buyer, long auctionId) {
+        if (serverSide || buyer.isLeading(auctionId)) {
+            return;
+        }
+        long max = buyer.getCurrentMaxBid(auctionId);
+        long bid = Math.min(max + increment, budget);
+        if (bid > max && bid > buyer.getOwnBid(auctionId)) {
+            buyer.placeBid(auctionId, bid);
+        } else if (max >= budget) {
+            buyer.leave(auctionId);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package ma.fstm.ilisi.tp4;
+
+import jade.core.AID;
+import jade.lang.acl.ACLMessage;
+
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+/**
+ * ReplayEngine feeds a {@link TrafficLog} back through the auction logic, without GUI,
+ * JADE container or network. Each message recorded to an auctioneer is handed, at its recorded
+ * time on a virtual clock, to an {@link AuctioneerCore} rebuilt for that auctioneer, through the
+ * same {@link AuctioneerInbox} as live traffic. Deadlines and broadcast windows follow the virtual
+ * clock, so the outcome of a replay does not depend on its pace: at 1x it takes as long as the
+ * recording, at speed 0 it runs as fast as possible.
+ *
+ * <p>The replay is open loop: bids and requests are replayed as recorded, and the messages the cores
+ * send are only counted. A lot is offered to the buyers its recorded CFP went to.
+ * The {@link Report} gives the throughput, the distribution of the handling time of the messages
+ * and the outcome of every lot, so two builds can be checked to pick the same winners.
+ */
+public class ReplayEngine {
+    private static final String AUCTIONEER = "AuctioneerAgent";
+    /** The longest a lot is followed after the last recorded message. */
+    private static final long DRAIN_MILLIS = 24 * 3600 * 1000L;
+
+    private final TrafficLog.Recording recording;
+    private final AgentArgs args;
+    private final Map<Long, List<AID>> invited = new HashMap<>();
+    private final Map<AID, Shard> shards = new LinkedHashMap<>();
+    private final Histogram latency = new Histogram();
+    private final SortedMap<Long, String> outcomes = new TreeMap<>();
+    private long now;
+    private long sent;
+
+    /**
+     * An auctioneer of the recording, rebuilt on the virtual clock.
+     */
+    private final class Shard {
+        private final TimingWheel deadlines;
+        private final AuctioneerCore core;
+        private final AuctioneerInbox inbox;
+        private final long window;
+        private long nextFlush;
+
+        private Shard() {
+            AuctioneerCore[] self = new AuctioneerCore[1];
+            deadlines = new TimingWheel(args.getInt("timer-tick", 10), () -> now, id -> self[0].deadlineReached(id));
+            core = AuctioneerCore.fromArgs(msg -> sent++, new AuctioneerView() {
+                public void auctionClosed(Auction auction) {
+                    outcomes.put(auction.getId(), outcome(auction, "closed"));
+                }
+            }, deadlines, args, AuctionJournal.NONE);
+            self[0] = core;
+            inbox = new AuctioneerInbox(core, (auctionId, seconds, category) -> core.startAuction(auctionId,
+                    new Topic("replay", invited.getOrDefault(auctionId, List.of())), seconds));
+            window = core.getMaxBids().getWindowMillis();
+            nextFlush = window;
+        }
+
+        /**
+         * Fires the deadlines and broadcast windows passed at the current virtual time.
+         */
+        private void advance() {
+            deadlines.advance(now);
+            core.clearClosing();
+            if (window > 0 && now >= nextFlush) {
+                core.flushBroadcasts();
+                nextFlush = now - now % window + window;
+            }
+        }
+    }
+
+    /**
+     * The result of a replay.
+     */
+    public static final class Report {
+        private final long messages;
+        private final long sent;
+        private final long wallNanos;
+        private final long virtualMillis;
+        private final Histogram latency;
+        private final SortedMap<Long, String> outcomes;
+
+        private Report(long messages, long sent, long wallNanos, long virtualMillis, Histogram latency,
+                       SortedMap<Long, String> outcomes) {
+            this.messages = messages;
+            this.sent = sent;
+            this.wallNanos = wallNanos;
+            this.virtualMillis = virtualMillis;
+            this.latency = latency;
+            this.outcomes = outcomes;
+        }
+
+        /**
+         * @return The number of recorded messages handed to the auctioneers.
+         */
+        public long getMessages() {
+            return messages;
+        }
+
+        /**
+         * @return The number of messages the auctioneers sent in reply.
+         */
+        public long getSent() {
+            return sent;
+        }
+
+        /**
+         * @return The messages handled per second of wall-clock time.
+         */
+        public double getThroughput() {
+            return wallNanos == 0 ? 0 : messages * 1e9 / wallNanos;
+        }
+
+        /**
+         * @return The handling time of each message, in nanoseconds.
+         */
+        public Histogram getLatency() {
+            return latency;
+        }
+
+        /**
+         * @return The outcome of each lot, by auction id, e.g. "lamp closed: buyer2@host at 45.00".
+         */
+        public SortedMap<Long, String> getOutcomes() {
+            return outcomes;
+        }
+
+        /**
+         * @return A checksum of the outcomes, equal for two replays that picked the same winners at the same prices.
+         */
+        public String getDigest() {
+            CRC32 crc = new CRC32();
+            outcomes.forEach((id, outcome) -> crc.update((id + "=" + outcome + "\n").getBytes(StandardCharsets.UTF_8)));
+            return String.format("%08x", crc.getValue());
+        }
+
+        /**
+         * Prints the report.
+         * @param out The stream printed to.
+         */
+        public void print(PrintStream out) {
+            out.printf("Replayed %d messages in %.3f s (%.3f s recorded), %.0f msg/s, %d sent%n",
+                    messages, wallNanos / 1e9, virtualMillis / 1e3, getThroughput(), sent);
+            out.printf("Handling time: mean %.0f ns, p50 %d ns, p99 %d ns, p99.9 %d ns, max %d ns%n",
+                    latency.getMean(), latency.getValueAtPercentile(50), latency.getValueAtPercentile(99),
+                    latency.getValueAtPercentile(99.9), latency.getMax());
+            outcomes.forEach((id, outcome) -> out.println("  " + id + " " + outcome));
+            out.println("Outcome digest: " + getDigest());
+        }
+    }
+
+    /**
+     * @param recording The recorded traffic.
+     * @param args The arguments of the auctioneers, as given to the agents; they may differ
+     *             from those of the recording, to compare settings on the same traffic.
+     */
+    public ReplayEngine(TrafficLog.Recording recording, AgentArgs args) {
+        this.recording = recording;
+        this.args = args;
+    }
+
+    /**
+     * Replays the recording. An engine runs once.
+     * @param speed The pace relative to the recording, e.g. 1 for real time, 0 for as fast as possible.
+     * @return The report.
+     */
+    public Report run(double speed) {
+        List<TrafficLog.Entry> entries = recording.getEntries();
+        for (AID auctioneer : recording.getAgents(AUCTIONEER)) {
+            shards.put(auctioneer, new Shard());
+        }
+        // The buyers of each lot, taken from the first CFP the auctioneer sent for it
+        for (TrafficLog.Entry entry : entries) {
+            ACLMessage msg = entry.getMessage();
+            if (msg.getPerformative() == ACLMessage.CFP && shards.containsKey(msg.getSender())) {
+                List<AID> buyers = new ArrayList<>();
+                for (Iterator<?> it = msg.getAllReceiver(); it.hasNext(); ) {
+                    buyers.add((AID) it.next());
+                }
+                invited.putIfAbsent(AuctionProtocol.auctionId(msg), buyers);
+            }
+        }
+
+        long messages = 0;
+        long start = System.nanoTime();
+        for (TrafficLog.Entry entry : entries) {
+            ACLMessage msg = entry.getMessage();
+            if (shards.containsKey(msg.getSender())) {
+                // Sent by an auctioneer: the replay sends its own
+                continue;
+            }
+            for (Iterator<?> it = msg.getAllReceiver(); it.hasNext(); ) {
+                Shard shard = shards.get(it.next());
+                if (shard == null) {
+                    continue;
+                }
+                now = entry.getTimeMicros() / 1000;
+                if (speed > 0) {
+                    long wait = start + (long) (entry.getTimeMicros() * 1000 / speed) - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                }
+                shards.values().forEach(Shard::advance);
+                long handling = System.nanoTime();
+                shard.inbox.accept(msg);
+                latency.record(System.nanoTime() - handling);
+                messages++;
+            }
+        }
+        long wallNanos = System.nanoTime() - start;
+        long virtualMillis = now;
+
+        // Let the lots still running reach their deadline, every shard on the same virtual clock
+        long end = now + DRAIN_MILLIS;
+        shards.values().forEach(shard -> shard.core.flushBroadcasts());
+        while (hasDeadlines() && now < end) {
+            now += tickMillis();
+            shards.values().forEach(Shard::advance);
+        }
+        for (Shard shard : shards.values()) {
+            for (Auction auction : shard.core.getAuctions()) {
+                outcomes.put(auction.getId(), outcome(auction, auction.isActive() ? "open" : "not started"));
+            }
+        }
+        return new Report(messages, sent, wallNanos, virtualMillis, latency, outcomes);
+    }
+
+    /**
+     * @return true if a shard still has a lot waiting for its deadline.
+     */
+    private boolean hasDeadlines() {
+        for (Shard shard : shards.values()) {
+            if (shard.deadlines.size() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The finest tick of the shards, so the drain does not step over a deadline of any of them.
+     */
+    private long tickMillis() {
+        long tick = Long.MAX_VALUE;
+        for (Shard shard : shards.values()) {
+            tick = Math.min(tick, shard.deadlines.getTickMillis());
+        }
+        return tick;
+    }
+
+    /**
+     * @return The outcome of a lot: its item, state and best bid.
+     */
+    private static String outcome(Auction auction, String state) {
+        BidBook.Bid best = auction.getBids().best();
+        return auction.getItem() + " " + state + ": "
+                + (best == null ? "no bids" : best.getBidder().getName() + " at " + Money.format(best.getAmount()));
+    }
+}
@@ -0,0 +1,44 @@
+package ma.fstm.ilisi.tp4;
+
+import jade.core.AID;
+
+/**
+ * SealedBidAuction takes one hidden bid per buyer, at or above the minimum price; a new bid replaces
+ * the previous one of the same buyer. Nothing is broadcast while the lot runs, and the best bid wins
+ * at the deadline, in one pass over the book. The winner pays its own bid in a first-price auction,
+ * or in a Vickrey auction the second best bid, and at least the minimum price,
+ * which makes bidding one's true value the best a buyer can do.
+ */
+public class SealedBidAuction implements AuctionMechanism {
+    public static final String FIRST_PRICE = "sealed";
+    public static final String VICKREY = "vickrey";
+
+    private final boolean secondPrice;
+
+    /**
+     * @param secondPrice true for a Vickrey auction, false for a first-price one.
+     */
+    public SealedBidAuction(boolean secondPrice) {
+        this.secondPrice = secondPrice;
+    }
+
+    public String getName() {
+        return secondPrice ? VICKREY : FIRST_PRICE;
+    }
+
+    public boolean accept(Auction auction, AID bidder, long amount) {
+        if (amount < auction.getMinPrice()) {
+            return false;
+        }
+        auction.getBids().place(bidder, amount);
+        return true;
+    }
+
+    public long clearingPrice(Auction auction) {
+        if (!secondPrice) {
+            return auction.getBids().bestAmount();
+        }
+        BidBook.Bid runnerUp = auction.getBids().runnerUp();
+        return runnerUp == null ? auction.getMinPrice() : Math.max(runnerUp.getAmount(), auction.getMinPrice());
+    }
+}
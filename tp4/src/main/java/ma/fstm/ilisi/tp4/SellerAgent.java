@@ -1,314 +1,154 @@
-package ma.fstm.ilisi.tp4;
-
-import jade.core.Agent;
-import jade.core.AID;
-import jade.core.behaviours.*;
-import jade.lang.acl.ACLMessage;
-import javax.swing.*;
-import javax.swing.Timer;
-import java.awt.*;
-import java.util.*;
-
-/**
- * SellerAgent is a JADE agent that manages the selling process in an auction.
- * It handles the publication of offers, starts auctions, and processes bids from buyers.
- */
-public class SellerAgent extends Agent {
-    private JFrame frame;
-    private JTextArea logArea;
-    private JButton publishButton;
-    private JButton startButton;
-    private JPanel proposalsPanel;
-    private String item;
-    private double minPrice;
-    private boolean auctionInProgress = false;
-    private Timer auctionTimer;
-    private int timeLeft = 60;
-    private JLabel timerLabel;
-    private JTextField itemField;
-    private JTextField priceField;
-    private JTextField timeField;
-    private final Map<AID, Double> currentProposals = new HashMap<>();
-
-    /**
-     * Setup method is called when the agent is initialized.
-     * It creates the GUI and adds the main behavior for handling messages.
-     */
-    protected void setup() {
-        createGUI();
-
-        addBehaviour(new CyclicBehaviour() {
-            public void action() {
-                ACLMessage msg = receive();
-                if (msg != null) {
-                    switch(msg.getPerformative()) {
-                        case ACLMessage.PROPOSE:
-                            double bid = Double.parseDouble(msg.getContent());
-                            currentProposals.put(msg.getSender(), bid);
-                            updateProposalsPanel();
-                            break;
-
-                        case ACLMessage.REQUEST: // Request for more time
-                            if (auctionInProgress) {
-                                timeLeft += 30;
-                                timerLabel.setText("Time left: " + timeLeft + "s");
-                                ACLMessage timeUpdate = new ACLMessage(ACLMessage.INFORM);
-                                currentProposals.keySet().forEach(timeUpdate::addReceiver);
-                                timeUpdate.setContent("TIME_EXTENDED;" + timeLeft);
-                                send(timeUpdate);
-                                logArea.append("Time extended by 30 seconds. New time: " + timeLeft + "s\n");
-                            }
-                            break;
-                    }
-                }
-                block();
-            }
-        });
-    }
-
-    /**
-     * Creates the GUI for the seller agent.
-     */
-    private void createGUI() {
-        frame = new JFrame("Seller: " + getLocalName());
-        frame.setLayout(new BorderLayout(10, 10));
-        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-
-        // Create panels with borders
-        JPanel inputPanel = new JPanel(new GridBagLayout());
-        inputPanel.setBorder(BorderFactory.createTitledBorder("Auction Configuration"));
-
-        GridBagConstraints gbc = new GridBagConstraints();
-        gbc.gridx = 0;
-        gbc.gridy = 0;
-        gbc.anchor = GridBagConstraints.WEST;
-        gbc.insets = new Insets(5, 5, 5, 5);
-
-        // Input fields
-        inputPanel.add(new JLabel("Item:"), gbc);
-        gbc.gridx = 1;
-        gbc.fill = GridBagConstraints.HORIZONTAL;
-        itemField = new JTextField(15);
-        inputPanel.add(itemField, gbc);
-
-        gbc.gridx = 0;
-        gbc.gridy = 1;
-        inputPanel.add(new JLabel("Minimum Price:"), gbc);
-        gbc.gridx = 1;
-        priceField = new JTextField(15);
-        inputPanel.add(priceField, gbc);
-
-        gbc.gridx = 0;
-        gbc.gridy = 2;
-        inputPanel.add(new JLabel("Time (seconds):"), gbc);
-        gbc.gridx = 1;
-        timeField = new JTextField("60", 15);
-        inputPanel.add(timeField, gbc);
-
-        // Buttons panel
-        gbc.gridx = 0;
-        gbc.gridy = 3;
-        gbc.gridwidth = 2;
-        gbc.fill = GridBagConstraints.NONE;
-        gbc.anchor = GridBagConstraints.CENTER;
-        JPanel buttonPanel = new JPanel();
-        publishButton = new JButton("Publish Offer");
-        startButton = new JButton("Start Auction");
-        startButton.setEnabled(false);
-        buttonPanel.add(publishButton);
-        buttonPanel.add(startButton);
-        inputPanel.add(buttonPanel, gbc);
-
-        // Timer label
-        gbc.gridy = 4;
-        timerLabel = new JLabel("Time left: --");
-        inputPanel.add(timerLabel, gbc);
-
-        // Proposals panel
-        proposalsPanel = new JPanel();
-        proposalsPanel.setLayout(new BoxLayout(proposalsPanel, BoxLayout.Y_AXIS));
-        proposalsPanel.setBorder(BorderFactory.createTitledBorder("Current Proposals"));
-        JScrollPane proposalsScroll = new JScrollPane(proposalsPanel);
-        proposalsScroll.setPreferredSize(new Dimension(300, 200));
-
-        // Log panel
-        logArea = new JTextArea(10, 40);
-        logArea.setEditable(false);
-        JScrollPane logScroll = new JScrollPane(logArea);
-        logScroll.setBorder(BorderFactory.createTitledBorder("Auction Log"));
-
-        // Main content panel
-        JPanel contentPanel = new JPanel(new BorderLayout(10, 10));
-        contentPanel.add(inputPanel, BorderLayout.NORTH);
-        contentPanel.add(proposalsScroll, BorderLayout.CENTER);
-        contentPanel.add(logScroll, BorderLayout.SOUTH);
-
-        // Add padding around the main content
-        frame.add(contentPanel, BorderLayout.CENTER);
-        frame.getRootPane().setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
-
-        // Button actions
-        publishButton.addActionListener(e -> {
-            if (validateInputs()) {
-                publishOffer();
-                publishButton.setEnabled(false);
-                startButton.setEnabled(true);
-                logArea.append("Offer published: " + item + " with minimum price " + minPrice + "\n");
-            }
-        });
-
-        startButton.addActionListener(e -> {
-            if (!auctionInProgress) {
-                startAuction();
-                startButton.setText("Stop Auction");
-                itemField.setEnabled(false);
-                priceField.setEnabled(false);
-                timeField.setEnabled(false);
-            } else {
-                stopAuction();
-                startButton.setText("Start Auction");
-                resetForm();
-            }
-        });
-
-        frame.pack();
-        frame.setLocationRelativeTo(null);
-        frame.setVisible(true);
-    }
-
-    /**
-     * Validates the input fields for item, price, and time.
-     * @return true if inputs are valid, false otherwise.
-     */
-    private boolean validateInputs() {
-        try {
-            item = itemField.getText().trim();
-            if (item.isEmpty()) {
-                throw new IllegalArgumentException("Item name cannot be empty");
-            }
-            minPrice = Double.parseDouble(priceField.getText().trim());
-            timeLeft = Integer.parseInt(timeField.getText().trim());
-            if (minPrice <= 0 || timeLeft <= 0) {
-                throw new IllegalArgumentException("Price and time must be positive");
-            }
-            return true;
-        } catch (NumberFormatException e) {
-            JOptionPane.showMessageDialog(frame, "Please enter valid numbers for price and time");
-            return false;
-        } catch (IllegalArgumentException e) {
-            JOptionPane.showMessageDialog(frame, e.getMessage());
-            return false;
-        }
-    }
-
-    /**
-     * Publishes the offer to the auctioneer agent.
-     */
-    private void publishOffer() {
-        ACLMessage announce = new ACLMessage(ACLMessage.INFORM);
-        announce.addReceiver(new AID("auctioneer", AID.ISLOCALNAME));
-        announce.setContent("PUBLISH;" + item + ";" + minPrice);
-        send(announce);
-    }
-
-    /**
-     * Starts the auction process.
-     */
-    private void startAuction() {
-        auctionInProgress = true;
-        currentProposals.clear();
-        proposalsPanel.removeAll();
-
-        ACLMessage start = new ACLMessage(ACLMessage.INFORM);
-        start.addReceiver(new AID("auctioneer", AID.ISLOCALNAME));
-        start.setContent("START;" + item + ";" + minPrice + ";" + timeLeft);
-        send(start);
-
-        auctionTimer = new Timer(1000, e -> {
-            timeLeft--;
-            timerLabel.setText("Time left: " + timeLeft + "s");
-            if (timeLeft <= 0) {
-                stopAuction();
-                ((Timer)e.getSource()).stop();
-            }
-        });
-        auctionTimer.start();
-
-        logArea.append("Started auction for " + item + "\n");
-    }
-
-    /**
-     * Stops the auction process and determines the winner.
-     */
-    private void stopAuction() {
-        auctionInProgress = false;
-        if (auctionTimer != null) {
-            auctionTimer.stop();
-        }
-
-        Optional<Map.Entry<AID, Double>> winner = currentProposals.entrySet()
-                .stream()
-                .max(Map.Entry.comparingByValue());
-
-        if (winner.isPresent() && winner.get().getValue() >= minPrice) {
-            ACLMessage accept = new ACLMessage(ACLMessage.ACCEPT_PROPOSAL);
-            accept.addReceiver(winner.get().getKey());
-            accept.setContent(item + ";" + winner.get().getValue());
-            send(accept);
-
-            ACLMessage reject = new ACLMessage(ACLMessage.REJECT_PROPOSAL);
-            currentProposals.keySet().stream()
-                    .filter(aid -> !aid.equals(winner.get().getKey()))
-                    .forEach(reject::addReceiver);
-            reject.setContent(item);
-            send(reject);
-
-            logArea.append("Auction ended. Winner: " + winner.get().getKey().getLocalName() +
-                    " with bid: " + winner.get().getValue() + "\n");
-        } else {
-            logArea.append("Auction ended with no valid bids\n");
-        }
-
-        resetForm();
-    }
-
-    /**
-     * Resets the form to its initial state.
-     */
-    private void resetForm() {
-        itemField.setEnabled(true);
-        priceField.setEnabled(true);
-        timeField.setEnabled(true);
-        publishButton.setEnabled(true);
-        startButton.setEnabled(false);
-        currentProposals.clear();
-        updateProposalsPanel();
-        timerLabel.setText("Time left: --");
-    }
-
-    /**
-     * Updates the proposals panel with the current bids.
-     */
-    private void updateProposalsPanel() {
-        proposalsPanel.removeAll();
-        for (Map.Entry<AID, Double> proposal : currentProposals.entrySet()) {
-            JPanel panel = new JPanel(new FlowLayout(FlowLayout.LEFT));
-            panel.add(new JLabel(proposal.getKey().getLocalName() + ": " + proposal.getValue() + " MAD"));
-
-            if (auctionInProgress) {
-                JButton acceptButton = new JButton("Accept");
-                acceptButton.addActionListener(e -> {
-                    ACLMessage accept = new ACLMessage(ACLMessage.ACCEPT_PROPOSAL);
-                    accept.addReceiver(proposal.getKey());
-                    accept.setContent(item + ";" + proposal.getValue());
-                    send(accept);
-                    stopAuction();
-                });
-                panel.add(acceptButton);
-            }
-            proposalsPanel.add(panel);
-        }
-        proposalsPanel.revalidate();
-        proposalsPanel.repaint();
-    }
-}
\ No newline at end of file
+package ma.fstm.ilisi.tp4;
+
+import jade.core.AID;
+import jade.core.Agent;
+import jade.core.behaviours.*;
+import jade.lang.acl.ACLMessage;
+
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+/**
+ * SellerAgent is a JADE agent that manages the selling process in an auction.
+ * It handles the publication of offers, starts auctions, and processes bids from buyers.
+ * The selling logic lives in {@link SellerCore}; the Swing frame is only created
+ * when the agent is not started with the "headless" argument. A headless seller
+ * publishes and starts the auction given by its "item", "category", "format", "price" and "time" arguments.
+ * The agent thread is the only one changing the core: the actions of the GUI reach it as commands
+ * run by the {@link Offloader}.
+ */
+public class SellerAgent extends Agent {
+    private static final long serialVersionUID = 1L;
+
+    private transient SellerGui gui;
+    private transient SellerCore core;
+    private transient AgentMetrics metrics;
+    private transient Offloader offloader;
+    /** Sends the messages of the agent through its metrics and the traffic log. */
+    private transient Consumer<ACLMessage> sender;
+    private final transient AuctionCodec.Frame frame = new AuctionCodec.Frame();
+
+    /**
+     * Setup method is called when the agent is initialized.
+     * It creates the GUI unless headless and adds the behaviors for the auction clock and messages.
+     */
+    protected void setup() {
+        AgentArgs args = AgentArgs.of(getArguments());
+        if (!args.isHeadless()) {
+            gui = new SellerGui(getLocalName());
+        }
+        metrics = new AgentMetrics(this);
+        offloader = new Offloader(this);
+        sender = metrics.sender(TrafficLog.tap(this, this::send));
+        core = new SellerCore(sender, gui != null ? gui : SellerView.NONE, getLocalName(),
+                new ShardDirectory(this, offloader)::owner, AuctionCodec.fromArgs(args));
+        if (gui != null) {
+            gui.bind(core, offloader);
+        }
+
+        // Displayed auction clock, the auctioneer closes the lot at its deadline
+        addBehaviour(new TickerBehaviour(this, 1000) {
+            protected void onTick() {
+                core.tick();
+            }
+        });
+
+        // Forwarded bids first, so the bids of a lot are counted before its close
+        addBehaviour(new MailboxBehaviour(this, metrics, args.getInt("mailbox-batch", 64))
+                .priority(AuctionProtocol.match(ACLMessage.PROPOSE), this::onBid)
+                .on(AuctionProtocol.match(ACLMessage.INFORM), this::onUpdate)
+                .on(AuctionProtocol.match(ACLMessage.CFP), this::onResumed)
+                .on(offloader.template(), offloader::complete));
+
+        if (args.has("item")) {
+            // Give the auctioneers and buyers time to register with the DF before starting
+            addBehaviour(new WakerBehaviour(this, args.getInt("delay", 2000)) {
+                protected void onWake() {
+                    if (core.isAuctionInProgress()) {
+                        return; // A lot of this seller resumed by a restarted auctioneer
+                    }
+                    if (core.publishOffer(args.get("item", null), args.get("category", null), args.get("format", null),
+                            Money.toMinor(args.getDouble("price", 1)), args.getInt("time", 60))) {
+                        core.startAuction();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Handles a bid, or a batch of bids, forwarded by the auctioneer.
+     * @param msg The PROPOSE message.
+     */
+    private void onBid(ACLMessage msg) {
+        if (!frame.wrap(msg)) {
+            if (frame.isMalformed()) {
+                sender.accept(AuctionCodec.notUnderstood(msg));
+            }
+            return;
+        }
+        switch (frame.getType()) {
+            case AuctionCodec.BID: // Bid forwarded by the auctioneer
+                core.onProposal(frame.getAuctionId(), AuctionProtocol.bidder(msg), frame.getAmount());
+                break;
+
+            case AuctionCodec.BID_BATCH: // Bids of one buyer on many lots
+                for (int i = 0; i < frame.getCount(); i++) {
+                    core.onProposal(frame.getAuctionId(i), AuctionProtocol.bidder(msg), frame.getAmount(i));
+                }
+                break;
+        }
+    }
+
+    /**
+     * Handles a lot of this seller resumed by an auctioneer after a warm restart.
+     * @param msg The CFP message.
+     */
+    private void onResumed(ACLMessage msg) {
+        if (frame.wrap(msg) && frame.getType() == AuctionCodec.CFP) {
+            core.adopt(frame.getAuctionId(), msg.getSender(), frame.getItem(), frame.getAmount(),
+                    frame.getSeconds(), msg.getUserDefinedParameter(AuctionProtocol.FORMAT));
+        } else if (frame.isMalformed()) {
+            sender.accept(AuctionCodec.notUnderstood(msg));
+        }
+    }
+
+    /**
+     * Handles the deadline updates, the close and the award of a lot by the auctioneer.
+     * @param msg The INFORM message.
+     */
+    private void onUpdate(ACLMessage msg) {
+        if (!frame.wrap(msg)) {
+            if (frame.isMalformed()) {
+                sender.accept(AuctionCodec.notUnderstood(msg));
+            }
+            return;
+        }
+        switch (frame.getType()) {
+            case AuctionCodec.TIME_EXTENDED: // Deadline moved by the auctioneer
+                core.onTimeExtended(frame.getAuctionId(), frame.getSeconds());
+                break;
+
+            case AuctionCodec.CLOSE: // Deadline reached at the auctioneer
+                core.onClosed(frame.getAuctionId());
+                break;
+
+            case AuctionCodec.AWARD: // Lot cleared in a batch, the winner in reply-to
+                Iterator<?> replyTo = msg.getAllReplyTo();
+                core.onAwarded(frame.getAuctionId(), replyTo.hasNext() ? (AID) replyTo.next() : null, frame.getAmount());
+                break;
+        }
+    }
+
+    /**
+     * Called when the agent is taken down.
+     * Unregisters the metrics and disposes of the GUI if there is one.
+     */
+    protected void takeDown() {
+        offloader.shutdown();
+        metrics.unregister();
+        if (gui != null) {
+            gui.dispose();
+        }
+    }
+}
@@ -0,0 +1,402 @@
+package ma.fstm.ilisi.tp4;
+
+import jade.core.AID;
+import jade.lang.acl.ACLMessage;
+
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+/**
+ * SellerCore holds the selling logic of a seller, independently of any GUI.
+ * It publishes offers and determines the winner once the auctioneer closes the lot at its deadline;
+ * the countdown it keeps is only displayed, the auctioneer owns the deadline.
+ * Each published offer gets a new auction id, carried in the conversation-id of its messages.
+ * The auctioneer shard owning the id is resolved once, when the offer is published.
+ * In the sealed and Dutch formats the seller sees no bid before the close: the auctioneer then
+ * forwards them all, the best one at the price it pays, so the winner is determined the same way.
+ *
+ * <p>The core is not thread-safe: only the agent thread calls it, and a GUI submits its actions to the agent
+ * as commands. Other threads read the state of the lot from the {@link Snapshot} published after each change.
+ */
+public class SellerCore {
+    private final Consumer<ACLMessage> sender;
+    private final SellerView view;
+    private final AuctionCodec codec;
+    private final LongFunction<AID> shards;
+    private final String name;
+    /** The most lots published in one second, the low bits of the sequence of an auction id. */
+    public static final int LOTS_PER_SECOND = 256;
+
+    private AID auctioneer;
+    /**
+     * The second of the clock the last ids were taken in, the high bits of their sequence. The second the core
+     * is created in counts as used up, so a restarted seller never reuses the id of a lot of its last run.
+     */
+    private long second = System.currentTimeMillis() / 1000;
+    private int published = LOTS_PER_SECOND;
+    private long auctionId = AuctionProtocol.NO_AUCTION;
+    private String item;
+    private String category;
+    private String format;
+    private long minPrice;
+    private boolean auctionInProgress = false;
+    private int timeLeft = 60;
+    private final BidBook currentProposals = new BidBook();
+    private volatile Snapshot snapshot = new Snapshot(AuctionProtocol.NO_AUCTION, null, false, 0, 0, BidBook.NO_BID);
+
+    /**
+     * A read-only copy of the state of the current lot, safe to read from any thread.
+     */
+    public static final class Snapshot {
+        private final long auctionId;
+        private final String item;
+        private final boolean auctionInProgress;
+        private final int timeLeft;
+        private final int proposals;
+        private final long bestAmount;
+
+        private Snapshot(long auctionId, String item, boolean auctionInProgress, int timeLeft, int proposals,
+                         long bestAmount) {
+            this.auctionId = auctionId;
+            this.item = item;
+            this.auctionInProgress = auctionInProgress;
+            this.timeLeft = timeLeft;
+            this.proposals = proposals;
+            this.bestAmount = bestAmount;
+        }
+
+        public long getAuctionId() {
+            return auctionId;
+        }
+
+        public String getItem() {
+            return item;
+        }
+
+        public boolean isAuctionInProgress() {
+            return auctionInProgress;
+        }
+
+        public int getTimeLeft() {
+            return timeLeft;
+        }
+
+        /**
+         * @return The number of bidders with a standing proposal.
+         */
+        public int getProposals() {
+            return proposals;
+        }
+
+        /**
+         * @return The best proposal in minor units, or {@link BidBook#NO_BID}.
+         */
+        public long getBestAmount() {
+            return bestAmount;
+        }
+    }
+
+    /**
+     * @param sender Sends messages on behalf of the agent.
+     * @param view The view notified of auction events, {@link SellerView#NONE} when headless.
+     * @param name The name of the seller agent, used to build auction ids.
+     * @param shards Resolves the auctioneer shard owning an auction id.
+     * @param codec Writes the content of the messages sent.
+     */
+    public SellerCore(Consumer<ACLMessage> sender, SellerView view, String name, LongFunction<AID> shards,
+                      AuctionCodec codec) {
+        this.sender = sender;
+        this.view = view;
+        this.codec = codec;
+        this.name = name;
+        this.shards = shards;
+    }
+
+    /**
+     * Publishes the offer to the auctioneer shard owning its new auction id, without category.
+     * @param item The item offered.
+     * @param minPrice The minimum price of the item, in minor units.
+     * @param time The duration of the auction in seconds.
+     * @return false if nothing was published, see {@link #publishOffer(String, String, String, long, int)}.
+     */
+    public boolean publishOffer(String item, long minPrice, int time) {
+        return publishOffer(item, null, minPrice, time);
+    }
+
+    /**
+     * Publishes the offer to the auctioneer shard owning its new auction id.
+     * @param item The item offered.
+     * @param category The category of the item, only buyers interested in it are called; null for all buyers.
+     * @param minPrice The minimum price of the item, in minor units.
+     * @param time The duration of the auction in seconds.
+     * @return false if nothing was published, see {@link #publishOffer(String, String, String, long, int)}.
+     */
+    public boolean publishOffer(String item, String category, long minPrice, int time) {
+        return publishOffer(item, category, null, minPrice, time);
+    }
+
+    /**
+     * Publishes the offer to the auctioneer shard owning its new auction id, auctioned in the given format.
+     * @param item The item offered.
+     * @param category The category of the item, only buyers interested in it are called; null for all buyers.
+     * @param format The name of an {@link AuctionMechanism}, e.g. "vickrey"; null for English.
+     * @param minPrice The minimum price of the item, in minor units.
+     * @param time The duration of the auction in seconds.
+     * @return false if nothing was published: {@link #LOTS_PER_SECOND} lots were already published this second,
+     * or the core was created in it.
+     */
+    public boolean publishOffer(String item, String category, String format, long minPrice, int time) {
+        long now = System.currentTimeMillis() / 1000;
+        if (now > second) {
+            second = now;
+            published = 0;
+        }
+        if (published == LOTS_PER_SECOND) {
+            return false;
+        }
+        this.item = item;
+        this.category = category;
+        this.format = format;
+        this.minPrice = minPrice;
+        this.timeLeft = time;
+        this.auctionId = AuctionProtocol.newAuctionId(name, (int) (second * LOTS_PER_SECOND + published++));
+        this.auctioneer = shards.apply(auctionId);
+
+        ACLMessage announce = new ACLMessage(ACLMessage.INFORM);
+        announce.addReceiver(auctioneer);
+        codec.writePublish(announce, auctionId, item, minPrice);
+        if (category != null) {
+            announce.addUserDefinedParameter(AuctionProtocol.CATEGORY, category);
+        }
+        if (format != null) {
+            announce.addUserDefinedParameter(AuctionProtocol.FORMAT, format);
+        }
+        sender.accept(announce);
+        publish();
+        view.offerPublished(item, minPrice);
+        return true;
+    }
+
+    /**
+     * Starts the auction process.
+     */
+    public void startAuction() {
+        auctionInProgress = true;
+        currentProposals.clear();
+        view.proposalsChanged(currentProposals, true);
+
+        ACLMessage start = new ACLMessage(ACLMessage.INFORM);
+        start.addReceiver(auctioneer);
+        codec.writeStart(start, auctionId, item, minPrice, timeLeft);
+        if (category != null) {
+            start.addUserDefinedParameter(AuctionProtocol.CATEGORY, category);
+        }
+        sender.accept(start);
+        publish();
+
+        view.auctionStarted(item);
+    }
+
+    /**
+     * Takes back a lot of this seller resumed by the auctioneer after a warm restart: the auctioneer
+     * then forwards its standing bids again, and closes it at its deadline as any other lot.
+     * A lot restored while another one is in progress is closed at once at the auctioneer.
+     * @param auctionId The auction id, lots of other sellers are ignored.
+     * @param auctioneer The auctioneer shard resuming the lot.
+     * @param item The item offered.
+     * @param minPrice The minimum price of the item, in minor units.
+     * @param seconds The time left before the deadline.
+     * @param format The name of the {@link AuctionMechanism} of the lot, null for English.
+     */
+    public void adopt(long auctionId, AID auctioneer, String item, long minPrice, int seconds, String format) {
+        if (!AuctionProtocol.isSellerOf(name, auctionId)) {
+            return;
+        }
+        if (auctionInProgress && auctionId == this.auctionId) {
+            onTimeExtended(auctionId, seconds);
+            return;
+        }
+        if (auctionInProgress) {
+            ACLMessage close = new ACLMessage(ACLMessage.INFORM);
+            close.addReceiver(auctioneer);
+            codec.writeClose(close, auctionId);
+            sender.accept(close);
+            return;
+        }
+        this.auctionId = auctionId;
+        this.auctioneer = auctioneer;
+        this.item = item;
+        this.category = null;
+        this.format = format;
+        this.minPrice = minPrice;
+        this.timeLeft = seconds;
+        auctionInProgress = true;
+        currentProposals.clear();
+        view.proposalsChanged(currentProposals, true);
+        publish();
+        view.auctionStarted(item);
+    }
+
+    /**
+     * Counts down one second of the displayed auction time.
+     */
+    public void tick() {
+        if (auctionInProgress && timeLeft > 0) {
+            timeLeft--;
+            publish();
+            view.timeLeftChanged(timeLeft);
+        }
+    }
+
+    /**
+     * @return true if an auction is running.
+     */
+    public boolean isAuctionInProgress() {
+        return auctionInProgress;
+    }
+
+    /**
+     * @return The state of the current lot as of its last change; any thread may call this.
+     */
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    private void publish() {
+        snapshot = new Snapshot(auctionId, item, auctionInProgress, timeLeft, currentProposals.size(),
+                currentProposals.bestAmount());
+    }
+
+    /**
+     * @return The id of the current auction.
+     */
+    public long getAuctionId() {
+        return auctionId;
+    }
+
+    /**
+     * Records a proposal forwarded by the auctioneer.
+     * @param auctionId The auction id, proposals for other lots are ignored.
+     * @param bidder The AID of the bidder.
+     * @param bid The amount of the bid, in minor units.
+     */
+    public void onProposal(long auctionId, AID bidder, long bid) {
+        if (auctionId != this.auctionId) {
+            return;
+        }
+        currentProposals.place(bidder, bid);
+        publish();
+        view.proposalPlaced(bidder, bid);
+    }
+
+    /**
+     * Handles the extension of the deadline by the auctioneer.
+     * @param auctionId The auction id, extensions of other lots are ignored.
+     * @param seconds The new remaining time.
+     */
+    public void onTimeExtended(long auctionId, int seconds) {
+        if (auctionInProgress && auctionId == this.auctionId) {
+            timeLeft = seconds;
+            publish();
+            view.timeExtended(timeLeft);
+        }
+    }
+
+    /**
+     * Handles the close of the lot by the auctioneer at its deadline and determines the winner.
+     * @param auctionId The auction id, other lots are ignored.
+     */
+    public void onClosed(long auctionId) {
+        if (auctionInProgress && auctionId == this.auctionId) {
+            finishAuction();
+        }
+    }
+
+    /**
+     * Handles the outcome of the lot when the auctioneer clears it in a batch with other lots.
+     * The auctioneer already told the bidders, so this only records the sale.
+     * @param auctionId The auction id, other lots are ignored.
+     * @param winner The AID of the winner, or null if the lot is unsold.
+     * @param price The price the winner pays, in minor units.
+     */
+    public void onAwarded(long auctionId, AID winner, long price) {
+        if (!auctionInProgress || auctionId != this.auctionId) {
+            return;
+        }
+        auctionInProgress = false;
+        if (winner != null) {
+            view.auctionWon(winner, price);
+        } else {
+            view.auctionEndedWithoutBids();
+        }
+        reset();
+    }
+
+    /**
+     * Accepts a proposal before the end of the auction and stops it.
+     * @param bidder The AID of the bidder.
+     * @param bid The amount of the accepted bid, in minor units.
+     */
+    public void acceptProposal(AID bidder, long bid) {
+        ACLMessage accept = new ACLMessage(ACLMessage.ACCEPT_PROPOSAL);
+        accept.addReceiver(bidder);
+        AuctionProtocol.setAuctionId(accept, auctionId);
+        accept.setContent(item + ";" + Money.format(bid));
+        sender.accept(accept);
+        stopAuction();
+    }
+
+    /**
+     * Stops the auction process before its deadline, closes the lot at the auctioneer and determines the winner.
+     * A sealed or Dutch lot is only determined once the auctioneer sent its bids back and closed it.
+     */
+    public void stopAuction() {
+        ACLMessage close = new ACLMessage(ACLMessage.INFORM);
+        close.addReceiver(auctioneer);
+        codec.writeClose(close, auctionId);
+        sender.accept(close);
+
+        if (format == null || EnglishAuction.NAME.equals(format)) {
+            finishAuction();
+        }
+    }
+
+    /**
+     * Ends the auction and informs the winner and the other bidders.
+     */
+    private void finishAuction() {
+        auctionInProgress = false;
+
+        BidBook.Bid winner = currentProposals.best();
+
+        if (winner != null && winner.getAmount() >= minPrice) {
+            ACLMessage accept = new ACLMessage(ACLMessage.ACCEPT_PROPOSAL);
+            accept.addReceiver(winner.getBidder());
+            AuctionProtocol.setAuctionId(accept, auctionId);
+            accept.setContent(item + ";" + Money.format(winner.getAmount()));
+            sender.accept(accept);
+
+            ACLMessage reject = new ACLMessage(ACLMessage.REJECT_PROPOSAL);
+            for (AID bidder : currentProposals.bidders()) {
+                if (!bidder.equals(winner.getBidder())) {
+                    reject.addReceiver(bidder);
+                }
+            }
+            AuctionProtocol.setAuctionId(reject, auctionId);
+            reject.setContent(item);
+            sender.accept(reject);
+
+            view.auctionWon(winner.getBidder(), winner.getAmount());
+        } else {
+            view.auctionEndedWithoutBids();
+        }
+        reset();
+    }
+
+    private void reset() {
+        currentProposals.clear();
+        publish();
+        view.proposalsChanged(currentProposals, false);
+        view.auctionReset();
+    }
+}
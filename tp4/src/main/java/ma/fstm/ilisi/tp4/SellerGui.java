@@ -0,0 +1,300 @@
+package ma.fstm.ilisi.tp4;
+
+import jade.core.AID;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * SellerGui is the optional Swing view of a seller agent.
+ * It lets a person configure, publish, start and stop auctions through a {@link SellerCore}.
+ * The events of the core are applied on the event dispatch thread, once per frame, through {@link GuiUpdates};
+ * the proposals are shown in a table sorted by amount, which only renders its visible rows.
+ * The actions of the buttons run in the agent thread, submitted as commands; the state of the lot
+ * is read from the {@link SellerCore.Snapshot} of the core.
+ */
+public class SellerGui implements SellerView {
+    private final JFrame frame;
+    private final GuiUpdates updates = new GuiUpdates();
+    private final LogModel log = new LogModel(LogModel.DEFAULT_CAPACITY);
+    private final ProposalTableModel proposals = new ProposalTableModel();
+    private JButton publishButton;
+    private JButton startButton;
+    private JButton acceptButton;
+    private JTable proposalsTable;
+    private JLabel timerLabel;
+    private JTextField itemField;
+    private JTextField categoryField;
+    private JComboBox<String> formatBox;
+    private JTextField priceField;
+    private JTextField timeField;
+    private SellerCore core;
+    private Executor commands;
+
+    /**
+     * Creates and shows the GUI for the seller agent.
+     * @param agentName The local name of the agent.
+     */
+    public SellerGui(String agentName) {
+        frame = new JFrame("Seller: " + agentName);
+        frame.setLayout(new BorderLayout(10, 10));
+        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+
+        // Create panels with borders
+        JPanel inputPanel = new JPanel(new GridBagLayout());
+        inputPanel.setBorder(BorderFactory.createTitledBorder("Auction Configuration"));
+
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.gridx = 0;
+        gbc.gridy = 0;
+        gbc.anchor = GridBagConstraints.WEST;
+        gbc.insets = new Insets(5, 5, 5, 5);
+
+        // Input fields
+        inputPanel.add(new JLabel("Item:"), gbc);
+        gbc.gridx = 1;
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        itemField = new JTextField(15);
+        inputPanel.add(itemField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 1;
+        inputPanel.add(new JLabel("Category:"), gbc);
+        gbc.gridx = 1;
+        categoryField = new JTextField(15);
+        inputPanel.add(categoryField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 2;
+        inputPanel.add(new JLabel("Format:"), gbc);
+        gbc.gridx = 1;
+        formatBox = new JComboBox<>(new String[] {EnglishAuction.NAME, SealedBidAuction.FIRST_PRICE,
+                SealedBidAuction.VICKREY, DutchAuction.NAME});
+        inputPanel.add(formatBox, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 3;
+        inputPanel.add(new JLabel("Minimum Price:"), gbc);
+        gbc.gridx = 1;
+        priceField = new JTextField(15);
+        inputPanel.add(priceField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 4;
+        inputPanel.add(new JLabel("Time (seconds):"), gbc);
+        gbc.gridx = 1;
+        timeField = new JTextField("60", 15);
+        inputPanel.add(timeField, gbc);
+
+        // Buttons panel
+        gbc.gridx = 0;
+        gbc.gridy = 5;
+        gbc.gridwidth = 2;
+        gbc.fill = GridBagConstraints.NONE;
+        gbc.anchor = GridBagConstraints.CENTER;
+        JPanel buttonPanel = new JPanel();
+        publishButton = new JButton("Publish Offer");
+        startButton = new JButton("Start Auction");
+        startButton.setEnabled(false);
+        buttonPanel.add(publishButton);
+        buttonPanel.add(startButton);
+        inputPanel.add(buttonPanel, gbc);
+
+        // Timer label
+        gbc.gridy = 6;
+        timerLabel = new JLabel("Time left: --");
+        inputPanel.add(timerLabel, gbc);
+
+        // Proposals panel
+        proposalsTable = new JTable(proposals);
+        proposalsTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        JScrollPane proposalsScroll = new JScrollPane(proposalsTable);
+        proposalsScroll.setPreferredSize(new Dimension(300, 200));
+        acceptButton = new JButton("Accept Selected");
+        acceptButton.setEnabled(false);
+        JPanel proposalsPanel = new JPanel(new BorderLayout(5, 5));
+        proposalsPanel.setBorder(BorderFactory.createTitledBorder("Current Proposals"));
+        proposalsPanel.add(proposalsScroll, BorderLayout.CENTER);
+        proposalsPanel.add(acceptButton, BorderLayout.SOUTH);
+        updates.onFrame(this::flushProposals);
+
+        // Log panel
+        JScrollPane logScroll = new JScrollPane(log.createList(updates, 10));
+        logScroll.setBorder(BorderFactory.createTitledBorder("Auction Log"));
+
+        // Main content panel
+        JPanel contentPanel = new JPanel(new BorderLayout(10, 10));
+        contentPanel.add(inputPanel, BorderLayout.NORTH);
+        contentPanel.add(proposalsPanel, BorderLayout.CENTER);
+        contentPanel.add(logScroll, BorderLayout.SOUTH);
+
+        // Add padding around the main content
+        frame.add(contentPanel, BorderLayout.CENTER);
+        frame.getRootPane().setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+
+        // Button actions
+        publishButton.addActionListener(e -> publish());
+
+        startButton.addActionListener(e -> {
+            if (!core.getSnapshot().isAuctionInProgress()) {
+                commands.execute(core::startAuction);
+                startButton.setText("Stop Auction");
+                itemField.setEnabled(false);
+                categoryField.setEnabled(false);
+                formatBox.setEnabled(false);
+                priceField.setEnabled(false);
+                timeField.setEnabled(false);
+            } else {
+                commands.execute(core::stopAuction);
+            }
+        });
+
+        acceptButton.addActionListener(e -> {
+            int row = proposalsTable.getSelectedRow();
+            if (row >= 0) {
+                AID bidder = proposals.getBidder(row);
+                long amount = proposals.getAmount(row);
+                commands.execute(() -> core.acceptProposal(bidder, amount));
+            }
+        });
+
+        frame.pack();
+        frame.setLocationRelativeTo(null);
+        frame.setVisible(true);
+    }
+
+    /**
+     * Binds the buttons of this view to the given core.
+     * @param core The core that runs the auctions.
+     * @param commands Runs the actions on the core in the agent thread.
+     */
+    public void bind(SellerCore core, Executor commands) {
+        this.core = core;
+        this.commands = commands;
+    }
+
+    /**
+     * Validates the input fields for item, price, and time, then publishes the offer.
+     * An empty category calls every buyer.
+     */
+    private void publish() {
+        try {
+            String item = itemField.getText().trim();
+            if (item.isEmpty()) {
+                throw new IllegalArgumentException("Item name cannot be empty");
+            }
+            double minPrice = Double.parseDouble(priceField.getText().trim());
+            int time = Integer.parseInt(timeField.getText().trim());
+            if (minPrice <= 0 || time <= 0) {
+                throw new IllegalArgumentException("Price and time must be positive");
+            }
+            String category = categoryField.getText().trim().isEmpty() ? null : categoryField.getText().trim();
+            String format = (String) formatBox.getSelectedItem();
+            commands.execute(() -> {
+                if (!core.publishOffer(item, category, format, Money.toMinor(minPrice), time)) {
+                    SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(frame,
+                            "Too many offers published this second, please try again"));
+                }
+            });
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(frame, "Please enter valid numbers for price and time");
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(frame, e.getMessage());
+        }
+    }
+
+    /**
+     * Applies the proposals of the frame, keeping the selected bidder selected.
+     */
+    private void flushProposals() {
+        int selected = proposalsTable.getSelectedRow();
+        AID bidder = selected >= 0 ? proposals.getBidder(selected) : null;
+        if (proposals.flush() && bidder != null) {
+            int row = proposals.indexOf(bidder);
+            if (row >= 0) {
+                proposalsTable.setRowSelectionInterval(row, row);
+            }
+        }
+    }
+
+    public void offerPublished(String item, long minPrice) {
+        updates.post(() -> {
+            publishButton.setEnabled(false);
+            startButton.setEnabled(true);
+            log.append("Offer published: " + item + " with minimum price " + Money.format(minPrice));
+        });
+    }
+
+    public void auctionStarted(String item) {
+        log("Started auction for " + item);
+    }
+
+    public void timeLeftChanged(int timeLeft) {
+        updates.post(() -> timerLabel.setText("Time left: " + timeLeft + "s"));
+    }
+
+    public void timeExtended(int timeLeft) {
+        updates.post(() -> {
+            timerLabel.setText("Time left: " + timeLeft + "s");
+            log.append("Time extended by 30 seconds. New time: " + timeLeft + "s");
+        });
+    }
+
+    /**
+     * Replaces the table with a copy of the book, taken on the calling thread.
+     */
+    public void proposalsChanged(BidBook book, boolean auctionInProgress) {
+        List<BidBook.Bid> copy = book.top(book.size());
+        updates.post(() -> {
+            proposals.clear();
+            for (BidBook.Bid proposal : copy) {
+                proposals.place(proposal.getBidder(), proposal.getAmount());
+            }
+            acceptButton.setEnabled(auctionInProgress);
+        });
+    }
+
+    public void proposalPlaced(AID bidder, long amount) {
+        updates.post(() -> proposals.place(bidder, amount));
+    }
+
+    public void auctionWon(AID winner, long amount) {
+        log("Auction ended. Winner: " + winner.getLocalName() +
+                " with bid: " + Money.format(amount));
+    }
+
+    public void auctionEndedWithoutBids() {
+        log("Auction ended with no valid bids");
+    }
+
+    public void auctionReset() {
+        updates.post(() -> {
+            itemField.setEnabled(true);
+            categoryField.setEnabled(true);
+            formatBox.setEnabled(true);
+            priceField.setEnabled(true);
+            timeField.setEnabled(true);
+            publishButton.setEnabled(true);
+            startButton.setEnabled(false);
+            startButton.setText("Start Auction");
+            timerLabel.setText("Time left: --");
+        });
+    }
+
+    /**
+     * Queues a line of the log; the text is built on the calling thread.
+     */
+    private void log(String line) {
+        updates.post(() -> log.append(line));
+    }
+
+    /**
+     * Disposes of the frame.
+     */
+    public void dispose() {
+        updates.stop();
+        frame.dispose();
+    }
+}
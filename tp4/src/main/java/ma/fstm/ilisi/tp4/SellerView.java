@@ -0,0 +1,36 @@
+package ma.fstm.ilisi.tp4;
+
+import jade.core.AID;
+
+/**
+ * SellerView receives the events of a SellerCore.
+ * All methods default to no-ops so headless agents can use {@link #NONE}.
+ * Amounts are in minor units, see {@link Money}.
+ */
+public interface SellerView {
+    SellerView NONE = new SellerView() { };
+
+    default void offerPublished(String item, long minPrice) { }
+
+    default void auctionStarted(String item) { }
+
+    default void timeLeftChanged(int timeLeft) { }
+
+    default void timeExtended(int timeLeft) { }
+
+    /**
+     * Called when the proposals are cleared or the lot starts or ends; each new proposal goes to {@link #proposalPlaced}.
+     */
+    default void proposalsChanged(BidBook proposals, boolean auctionInProgress) { }
+
+    /**
+     * Called for each proposal forwarded by the auctioneer, which replaces the previous one of the bidder.
+     */
+    default void proposalPlaced(AID bidder, long amount) { }
+
+    default void auctionWon(AID winner, long amount) { }
+
+    default void auctionEndedWithoutBids() { }
+
+    default void auctionReset() { }
+}
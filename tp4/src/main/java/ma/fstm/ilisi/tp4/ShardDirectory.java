@@ -0,0 +1,105 @@
+package ma.fstm.ilisi.tp4;
+
+import jade.core.AID;
+import jade.core.Agent;
+import jade.domain.DFService;
+import jade.domain.FIPAAgentManagement.DFAgentDescription;
+import jade.domain.FIPAAgentManagement.SearchConstraints;
+import jade.domain.FIPAAgentManagement.ServiceDescription;
+import jade.domain.FIPAException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ShardDirectory finds the auctioneer shards registered in the DF and keeps a {@link ShardRing}
+ * of them. The DF is searched again only when the ring is older than the refresh period;
+ * that search runs on an {@link Offloader} thread while the lots keep going to the last known shards.
+ * When no shard is registered, every auction goes to the local agent named "auctioneer".
+ */
+public class ShardDirectory {
+    public static final String SERVICE_TYPE = "auctioneer";
+    private static final long REFRESH_MILLIS = 10_000;
+
+    private final Agent agent;
+    private final Offloader offloader;
+    private volatile ShardRing ring;
+    private volatile long refreshedAt;
+
+    /**
+     * @param agent The agent searching the DF.
+     * @param offloader Runs the searches of the DF once a first ring is known.
+     */
+    public ShardDirectory(Agent agent, Offloader offloader) {
+        this.agent = agent;
+        this.offloader = offloader;
+    }
+
+    /**
+     * Registers an auctioneer shard with the DF.
+     * @param shard The auctioneer agent.
+     */
+    public static void register(Agent shard) throws FIPAException {
+        DFAgentDescription dfd = new DFAgentDescription();
+        dfd.setName(shard.getAID());
+        ServiceDescription sd = new ServiceDescription();
+        sd.setType(SERVICE_TYPE);
+        sd.setName("auction-shard");
+        dfd.addServices(sd);
+        DFService.register(shard, dfd);
+    }
+
+    /**
+     * @param auctionId The auction id.
+     * @return The shard owning the auction.
+     */
+    public AID owner(long auctionId) {
+        long now = System.currentTimeMillis();
+        if (ring == null) {
+            // Nothing to route with yet, wait for the first search
+            refreshedAt = now;
+            try {
+                update(search());
+            } catch (FIPAException fe) {
+                fe.printStackTrace();
+                update(new ArrayList<>());
+            }
+        } else if (now - refreshedAt > REFRESH_MILLIS) {
+            refreshedAt = now;
+            offloader.submit(this::search, this::update);
+        }
+        return ring.owner(auctionId);
+    }
+
+    /**
+     * @return The shards currently registered in the DF.
+     */
+    private List<AID> search() throws FIPAException {
+        DFAgentDescription template = new DFAgentDescription();
+        ServiceDescription sd = new ServiceDescription();
+        sd.setType(SERVICE_TYPE);
+        template.addServices(sd);
+        SearchConstraints all = new SearchConstraints();
+        all.setMaxResults(-1L);
+
+        List<AID> shards = new ArrayList<>();
+        for (DFAgentDescription result : DFService.search(agent, template, all)) {
+            shards.add(result.getName());
+        }
+        return shards;
+    }
+
+    /**
+     * Rebuilds the ring from the shards found in the DF.
+     * @param shards The shards found.
+     */
+    private void update(List<AID> shards) {
+        if (shards.isEmpty()) {
+            if (ring != null) {
+                return; // Keep the last known shards
+            }
+            shards.add(new AID("auctioneer", AID.ISLOCALNAME));
+        }
+        ring = new ShardRing(shards);
+    }
+}
@@ -0,0 +1,100 @@
+package ma.fstm.ilisi.tp4;
+
+import jade.core.AID;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * ShardRing assigns auctions to auctioneer shards by consistent hashing.
+ * Each shard owns several points on a 64-bit ring; an auction belongs to the shard owning
+ * the first point at or after the hash of its id. Adding or removing a shard only moves
+ * the auctions of its neighbours. The ring is immutable; lookups are a binary search.
+ */
+public class ShardRing {
+    /** Points per shard, enough to spread the auctions evenly over a handful of shards. */
+    private static final int POINTS_PER_SHARD = 64;
+
+    private final long[] points;
+    private final AID[] owners;
+
+    /**
+     * @param shards The auctioneer shards, at least one.
+     */
+    public ShardRing(Collection<AID> shards) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("A shard ring needs at least one shard");
+        }
+        int size = shards.size() * POINTS_PER_SHARD;
+        Point[] ring = new Point[size];
+        int i = 0;
+        for (AID shard : shards) {
+            long seed = hash(shard.getName());
+            for (int p = 0; p < POINTS_PER_SHARD; p++) {
+                ring[i++] = new Point(mix(seed + p), shard);
+            }
+        }
+        Arrays.sort(ring, Comparator.comparingLong(point -> point.hash));
+        points = new long[size];
+        owners = new AID[size];
+        for (i = 0; i < size; i++) {
+            points[i] = ring[i].hash;
+            owners[i] = ring[i].owner;
+        }
+    }
+
+    /**
+     * A point of the ring and the shard owning it.
+     */
+    private static final class Point {
+        private final long hash;
+        private final AID owner;
+
+        private Point(long hash, AID owner) {
+            this.hash = hash;
+            this.owner = owner;
+        }
+    }
+
+    /**
+     * @param auctionId The auction id.
+     * @return The shard owning the auction.
+     */
+    public AID owner(long auctionId) {
+        int index = Arrays.binarySearch(points, mix(auctionId));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    /**
+     * @return The distinct shards of the ring.
+     */
+    public List<AID> shards() {
+        return Arrays.stream(owners).distinct().toList();
+    }
+
+    /**
+     * FNV-1a hash of a string, mixed to spread similar names.
+     */
+    private static long hash(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    /**
+     * Finalizer of SplitMix64, turns close values into well spread hashes.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
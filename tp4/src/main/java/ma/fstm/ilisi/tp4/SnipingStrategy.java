@@ -0,0 +1,63 @@
+package ma.fstm.ilisi.tp4;
+
+/**
+ * SnipingStrategy stays silent until the last moments of a lot, then bids once
+ * the lead time before the deadline, up to its budget, leaving the others no time to answer.
+ * It aims again whenever the deadline moves, for instance after an anti-sniping extension.
+ * Sealed and Dutch lots leave nothing to snipe and are bid as {@link BiddingStrategy#bidWithoutOutcry} does.
+ */
+public class SnipingStrategy implements BiddingStrategy {
+    private final long budget;
+    private final long increment;
+    private final long leadMillis;
+
+    /**
+     * @param budget The highest amount this buyer pays, in minor units.
+     * @param increment The amount added to the current maximum, in minor units.
+     * @param leadMillis How long before the deadline the bid is sent.
+     */
+    public SnipingStrategy(long budget, long increment, long leadMillis) {
+        this.budget = budget;
+        this.increment = increment;
+        this.leadMillis = leadMillis;
+    }
+
+    public void auctionOpened(BuyerCore buyer, long auctionId, long minPrice) {
+        if (!BiddingStrategy.bidWithoutOutcry(buyer, auctionId, budget)) {
+            aim(buyer, auctionId);
+        }
+    }
+
+    public void maxBidChanged(BuyerCore buyer, long auctionId, long maxBid) {
+        if (BiddingStrategy.bidWithoutOutcry(buyer, auctionId, budget)) {
+            return;
+        }
+        if (maxBid >= budget && !buyer.isLeading(auctionId)) {
+            buyer.leave(auctionId);
+        }
+    }
+
+    public void deadlineChanged(BuyerCore buyer, long auctionId) {
+        if (!BiddingStrategy.bidWithoutOutcry(buyer, auctionId, budget)) {
+            aim(buyer, auctionId);
+        }
+    }
+
+    public void wake(BuyerCore buyer, long auctionId) {
+        if (buyer.isLeading(auctionId)) {
+            return;
+        }
+        long max = buyer.getCurrentMaxBid(auctionId);
+        long bid = Math.min(max + increment, budget);
+        if (bid > max) {
+            buyer.placeBid(auctionId, bid);
+        }
+    }
+
+    private void aim(BuyerCore buyer, long auctionId) {
+        long deadline = buyer.getDeadline(auctionId);
+        if (deadline > 0) {
+            buyer.wakeUp(auctionId, deadline - leadMillis - buyer.now());
+        }
+    }
+}
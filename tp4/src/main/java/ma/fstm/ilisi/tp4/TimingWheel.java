@@ -0,0 +1,204 @@
+package ma.fstm.ilisi.tp4;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * TimingWheel is a hierarchical timing wheel of timers keyed by auction id, such as the deadline of each lot.
+ * Each level has 64 slots; a slot of level n spans 64^n ticks, so five levels of
+ * 10 ms ticks cover more than a hundred days. Scheduling and cancelling are O(1):
+ * a deadline is a node of a doubly linked list in one slot, found by auction id.
+ * Deadlines of a higher level cascade into the lower levels as the wheel turns.
+ *
+ * <p>The wheel does not own a thread. The agent calls {@link #advance()} once per tick,
+ * and the expired auction ids are passed to the callback in the calling thread.
+ * {@link #advance(long)} takes the time explicitly, to drive the wheel from a virtual clock.
+ */
+public class TimingWheel implements AuctionTimers {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 5;
+
+    private final long tickMillis;
+    private final LongSupplier clock;
+    private final LongConsumer onExpired;
+    private final Node[][] slots = new Node[LEVELS][SLOTS];
+    private final Map<Long, Node> nodes = new HashMap<>();
+    private long currentTick;
+    private long[] expired = new long[16];
+
+    /**
+     * A pending deadline, linked in the list of its slot.
+     */
+    private static final class Node {
+        private final long auctionId;
+        private long deadlineTick;
+        private int level;
+        private int slot;
+        private Node prev;
+        private Node next;
+
+        private Node(long auctionId) {
+            this.auctionId = auctionId;
+        }
+    }
+
+    /**
+     * @param tickMillis The resolution of the wheel.
+     * @param clock The current time in milliseconds.
+     * @param onExpired Called with the auction id of each deadline reached.
+     */
+    public TimingWheel(long tickMillis, LongSupplier clock, LongConsumer onExpired) {
+        this.tickMillis = tickMillis;
+        this.clock = clock;
+        this.onExpired = onExpired;
+        this.currentTick = clock.getAsLong() / tickMillis;
+    }
+
+    /**
+     * Schedules, or reschedules, the deadline of a lot.
+     * The deadline is rounded up to the next tick.
+     */
+    public void schedule(long auctionId, long delayMillis) {
+        Node node = nodes.get(auctionId);
+        if (node == null) {
+            node = new Node(auctionId);
+            nodes.put(auctionId, node);
+        } else {
+            unlink(node);
+        }
+        long deadline = clock.getAsLong() + Math.max(0, delayMillis);
+        // The slot of the current tick was already expired, the earliest deadline is the next tick
+        node.deadlineTick = Math.max((deadline + tickMillis - 1) / tickMillis, currentTick + 1);
+        insert(node);
+    }
+
+    /**
+     * Cancels the deadline of a lot, if any.
+     */
+    public void cancel(long auctionId) {
+        Node node = nodes.remove(auctionId);
+        if (node != null) {
+            unlink(node);
+        }
+    }
+
+    public long now() {
+        return clock.getAsLong();
+    }
+
+    /**
+     * Turns the wheel up to the current time of the clock.
+     */
+    public void advance() {
+        advance(clock.getAsLong());
+    }
+
+    /**
+     * Turns the wheel up to the given time and reports the deadlines reached, in tick order.
+     * @param nowMillis The time in milliseconds.
+     */
+    public void advance(long nowMillis) {
+        long targetTick = nowMillis / tickMillis;
+        while (currentTick < targetTick) {
+            if (nodes.isEmpty()) {
+                // Nothing pending, jump straight to the target
+                currentTick = targetTick;
+                return;
+            }
+            currentTick++;
+            cascade();
+            expire((int) currentTick & SLOT_MASK);
+        }
+    }
+
+    /**
+     * @return The number of pending deadlines.
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
+    /**
+     * Moves the deadlines of the higher-level slots reached by the current tick down the wheel.
+     */
+    private void cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0) {
+                return;
+            }
+            int slot = (int) (currentTick >>> (SLOT_BITS * level)) & SLOT_MASK;
+            Node node = slots[level][slot];
+            slots[level][slot] = null;
+            while (node != null) {
+                Node next = node.next;
+                insert(node);
+                node = next;
+            }
+        }
+    }
+
+    /**
+     * Reports the deadlines of a level-0 slot. The slot is emptied before the callbacks run,
+     * so they may schedule or cancel deadlines.
+     */
+    private void expire(int slot) {
+        Node node = slots[0][slot];
+        slots[0][slot] = null;
+        int count = 0;
+        while (node != null) {
+            Node next = node.next;
+            if (node.deadlineTick <= currentTick) {
+                nodes.remove(node.auctionId);
+                node.prev = node.next = null;
+                if (count == expired.length) {
+                    expired = Arrays.copyOf(expired, count * 2);
+                }
+                expired[count++] = node.auctionId;
+            } else {
+                insert(node);
+            }
+            node = next;
+        }
+        for (int i = 0; i < count; i++) {
+            onExpired.accept(expired[i]);
+        }
+    }
+
+    private void insert(Node node) {
+        long deadlineTick = node.deadlineTick;
+        long delta = deadlineTick - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        node.level = level;
+        node.slot = (int) (deadlineTick >>> (SLOT_BITS * level)) & SLOT_MASK;
+        node.prev = null;
+        node.next = slots[level][node.slot];
+        if (node.next != null) {
+            node.next.prev = node;
+        }
+        slots[level][node.slot] = node;
+    }
+
+    private void unlink(Node node) {
+        if (node.prev != null) {
+            node.prev.next = node.next;
+        } else if (slots[node.level][node.slot] == node) {
+            slots[node.level][node.slot] = node.next;
+        }
+        if (node.next != null) {
+            node.next.prev = node.prev;
+        }
+        node.prev = node.next = null;
+    }
+}
@@ -0,0 +1,134 @@
+package ma.fstm.ilisi.tp4;
+
+import jade.core.AID;
+import jade.lang.acl.ACLMessage;
+
+import java.util.*;
+
+/**
+ * Topic is a named set of receivers that messages are published to, such as the buyers
+ * of a category or the buyers following a lot. Members join and leave in constant time;
+ * the receivers are laid out once per change, in an immutable list and in a prototype message,
+ * and every message published until the next change is a clone of that prototype:
+ * its receivers are copied at once instead of being added one by one.
+ *
+ * <p>A topic can be forked, e.g. the topic of a lot from the topic of its category.
+ * The fork shares the receivers and the prototype of its parent, as they were when it was
+ * forked, until its own members change.
+ */
+public class Topic {
+    private final String name;
+    private Set<AID> members;
+    private List<AID> receivers;
+    private ACLMessage prototype;
+
+    /**
+     * @param name The name of the topic.
+     * @param members The initial members.
+     */
+    public Topic(String name, Collection<AID> members) {
+        this.name = name;
+        this.members = new LinkedHashSet<>(members);
+    }
+
+    private Topic(String name, List<AID> receivers, ACLMessage prototype) {
+        this.name = name;
+        this.receivers = receivers;
+        this.prototype = prototype;
+    }
+
+    /**
+     * @param name The name of the new topic.
+     * @return A topic with the members of this one, sharing its receivers until either changes.
+     */
+    public Topic fork(String name) {
+        return new Topic(name, getMembers(), prototype());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Adds a member.
+     * @param member The AID of the member.
+     * @return false if it already was a member.
+     */
+    public boolean join(AID member) {
+        if (!members().add(member)) {
+            return false;
+        }
+        receivers = null;
+        prototype = null;
+        return true;
+    }
+
+    /**
+     * Removes a member.
+     * @param member The AID of the member.
+     * @return false if it was not a member.
+     */
+    public boolean leave(AID member) {
+        if (!members().remove(member)) {
+            return false;
+        }
+        receivers = null;
+        prototype = null;
+        return true;
+    }
+
+    /**
+     * @param member The AID of an agent.
+     * @return true if it is a member.
+     */
+    public boolean contains(AID member) {
+        return members != null ? members.contains(member) : receivers.contains(member);
+    }
+
+    /**
+     * @return The members, in the order they joined. The list is shared and must not be modified.
+     */
+    public List<AID> getMembers() {
+        if (receivers == null) {
+            receivers = List.copyOf(members);
+        }
+        return receivers;
+    }
+
+    /**
+     * @return The number of members.
+     */
+    public int size() {
+        return members != null ? members.size() : receivers.size();
+    }
+
+    /**
+     * Creates a message addressed to every member.
+     * @param performative The performative of the message.
+     * @return A new message, whose receivers may be changed without affecting the topic.
+     */
+    public ACLMessage message(int performative) {
+        ACLMessage msg = (ACLMessage) prototype().clone();
+        msg.setPerformative(performative);
+        return msg;
+    }
+
+    private ACLMessage prototype() {
+        if (prototype == null) {
+            ACLMessage msg = new ACLMessage(ACLMessage.INFORM);
+            getMembers().forEach(msg::addReceiver);
+            prototype = msg;
+        }
+        return prototype;
+    }
+
+    /**
+     * Copies the shared receivers of a fork before its first change.
+     */
+    private Set<AID> members() {
+        if (members == null) {
+            members = new LinkedHashSet<>(receivers);
+        }
+        return members;
+    }
+}
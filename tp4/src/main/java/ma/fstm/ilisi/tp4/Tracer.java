@@ -0,0 +1,80 @@
+package ma.fstm.ilisi.tp4;
+
+import jade.lang.acl.ACLMessage;
+
+/**
+ * Tracer carries trace ids in the "trace-id" user-defined parameter of the messages of an agent.
+ * A message sent while the agent handles a traced message carries the same trace id, so a bid,
+ * the broadcast and forward it causes at the auctioneer and the reply of the seller share one id.
+ * Any other message starts a new trace, identified as {@code <agent>:<sequence number>}.
+ *
+ * <p>When a message comes back on a trace this agent started, such as the max-bid broadcast
+ * following a bid, the time since the trace started is reported once: for a buyer, it is the
+ * bid-to-notification latency. Start times are kept in a fixed ring of the latest traces.
+ * The current trace is kept per thread, so a bid placed from the Swing frame starts its own trace.
+ */
+public class Tracer {
+    private static final int RING = 1024;
+
+    private final String prefix;
+    private final long[] seqs = new long[RING];
+    private final long[] startNanos = new long[RING];
+    private final ThreadLocal<String> current = new ThreadLocal<>();
+    private long nextSeq;
+
+    /**
+     * @param agent The local name of the agent, the origin of the traces it starts.
+     */
+    public Tracer(String agent) {
+        this.prefix = agent + ":";
+    }
+
+    /**
+     * Makes the trace of a received message the current one.
+     * @param msg The received message.
+     * @return The nanoseconds since this agent started the trace of the message, or -1 if it did not,
+     * or if the trace was already reported.
+     */
+    public synchronized long enter(ACLMessage msg) {
+        String traceId = msg.getUserDefinedParameter(AuctionProtocol.TRACE_ID);
+        current.set(traceId);
+        if (traceId == null || !traceId.startsWith(prefix)) {
+            return -1;
+        }
+        long seq;
+        try {
+            seq = Long.parseLong(traceId, prefix.length(), traceId.length(), 10);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        int slot = (int) (seq & (RING - 1));
+        if (seqs[slot] != seq) {
+            return -1;
+        }
+        seqs[slot] = 0;
+        return System.nanoTime() - startNanos[slot];
+    }
+
+    /**
+     * Ends the handling of the current message.
+     */
+    public void exit() {
+        current.remove();
+    }
+
+    /**
+     * Stamps an outgoing message with the current trace, or a new one.
+     * @param msg The message sent.
+     */
+    public synchronized void stamp(ACLMessage msg) {
+        String traceId = current.get();
+        if (traceId == null) {
+            long seq = ++nextSeq;
+            int slot = (int) (seq & (RING - 1));
+            seqs[slot] = seq;
+            startNanos[slot] = System.nanoTime();
+            traceId = prefix + seq;
+        }
+        msg.addUserDefinedParameter(AuctionProtocol.TRACE_ID, traceId);
+    }
+}
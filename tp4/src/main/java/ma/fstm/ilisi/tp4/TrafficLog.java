@@ -0,0 +1,323 @@
+package ma.fstm.ilisi.tp4;
+
+import jade.core.AID;
+import jade.core.Agent;
+import jade.lang.acl.ACLMessage;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * TrafficLog records every message the agents of this JVM send to each other, in a compact
+ * timestamped binary log that a {@link ReplayEngine} feeds back through the auction logic.
+ * Recording is started once per JVM, before the agents start; each agent then wraps its sender
+ * with {@link #tap(Agent, Consumer)}, which is a no-op when nothing is recorded.
+ *
+ * <p>The log starts with the magic "TP4T" and a version byte, followed by records:
+ * <pre>
+ * NAME     byte 1, UTF name, UTF role    the next agent id, written before its first use
+ * ROLE     byte 3, varint id, UTF role   the role of an agent named as a receiver before it sent
+ * MESSAGE  byte 2, varlong microseconds since the previous message, byte performative,
+ *          varint sender id, varint receiver count, varint receiver ids, UTF conversation-id,
+ *          varint parameter count, UTF key and value per user-defined parameter,
+ *          byte content kind (0 none, 1 text, 2 bytes), varint length, content
+ * </pre>
+ * The role of an agent is the simple name of its class, e.g. "AuctioneerAgent".
+ * Trace ids are not recorded; the replay starts its own traces.
+ */
+public class TrafficLog {
+    private static final int MAGIC = 0x54503454;
+    private static final byte VERSION = 1;
+    private static final byte NAME = 1;
+    private static final byte MESSAGE = 2;
+    private static final byte ROLE = 3;
+    private static final byte NO_CONTENT = 0;
+    private static final byte TEXT = 1;
+    private static final byte BYTES = 2;
+
+    private static TrafficLog current;
+
+    private final DataOutputStream out;
+    private final Map<AID, Integer> ids = new HashMap<>();
+    private final Set<AID> roles = new HashSet<>();
+    private final long startNanos = System.nanoTime();
+    private long lastMicros;
+    private long messages;
+
+    /**
+     * A recorded message.
+     */
+    public static final class Entry {
+        private final long timeMicros;
+        private final ACLMessage message;
+
+        private Entry(long timeMicros, ACLMessage message) {
+            this.timeMicros = timeMicros;
+            this.message = message;
+        }
+
+        /**
+         * @return The time the message was sent, in microseconds since the recording started.
+         */
+        public long getTimeMicros() {
+            return timeMicros;
+        }
+
+        /**
+         * @return The message, with its sender and receivers.
+         */
+        public ACLMessage getMessage() {
+            return message;
+        }
+    }
+
+    /**
+     * A log read back: the messages in the order they were sent, and the roles of the agents.
+     */
+    public static final class Recording {
+        private final List<Entry> entries = new ArrayList<>();
+        private final Map<AID, String> roles = new LinkedHashMap<>();
+
+        public List<Entry> getEntries() {
+            return entries;
+        }
+
+        /**
+         * @param agent The AID of an agent of the recording.
+         * @return The simple class name of the agent, or null if unknown.
+         */
+        public String getRole(AID agent) {
+            return roles.get(agent);
+        }
+
+        /**
+         * @param role A simple class name, e.g. "AuctioneerAgent".
+         * @return The agents of that role, in the order they first appear.
+         */
+        public List<AID> getAgents(String role) {
+            List<AID> agents = new ArrayList<>();
+            roles.forEach((agent, r) -> {
+                if (r.equals(role)) {
+                    agents.add(agent);
+                }
+            });
+            return agents;
+        }
+    }
+
+    private TrafficLog(Path path) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+    }
+
+    /**
+     * Starts recording the messages of the agents of this JVM.
+     * @param path The file of the log, replaced if it exists.
+     * @throws IOException If the file cannot be created.
+     */
+    public static synchronized void start(Path path) throws IOException {
+        stop();
+        current = new TrafficLog(path);
+    }
+
+    /**
+     * Stops recording and flushes the log to disk.
+     */
+    public static synchronized void stop() {
+        if (current != null) {
+            try {
+                current.out.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            current = null;
+        }
+    }
+
+    /**
+     * Wraps the sender of an agent to record the messages it sends.
+     * @param agent The agent, whose AID and class are recorded as the sender.
+     * @param sender Sends messages on behalf of the agent.
+     * @return The wrapped sender, or the sender itself when nothing is recorded.
+     */
+    public static Consumer<ACLMessage> tap(Agent agent, Consumer<ACLMessage> sender) {
+        if (current == null) {
+            return sender;
+        }
+        AID self = agent.getAID();
+        String role = agent.getClass().getSimpleName();
+        return msg -> {
+            record(self, role, msg);
+            sender.accept(msg);
+        };
+    }
+
+    private static synchronized void record(AID sender, String role, ACLMessage msg) {
+        if (current == null) {
+            return;
+        }
+        try {
+            current.write(sender, role, msg);
+        } catch (IOException e) {
+            e.printStackTrace();
+            stop();
+        }
+    }
+
+    /**
+     * @return The number of messages recorded since the recording started, 0 when not recording.
+     */
+    public static synchronized long getMessages() {
+        return current == null ? 0 : current.messages;
+    }
+
+    private void write(AID sender, String role, ACLMessage msg) throws IOException {
+        List<Integer> receivers = new ArrayList<>();
+        for (Iterator<?> it = msg.getAllReceiver(); it.hasNext(); ) {
+            receivers.add(id((AID) it.next(), null));
+        }
+        int senderId = id(sender, role);
+
+        long micros = (System.nanoTime() - startNanos) / 1000;
+        out.writeByte(MESSAGE);
+        writeVarLong(micros - lastMicros);
+        lastMicros = micros;
+        out.writeByte(msg.getPerformative());
+        writeVarLong(senderId);
+        writeVarLong(receivers.size());
+        for (int receiver : receivers) {
+            writeVarLong(receiver);
+        }
+        out.writeUTF(msg.getConversationId() == null ? "" : msg.getConversationId());
+
+        // The parameters of the message itself, not to be modified
+        Properties params = msg.getAllUserDefinedParameters();
+        Set<String> keys = new TreeSet<>(params.stringPropertyNames());
+        keys.remove(AuctionProtocol.TRACE_ID);
+        writeVarLong(keys.size());
+        for (String key : keys) {
+            out.writeUTF(key);
+            out.writeUTF(params.getProperty(key));
+        }
+
+        byte[] content = msg.hasByteSequenceContent() ? msg.getByteSequenceContent()
+                : msg.getContent() == null ? null : msg.getContent().getBytes(StandardCharsets.UTF_8);
+        out.writeByte(content == null ? NO_CONTENT : msg.hasByteSequenceContent() ? BYTES : TEXT);
+        if (content != null) {
+            writeVarLong(content.length);
+            out.write(content);
+        }
+        messages++;
+    }
+
+    /**
+     * @return The id of an agent, writing a NAME record the first time it appears.
+     * The role of a receiver is only known once it sends, so it may follow in a ROLE record.
+     */
+    private int id(AID agent, String role) throws IOException {
+        Integer id = ids.get(agent);
+        if (id == null) {
+            id = ids.size();
+            ids.put(agent, id);
+            out.writeByte(NAME);
+            out.writeUTF(agent.getName());
+            out.writeUTF(role == null ? "" : role);
+        } else if (role != null && !roles.contains(agent)) {
+            out.writeByte(ROLE);
+            writeVarLong(id);
+            out.writeUTF(role);
+        }
+        if (role != null) {
+            roles.add(agent);
+        }
+        return id;
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            out.writeByte((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Reads a log back. A record cut short, as left by a JVM killed while recording, ends the log.
+     * @param path The file of the log.
+     * @return The recording.
+     * @throws IOException If the file cannot be read or is not a traffic log.
+     */
+    public static Recording read(Path path) throws IOException {
+        Recording recording = new Recording();
+        List<AID> agents = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                throw new IOException("Not a traffic log: " + path);
+            }
+            long micros = 0;
+            while (true) {
+                int type = in.read();
+                if (type < 0) {
+                    break;
+                }
+                if (type == NAME) {
+                    AID agent = new AID(in.readUTF(), AID.ISGUID);
+                    agents.add(agent);
+                    recording.roles.put(agent, in.readUTF());
+                    continue;
+                }
+                if (type == ROLE) {
+                    recording.roles.put(agents.get((int) readVarLong(in)), in.readUTF());
+                    continue;
+                }
+                if (type != MESSAGE) {
+                    throw new IOException("Unknown record " + type + " in " + path);
+                }
+                micros += readVarLong(in);
+                ACLMessage msg = new ACLMessage(in.readByte());
+                AID sender = agents.get((int) readVarLong(in));
+                msg.setSender(sender);
+                for (long i = readVarLong(in); i > 0; i--) {
+                    msg.addReceiver(agents.get((int) readVarLong(in)));
+                }
+                String conversationId = in.readUTF();
+                if (!conversationId.isEmpty()) {
+                    msg.setConversationId(conversationId);
+                }
+                for (long i = readVarLong(in); i > 0; i--) {
+                    msg.addUserDefinedParameter(in.readUTF(), in.readUTF());
+                }
+                byte kind = in.readByte();
+                if (kind != NO_CONTENT) {
+                    byte[] content = new byte[(int) readVarLong(in)];
+                    in.readFully(content);
+                    if (kind == BYTES) {
+                        msg.setByteSequenceContent(content);
+                    } else {
+                        msg.setContent(new String(content, StandardCharsets.UTF_8));
+                    }
+                }
+                recording.entries.add(new Entry(micros, msg));
+            }
+        } catch (EOFException e) {
+            // Torn last record
+        }
+        return recording;
+    }
+}
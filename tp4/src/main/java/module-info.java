@@ -1,7 +1,9 @@
-module tp4 {
-    requires jade;
-    requires java.desktop;
-
-    exports ma.fstm.ilisi.tp4;
-    opens ma.fstm.ilisi.tp4 to jade;
+module tp4 {
+    requires jade;
+    requires java.desktop;
+    requires java.management;
+    requires jdk.httpserver;
+
+    exports ma.fstm.ilisi.tp4;
+    opens ma.fstm.ilisi.tp4 to jade;
 }
\ No newline at end of file